@@ -0,0 +1,98 @@
+package com.eventschema;
+
+import com.eventschema.codec.EventFieldCodec;
+import com.eventschema.codec.PasswordResetTokenEventCodec;
+import com.eventschema.codec.UserAdminAccessGrantCodec;
+import com.eventschema.codec.UserCreatedEventCodec;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Every event, with the topic it is published on and the id written in front of its binary form. Ids are part of
+ * the wire format: never reuse or renumber one.
+ */
+public enum EventType {
+
+    USER_CREATED(1, "user-created", UserCreatedEvent.class, new UserCreatedEventCodec()),
+    ADMIN_GRANT(2, "admin-grant", UserAdminAccessGrant.class, new UserAdminAccessGrantCodec()),
+    PASSWORD_RESET(3, "password-reset", PasswordResetTokenEvent.class, new PasswordResetTokenEventCodec());
+
+    private final int id;
+    private final String topic;
+    private final Class<?> type;
+    private final EventFieldCodec<?> codec;
+
+    EventType(int id, String topic, Class<?> type, EventFieldCodec<?> codec) {
+        this.id = id;
+        this.topic = topic;
+        this.type = type;
+        this.codec = codec;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public String topic() {
+        return topic;
+    }
+
+    public Class<?> type() {
+        return type;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> EventFieldCodec<T> codec() {
+        return (EventFieldCodec<T>) codec;
+    }
+
+    public static EventType forId(int id) {
+
+        for (EventType eventType : values()) {
+
+            if (eventType.id == id) {
+
+                return eventType;
+
+            }
+
+        }
+
+        throw new NoSuchElementException("No event type with id " + id);
+
+    }
+
+    public static EventType forTopic(String topic) {
+
+        for (EventType eventType : values()) {
+
+            if (eventType.topic.equals(topic)) {
+
+                return eventType;
+
+            }
+
+        }
+
+        throw new NoSuchElementException("No event type registered for topic " + topic);
+
+    }
+
+    public static EventType forClass(Class<?> type) {
+
+        for (EventType eventType : values()) {
+
+            if (eventType.type == type) {
+
+                return eventType;
+
+            }
+
+        }
+
+        throw new NoSuchElementException("No event type registered for " + type.getName());
+
+    }
+
+
+}
@@ -1,12 +1,13 @@
-package com.userapplication.dto.kafka;
+package com.eventschema;
 
 import java.time.Instant;
 
-public record PasswordResetTokenEvent (String token, Instant  expirationTime, String username) {
+public record PasswordResetTokenEvent (String token, Instant  expirationTime, String username, Instant createdAt) {
 
-    public PasswordResetTokenEvent(String token, Instant expirationTime, String username) {
+    public PasswordResetTokenEvent(String token, Instant expirationTime, String username, Instant createdAt) {
         this.token = token;
         this.expirationTime = expirationTime;
         this.username = username;
+        this.createdAt = createdAt;
     }
 }
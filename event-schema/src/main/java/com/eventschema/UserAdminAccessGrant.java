@@ -1,4 +1,4 @@
-package com.userapplication.dto.kafka;
+package com.eventschema;
 
 import java.time.Instant;
 
@@ -1,4 +1,4 @@
-package com.mailapplication.dto;
+package com.eventschema;
 
 import java.time.Instant;
 
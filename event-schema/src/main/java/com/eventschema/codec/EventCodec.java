@@ -0,0 +1,58 @@
+package com.eventschema.codec;
+
+import com.eventschema.EventType;
+import org.apache.kafka.common.errors.SerializationException;
+
+/**
+ * The binary form of an event: a magic byte, the format version, the {@link EventType} id as a varint, then the
+ * fields of that type. The format version only changes if this framing does; adding or removing fields does not
+ * touch it.
+ */
+public final class EventCodec {
+
+    public static final byte MAGIC = (byte) 0xE7;
+    public static final int FORMAT_VERSION = 1;
+
+    private EventCodec() {
+    }
+
+    public static byte[] encode(Object event) {
+
+        EventType eventType = EventType.forClass(event.getClass());
+        EventWriter writer = new EventWriter();
+        writer.writeByte(MAGIC);
+        writer.writeByte(FORMAT_VERSION);
+        writer.writeVarint(eventType.id());
+        eventType.codec().write(event, writer);
+        return writer.toByteArray();
+
+    }
+
+    public static Object decode(byte[] data) {
+
+        EventReader reader = new EventReader(data, 0);
+
+        if ((byte) reader.readByte() != MAGIC) {
+
+            throw new SerializationException("Not a binary event");
+
+        }
+
+        int version = reader.readByte();
+
+        if (version > FORMAT_VERSION) {
+
+            throw new SerializationException("Event format version " + version + " is newer than the supported " + FORMAT_VERSION);
+
+        }
+
+        return EventType.forId((int) reader.readVarint()).codec().read(reader);
+
+    }
+
+    public static boolean isEncoded(byte[] data) {
+        return data.length > 0 && data[0] == MAGIC;
+    }
+
+
+}
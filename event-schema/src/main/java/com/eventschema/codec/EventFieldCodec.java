@@ -0,0 +1,15 @@
+package com.eventschema.codec;
+
+/**
+ * Writes and reads the fields of one event type. Each field has a number that is part of the wire format: a new
+ * field takes a new number, and the number of a removed field is never reused. Readers skip numbers they do not
+ * know and leave fields they did not receive null, so older and newer versions of either app read each other's
+ * events.
+ */
+public interface EventFieldCodec<T> {
+
+    void write(T event, EventWriter writer);
+
+    T read(EventReader reader);
+
+}
@@ -0,0 +1,157 @@
+package com.eventschema.codec;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Walks the fields written by {@link EventWriter}. Call {@link #nextField()} until it returns false and, for each
+ * field, either one of the typed reads or {@link #skipField()}.
+ */
+public final class EventReader {
+
+    private final byte[] data;
+    private final int limit;
+    private int position;
+    private int tag;
+
+    EventReader(byte[] data, int offset) {
+        this.data = data;
+        this.position = offset;
+        this.limit = data.length;
+    }
+
+    public boolean nextField() {
+
+        if (position >= limit) {
+
+            return false;
+
+        }
+
+        tag = (int) readVarint();
+        return true;
+
+    }
+
+    public int fieldNumber() {
+        return tag >>> EventWriter.WIRE_TYPE_BITS;
+    }
+
+    public Long readLong() {
+
+        expectWireType(EventWriter.VARINT);
+        return unzigzag(readVarint());
+
+    }
+
+    public String readString() {
+
+        expectWireType(EventWriter.BYTES);
+        int length = readLength();
+        String value = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+
+    }
+
+    public Instant readInstant() {
+
+        expectWireType(EventWriter.BYTES);
+        int length = readLength();
+        int end = position + length;
+        long seconds = unzigzag(readVarint());
+        long nanos = readVarint();
+        // anything a later version appends inside the value is skipped
+        position = end;
+        return Instant.ofEpochSecond(seconds, nanos);
+
+    }
+
+    public void skipField() {
+
+        switch (tag & ((1 << EventWriter.WIRE_TYPE_BITS) - 1)) {
+
+            case EventWriter.VARINT -> readVarint();
+            case EventWriter.BYTES -> {
+
+                int length = readLength();
+                position += length;
+
+            }
+            default -> throw new SerializationException("Unknown wire type in tag " + tag);
+
+        }
+
+    }
+
+    long readVarint() {
+
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+
+            if (position >= limit) {
+
+                throw new SerializationException("Event ends inside a varint");
+
+            }
+
+            byte b = data[position++];
+            value |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+
+                return value;
+
+            }
+
+        }
+
+        throw new SerializationException("Varint longer than 10 bytes");
+
+    }
+
+    int readByte() {
+
+        if (position >= limit) {
+
+            throw new SerializationException("Event ends before its header");
+
+        }
+
+        return data[position++] & 0xFF;
+
+    }
+
+    private int readLength() {
+
+        long length = readVarint();
+
+        if (length < 0 || length > limit - position) {
+
+            throw new SerializationException("Field length " + length + " runs past the end of the event");
+
+        }
+
+        return (int) length;
+
+    }
+
+    private void expectWireType(int wireType) {
+
+        if ((tag & ((1 << EventWriter.WIRE_TYPE_BITS) - 1)) != wireType) {
+
+            throw new SerializationException("Field " + fieldNumber() + " has wire type " + (tag & ((1 << EventWriter.WIRE_TYPE_BITS) - 1)) + ", expected " + wireType);
+
+        }
+
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+
+}
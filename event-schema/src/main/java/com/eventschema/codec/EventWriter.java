@@ -0,0 +1,120 @@
+package com.eventschema.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Appends tag-length-value fields: a varint tag (field number and wire type), then either a zigzag varint or a
+ * length-prefixed byte run. Null values are left out.
+ */
+public final class EventWriter {
+
+    static final int VARINT = 0;
+    static final int BYTES = 1;
+    static final int WIRE_TYPE_BITS = 3;
+
+    private byte[] buffer = new byte[64];
+    private int position;
+
+    public void writeLong(int field, Long value) {
+
+        if (value == null) {
+
+            return;
+
+        }
+
+        writeVarint(tag(field, VARINT));
+        writeVarint(zigzag(value));
+
+    }
+
+    public void writeString(int field, String value) {
+
+        if (value == null) {
+
+            return;
+
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(tag(field, BYTES));
+        writeVarint(bytes.length);
+        writeRaw(bytes, bytes.length);
+
+    }
+
+    // a nested run of seconds and nanos, so a reader that does not know the field can still skip it by length
+    public void writeInstant(int field, Instant value) {
+
+        if (value == null) {
+
+            return;
+
+        }
+
+        writeVarint(tag(field, BYTES));
+        // seconds and nanos take at most 15 bytes, so the length always fits the one byte reserved for it
+        int lengthPosition = position;
+        writeByte(0);
+        writeVarint(zigzag(value.getEpochSecond()));
+        writeVarint(value.getNano());
+        buffer[lengthPosition] = (byte) (position - lengthPosition - 1);
+
+    }
+
+    void writeByte(int value) {
+
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+
+    }
+
+    void writeVarint(long value) {
+
+        ensureCapacity(10);
+
+        while ((value & ~0x7FL) != 0) {
+
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+
+        }
+
+        buffer[position++] = (byte) value;
+
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void writeRaw(byte[] bytes, int length) {
+
+        ensureCapacity(length);
+        System.arraycopy(bytes, 0, buffer, position, length);
+        position += length;
+
+    }
+
+    private void ensureCapacity(int additional) {
+
+        if (position + additional > buffer.length) {
+
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + additional));
+
+        }
+
+    }
+
+    private static long tag(int field, int wireType) {
+        return ((long) field << WIRE_TYPE_BITS) | wireType;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+
+}
@@ -0,0 +1,51 @@
+package com.eventschema.codec;
+
+import com.eventschema.PasswordResetTokenEvent;
+
+import java.time.Instant;
+
+public class PasswordResetTokenEventCodec implements EventFieldCodec<PasswordResetTokenEvent> {
+
+    private static final int TOKEN = 1;
+    private static final int EXPIRATION_TIME = 2;
+    private static final int USERNAME = 3;
+    private static final int CREATED_AT = 4;
+
+    @Override
+    public void write(PasswordResetTokenEvent event, EventWriter writer) {
+
+        writer.writeString(TOKEN, event.token());
+        writer.writeInstant(EXPIRATION_TIME, event.expirationTime());
+        writer.writeString(USERNAME, event.username());
+        writer.writeInstant(CREATED_AT, event.createdAt());
+
+    }
+
+    @Override
+    public PasswordResetTokenEvent read(EventReader reader) {
+
+        String token = null;
+        Instant expirationTime = null;
+        String username = null;
+        Instant createdAt = null;
+
+        while (reader.nextField()) {
+
+            switch (reader.fieldNumber()) {
+
+                case TOKEN -> token = reader.readString();
+                case EXPIRATION_TIME -> expirationTime = reader.readInstant();
+                case USERNAME -> username = reader.readString();
+                case CREATED_AT -> createdAt = reader.readInstant();
+                default -> reader.skipField();
+
+            }
+
+        }
+
+        return new PasswordResetTokenEvent(token, expirationTime, username, createdAt);
+
+    }
+
+
+}
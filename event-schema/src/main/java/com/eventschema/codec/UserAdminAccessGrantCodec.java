@@ -0,0 +1,47 @@
+package com.eventschema.codec;
+
+import com.eventschema.UserAdminAccessGrant;
+
+import java.time.Instant;
+
+public class UserAdminAccessGrantCodec implements EventFieldCodec<UserAdminAccessGrant> {
+
+    private static final int EMAIL = 1;
+    private static final int MESSAGE = 2;
+    private static final int CREATED_AT = 3;
+
+    @Override
+    public void write(UserAdminAccessGrant event, EventWriter writer) {
+
+        writer.writeString(EMAIL, event.email());
+        writer.writeString(MESSAGE, event.message());
+        writer.writeInstant(CREATED_AT, event.createdAt());
+
+    }
+
+    @Override
+    public UserAdminAccessGrant read(EventReader reader) {
+
+        String email = null;
+        String message = null;
+        Instant createdAt = null;
+
+        while (reader.nextField()) {
+
+            switch (reader.fieldNumber()) {
+
+                case EMAIL -> email = reader.readString();
+                case MESSAGE -> message = reader.readString();
+                case CREATED_AT -> createdAt = reader.readInstant();
+                default -> reader.skipField();
+
+            }
+
+        }
+
+        return new UserAdminAccessGrant(email, message, createdAt);
+
+    }
+
+
+}
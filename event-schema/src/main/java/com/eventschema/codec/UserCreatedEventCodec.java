@@ -0,0 +1,47 @@
+package com.eventschema.codec;
+
+import com.eventschema.UserCreatedEvent;
+
+import java.time.Instant;
+
+public class UserCreatedEventCodec implements EventFieldCodec<UserCreatedEvent> {
+
+    private static final int ID = 1;
+    private static final int CREATED_AT = 2;
+    private static final int EMAIL = 3;
+
+    @Override
+    public void write(UserCreatedEvent event, EventWriter writer) {
+
+        writer.writeLong(ID, event.id());
+        writer.writeInstant(CREATED_AT, event.createdAt());
+        writer.writeString(EMAIL, event.email());
+
+    }
+
+    @Override
+    public UserCreatedEvent read(EventReader reader) {
+
+        Long id = null;
+        Instant createdAt = null;
+        String email = null;
+
+        while (reader.nextField()) {
+
+            switch (reader.fieldNumber()) {
+
+                case ID -> id = reader.readLong();
+                case CREATED_AT -> createdAt = reader.readInstant();
+                case EMAIL -> email = reader.readString();
+                default -> reader.skipField();
+
+            }
+
+        }
+
+        return new UserCreatedEvent(id, createdAt, email);
+
+    }
+
+
+}
@@ -0,0 +1,53 @@
+package com.eventschema.kafka;
+
+import com.eventschema.EventType;
+import com.eventschema.codec.EventCodec;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+
+/**
+ * Reads binary events, and the JSON records the user application published before it switched to them, so a
+ * consumer can be upgraded while older records are still in its topics. The JSON type comes from the topic.
+ */
+public class EventDeserializer implements Deserializer<Object> {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+
+        if (data == null) {
+
+            return null;
+
+        }
+
+        if (EventCodec.isEncoded(data)) {
+
+            return EventCodec.decode(data);
+
+        }
+
+        try {
+
+            return objectMapper.readValue(data, EventType.forTopic(topic).type());
+
+        } catch (IOException e) {
+
+            throw new SerializationException("Record on " + topic + " is neither a binary event nor readable JSON", e);
+
+        }
+
+    }
+
+
+}
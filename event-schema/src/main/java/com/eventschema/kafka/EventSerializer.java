@@ -0,0 +1,14 @@
+package com.eventschema.kafka;
+
+import com.eventschema.codec.EventCodec;
+import org.apache.kafka.common.serialization.Serializer;
+
+public class EventSerializer implements Serializer<Object> {
+
+    @Override
+    public byte[] serialize(String topic, Object event) {
+        return event == null ? null : EventCodec.encode(event);
+    }
+
+
+}
@@ -0,0 +1,48 @@
+package com.eventschema.tracing;
+
+import io.micrometer.observation.transport.ReceiverContext;
+import io.micrometer.observation.transport.SenderContext;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Observation contexts for records, through which the tracing handler of each application writes the span's
+ * traceparent to the headers of a record being sent, and continues the trace found in the headers of a record being
+ * consumed.
+ */
+public final class KafkaTracing {
+
+    private KafkaTracing() {
+    }
+
+    public static SenderContext<Headers> sender(Headers headers) {
+
+        SenderContext<Headers> context = new SenderContext<>((carrier, key, value) -> {
+
+            // a record forwarded with its headers keeps one traceparent, the latest
+            carrier.remove(key);
+            carrier.add(key, value.getBytes(StandardCharsets.UTF_8));
+
+        });
+        context.setCarrier(headers);
+        return context;
+
+    }
+
+    public static ReceiverContext<Headers> receiver(Headers headers) {
+
+        ReceiverContext<Headers> context = new ReceiverContext<>((carrier, key) -> {
+
+            Header header = carrier.lastHeader(key);
+            return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+
+        });
+        context.setCarrier(headers);
+        return context;
+
+    }
+
+
+}
@@ -0,0 +1,101 @@
+package com.eventschema.tracing;
+
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The W3C trace context of one span, written as {@code 00-<trace id>-<span id>-<flags>} to the {@code traceparent}
+ * header of every record, so the mail application continues the trace the user application started.
+ */
+public record TraceContext(String traceId, String spanId, boolean sampled) {
+
+    public static final String HEADER = "traceparent";
+
+    private static final String INVALID_TRACE_ID = "0".repeat(32);
+    private static final String INVALID_SPAN_ID = "0".repeat(16);
+
+    public TraceContext(String traceId, String spanId, boolean sampled) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.sampled = sampled;
+    }
+
+    public static TraceContext root(boolean sampled) {
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new TraceContext(id(random) + id(random), id(random), sampled);
+
+    }
+
+    public TraceContext child() {
+
+        return new TraceContext(traceId, id(ThreadLocalRandom.current()), sampled);
+
+    }
+
+    public String traceparent() {
+
+        return "00-" + traceId + '-' + spanId + (sampled ? "-01" : "-00");
+
+    }
+
+    /**
+     * @return the context, or {@code null} when the value is missing or not a version 00 traceparent
+     */
+    public static TraceContext parse(String traceparent) {
+
+        if (traceparent == null || traceparent.length() != 55 || !traceparent.startsWith("00-")
+                || traceparent.charAt(35) != '-' || traceparent.charAt(52) != '-') {
+
+            return null;
+
+        }
+
+        String traceId = traceparent.substring(3, 35);
+        String spanId = traceparent.substring(36, 52);
+        String flags = traceparent.substring(53);
+
+        if (!isHex(traceId) || !isHex(spanId) || !isHex(flags) || traceId.equals(INVALID_TRACE_ID) || spanId.equals(INVALID_SPAN_ID)) {
+
+            return null;
+
+        }
+
+        return new TraceContext(traceId, spanId, (HexFormat.fromHexDigits(flags) & 1) == 1);
+
+    }
+
+    private static String id(ThreadLocalRandom random) {
+
+        long id;
+
+        do {
+
+            id = random.nextLong();
+
+        } while (id == 0);
+
+        return HexFormat.of().toHexDigits(id);
+
+    }
+
+    private static boolean isHex(String value) {
+
+        for (int i = 0; i < value.length(); i++) {
+
+            char c = value.charAt(i);
+
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+
+                return false;
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+
+}
@@ -0,0 +1,119 @@
+package com.eventschema.codec;
+
+import com.eventschema.EventType;
+import com.eventschema.PasswordResetTokenEvent;
+import com.eventschema.UserAdminAccessGrant;
+import com.eventschema.UserCreatedEvent;
+import com.eventschema.kafka.EventDeserializer;
+import com.eventschema.kafka.EventSerializer;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventCodecTests {
+
+    private final EventSerializer serializer = new EventSerializer();
+    private final EventDeserializer deserializer = new EventDeserializer();
+
+    @Test
+    void everyEventTypeRoundTrips() {
+
+        Instant now = Instant.parse("2025-01-02T03:04:05.123456789Z");
+
+        for (Object event : new Object[]{
+                new UserCreatedEvent(42L, now, "user@example.com"),
+                new UserAdminAccessGrant("admin@example.com", "Olá, you are now an admin", now),
+                new PasswordResetTokenEvent("token-value", now, "user@example.com", now)}) {
+
+            String topic = EventType.forClass(event.getClass()).topic();
+            assertEquals(event, deserializer.deserialize(topic, serializer.serialize(topic, event)));
+
+        }
+
+    }
+
+    @Test
+    void nullFieldsAreLeftOutAndReadBackAsNull() {
+
+        UserCreatedEvent event = new UserCreatedEvent(null, null, "user@example.com");
+
+        assertEquals(event, EventCodec.decode(EventCodec.encode(event)));
+
+    }
+
+    @Test
+    void fieldsAddedByANewerWriterAreSkipped() {
+
+        EventWriter writer = header(EventType.USER_CREATED);
+        writer.writeLong(1, -7L);
+        writer.writeString(9, "field this reader does not know");
+        writer.writeString(3, "user@example.com");
+        writer.writeLong(10, 123L);
+        writer.writeInstant(11, Instant.EPOCH);
+
+        assertEquals(new UserCreatedEvent(-7L, null, "user@example.com"), EventCodec.decode(writer.toByteArray()));
+
+    }
+
+    @Test
+    void resetTokensWrittenBeforeCreatedAtWasAddedAreStillRead() {
+
+        EventWriter writer = header(EventType.PASSWORD_RESET);
+        writer.writeString(1, "token-value");
+        writer.writeInstant(2, Instant.EPOCH);
+        writer.writeString(3, "user@example.com");
+
+        assertEquals(new PasswordResetTokenEvent("token-value", Instant.EPOCH, "user@example.com", null), EventCodec.decode(writer.toByteArray()));
+
+    }
+
+    @Test
+    void binaryIsSmallerThanTheJsonItReplaces() {
+
+        UserCreatedEvent event = new UserCreatedEvent(42L, Instant.now(), "user@example.com");
+        String json = "{\"id\":42,\"createdAt\":\"" + event.createdAt() + "\",\"email\":\"user@example.com\"}";
+
+        assertTrue(EventCodec.encode(event).length * 2 < json.getBytes(StandardCharsets.UTF_8).length);
+
+    }
+
+    @Test
+    void jsonRecordsFromBeforeTheBinaryFormatAreStillRead() {
+
+        byte[] json = "{\"id\":42,\"createdAt\":\"2025-01-02T03:04:05Z\",\"email\":\"user@example.com\",\"removedLater\":true}"
+                .getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(new UserCreatedEvent(42L, Instant.parse("2025-01-02T03:04:05Z"), "user@example.com"),
+                deserializer.deserialize("user-created", json));
+
+    }
+
+    @Test
+    void newerFormatVersionAndTruncatedEventsAreRejected() {
+
+        byte[] encoded = EventCodec.encode(new PasswordResetTokenEvent("token-value", Instant.now(), "user@example.com", Instant.now()));
+        byte[] newerVersion = encoded.clone();
+        newerVersion[1] = (byte) (EventCodec.FORMAT_VERSION + 1);
+        byte[] truncated = java.util.Arrays.copyOf(encoded, encoded.length - 3);
+
+        assertThrows(SerializationException.class, () -> EventCodec.decode(newerVersion));
+        assertThrows(SerializationException.class, () -> EventCodec.decode(truncated));
+
+    }
+
+    private EventWriter header(EventType eventType) {
+
+        EventWriter writer = new EventWriter();
+        writer.writeByte(EventCodec.MAGIC);
+        writer.writeByte(EventCodec.FORMAT_VERSION);
+        writer.writeVarint(eventType.id());
+        return writer;
+
+    }
+
+
+}
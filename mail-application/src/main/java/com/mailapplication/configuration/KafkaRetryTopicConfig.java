@@ -0,0 +1,58 @@
+package com.mailapplication.configuration;
+
+import com.eventschema.EventType;
+import com.mailapplication.retry.MailRetryTopics;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The retry tiers and dead-letter topic of every event topic. They belong to this application, the user application
+ * only creates the event topics.
+ */
+@Configuration
+public class KafkaRetryTopicConfig {
+
+    @Value("${mail.retry.partitions:3}")
+    private int partitions;
+    @Value("${mail.retry.replicas:1}")
+    private int replicas;
+    @Value("${mail.retry.dlt-retention:14d}")
+    private Duration deadLetterRetention;
+
+
+    @Bean
+    public KafkaAdmin.NewTopics mailRetryTopicsToCreate(MailRetryTopics retryTopics) {
+
+        List<NewTopic> topics = new ArrayList<>();
+
+        for (String retryTopic : retryTopics.retryTopics()) {
+
+            topics.add(TopicBuilder.name(retryTopic).partitions(partitions).replicas(replicas).build());
+
+        }
+
+        for (EventType eventType : EventType.values()) {
+
+            topics.add(TopicBuilder.name(retryTopics.deadLetterTopic(eventType.topic()))
+                    .partitions(partitions)
+                    .replicas(replicas)
+                    .config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(deadLetterRetention.toMillis()))
+                    .build());
+
+        }
+
+        return new KafkaAdmin.NewTopics(topics.toArray(NewTopic[]::new));
+
+    }
+
+
+}
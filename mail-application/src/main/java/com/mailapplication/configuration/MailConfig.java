@@ -1,11 +1,11 @@
 package com.mailapplication.configuration;
 
+import com.mailapplication.smtp.PooledJavaMailSender;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.JavaMailSenderImpl;
 
+import java.time.Duration;
 import java.util.Properties;
 
 @Configuration
@@ -18,11 +18,24 @@ public class MailConfig {
     private String username;
     @Value("${custom.password}")
     private String password;
-
-
+    @Value("${custom.pool.max-connections:4}")
+    private int maxConnections;
+    @Value("${custom.pool.max-wait:30s}")
+    private Duration maxWait;
+    @Value("${custom.pool.idle-timeout:2m}")
+    private Duration idleTimeout;
+    @Value("${custom.pool.eviction-interval:30s}")
+    private Duration evictionInterval;
+    @Value("${custom.pool.max-messages-per-connection:100}")
+    private int maxMessagesPerConnection;
+    @Value("${custom.pool.socket-timeout:30s}")
+    private Duration socketTimeout;
+
+
+    // declared as the pooled type so the registry finds it as a MeterBinder before it is created
     @Bean
-    public JavaMailSender getJavaMailSender() {
-        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+    public PooledJavaMailSender getJavaMailSender() {
+        PooledJavaMailSender mailSender = new PooledJavaMailSender(maxConnections, maxWait, idleTimeout, evictionInterval, maxMessagesPerConnection);
         mailSender.setHost(host);
         mailSender.setPort(port);
 
@@ -33,6 +46,9 @@ public class MailConfig {
         props.put("mail.transport.protocol", "smtp");
         props.put("mail.smtp.auth", "true");
         props.put("mail.smtp.starttls.enable", "true");
+        props.put("mail.smtp.connectiontimeout", String.valueOf(socketTimeout.toMillis()));
+        props.put("mail.smtp.timeout", String.valueOf(socketTimeout.toMillis()));
+        props.put("mail.smtp.writetimeout", String.valueOf(socketTimeout.toMillis()));
         props.put("mail.debug", "true");
 
         return mailSender;
@@ -0,0 +1,504 @@
+package com.mailapplication.dispatch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSenderFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends emails no faster than the SMTP provider and each recipient domain accept them. Every email reserves a slot
+ * from a token bucket for its recipient's domain and then one from the provider's, and the listener thread sleeps
+ * until the slot comes up, sending the emails whose slots have come up together. While the provider's bucket is
+ * reserved further ahead than {@code mail.dispatch.pause-threshold}, every listener container is paused, so no more
+ * records are polled than can be sent, and resumed once the reservations have drained to half of it. An email that
+ * would wait longer than {@code mail.dispatch.max-wait}, or is left over after the provider answered with a
+ * throttling reply, fails with a {@link MailThrottledException} and goes to a retry tier, giving back the slots it
+ * had reserved. Each email sent is a {@code mail.smtp.deliver} span, carrying how long it waited for its slot.
+ */
+@Component
+public class MailDispatcher {
+
+    // service unavailable / local error / temporary failure, how providers answer a client sending too fast
+    private static final Set<Integer> THROTTLE_REPLIES = Set.of(421, 451, 454);
+
+    private final JavaMailSender mailSender;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final TaskScheduler taskScheduler;
+    private final ObservationRegistry observationRegistry;
+    private final String provider;
+    private final TokenBucket providerBucket;
+    private final double domainRate;
+    private final int domainBurst;
+    private final Map<String, Double> domainRates;
+    private final Map<String, TokenBucket> domainBuckets = new ConcurrentHashMap<>();
+    private final long maxWaitNanos;
+    private final long pauseThresholdNanos;
+    private final Duration throttleBackoff;
+    private final Timer waitTimer;
+    private final Counter domainDelayedCounter;
+    private final Counter maxWaitDeferredCounter;
+    private final Counter throttledDeferredCounter;
+    private final Counter throttleRepliesCounter;
+    private volatile boolean paused;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public MailDispatcher(JavaMailSender mailSender, KafkaListenerEndpointRegistry listenerRegistry, TaskScheduler taskScheduler,
+                          MeterRegistry meterRegistry, ObservationRegistry observationRegistry,
+                          @Value("${custom.host:smtp}") String provider,
+                          @Value("${mail.dispatch.provider.rate:10}") double providerRate,
+                          @Value("${mail.dispatch.provider.burst:20}") int providerBurst,
+                          @Value("${mail.dispatch.domain.rate:5}") double domainRate,
+                          @Value("${mail.dispatch.domain.burst:10}") int domainBurst,
+                          @Value("${mail.dispatch.domain.limits:}") String domainLimits,
+                          @Value("${mail.dispatch.max-wait:30s}") Duration maxWait,
+                          @Value("${mail.dispatch.pause-threshold:5s}") Duration pauseThreshold,
+                          @Value("${mail.dispatch.throttle-backoff:1m}") Duration throttleBackoff) {
+
+        this.mailSender = mailSender;
+        this.listenerRegistry = listenerRegistry;
+        this.taskScheduler = taskScheduler;
+        this.observationRegistry = observationRegistry;
+        this.provider = provider;
+        this.providerBucket = new TokenBucket(providerRate, providerBurst, System.nanoTime());
+        this.domainRate = domainRate;
+        this.domainBurst = domainBurst;
+        this.domainRates = parseLimits(domainLimits);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.pauseThresholdNanos = pauseThreshold.toNanos();
+        this.throttleBackoff = throttleBackoff;
+
+        Gauge.builder("mail.dispatch.paused", this, dispatcher -> dispatcher.paused ? 1 : 0)
+                .description("1 while the listeners are paused because the provider's send slots are reserved too far ahead")
+                .tag("provider", provider)
+                .register(meterRegistry);
+        TimeGauge.builder("mail.dispatch.provider.backlog", providerBucket, TimeUnit.NANOSECONDS,
+                        bucket -> bucket.waitNanos(System.nanoTime()))
+                .description("How long an email handed to the dispatcher now would wait for a provider send slot")
+                .tag("provider", provider)
+                .register(meterRegistry);
+        Gauge.builder("mail.dispatch.domains.throttled", this, MailDispatcher::throttledDomains)
+                .description("Recipient domains with no send slot free right now")
+                .tag("provider", provider)
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("mail.dispatch.wait")
+                .description("Time an email waited for its send slot")
+                .tag("provider", provider)
+                .register(meterRegistry);
+        this.domainDelayedCounter = Counter.builder("mail.dispatch.domain.delayed")
+                .description("Emails held back by their recipient domain's limit rather than the provider's")
+                .tag("provider", provider)
+                .register(meterRegistry);
+        this.maxWaitDeferredCounter = deferredCounter(meterRegistry, "max-wait");
+        this.throttledDeferredCounter = deferredCounter(meterRegistry, "provider-throttled");
+        this.throttleRepliesCounter = Counter.builder("mail.dispatch.throttle.replies")
+                .description("Throttling replies (421, 451, 454) received from the provider")
+                .tag("provider", provider)
+                .register(meterRegistry);
+
+    }
+
+    /**
+     * Sends the emails at the rate the limits allow, failing like {@link JavaMailSender#send(MimeMessage...)} with a
+     * {@link MailSendException} that maps each email that was not sent to its failure.
+     */
+    public void send(MimeMessage... mimeMessages) {
+
+        send(mimeMessages, new Observation[mimeMessages.length]);
+
+    }
+
+    /**
+     * Like {@link #send(MimeMessage...)}, with the delivery span of each email a child of the observation at the same
+     * index, such as the consumption of the record it was rendered from.
+     */
+    public void send(MimeMessage[] mimeMessages, Observation[] parents) {
+
+        long start = System.nanoTime();
+        long latest = start + maxWaitNanos;
+        long[] readyAt = new long[mimeMessages.length];
+        long[] domainReadyAt = new long[mimeMessages.length];
+        TokenBucket[] domainBucketOf = new TokenBucket[mimeMessages.length];
+        List<Integer> order = new ArrayList<>(mimeMessages.length);
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+
+        for (int i = 0; i < mimeMessages.length; i++) {
+
+            String domain = domain(mimeMessages[i]);
+            TokenBucket domainBucket = domainBucket(domain, start);
+            long domainReady = domainBucket.reserve(start, latest);
+            // the provider slot is taken from when the domain allows the email, so a busy domain does not hold one idle
+            long ready = domainReady == TokenBucket.NO_TOKEN ? TokenBucket.NO_TOKEN : providerBucket.reserve(domainReady, latest);
+
+            if (ready == TokenBucket.NO_TOKEN) {
+
+                if (domainReady != TokenBucket.NO_TOKEN) {
+
+                    // the domain had a slot but the provider did not, so the next email to that domain can take it
+                    domainBucket.release(domainReady);
+
+                }
+
+                maxWaitDeferredCounter.increment();
+                failedMessages.put(mimeMessages[i], new MailThrottledException("No send slot within the maximum wait for " + domain));
+                continue;
+
+            }
+
+            if (domainReady - start > 0) {
+
+                domainDelayedCounter.increment();
+
+            }
+
+            readyAt[i] = ready;
+            domainReadyAt[i] = domainReady;
+            domainBucketOf[i] = domainBucket;
+            order.add(i);
+
+        }
+
+        pauseIfSaturated();
+        order.sort(Comparator.comparingLong(i -> readyAt[i] - start));
+        int next = 0;
+
+        while (next < order.size()) {
+
+            long wait = readyAt[order.get(next)] - System.nanoTime();
+
+            if (wait > 0) {
+
+                try {
+
+                    TimeUnit.NANOSECONDS.sleep(wait);
+
+                } catch (InterruptedException e) {
+
+                    // the container is shutting down, what is left goes to a retry tier instead of being sent late
+                    Thread.currentThread().interrupt();
+                    deferRest(mimeMessages, order, next, failedMessages, "Interrupted while waiting for a send slot",
+                            readyAt, domainReadyAt, domainBucketOf);
+                    break;
+
+                }
+
+            }
+
+            long now = System.nanoTime();
+            int end = next;
+
+            while (end < order.size() && readyAt[order.get(end)] - now <= 0) {
+
+                waitTimer.record(now - start, TimeUnit.NANOSECONDS);
+                end++;
+
+            }
+
+            MimeMessage[] due = new MimeMessage[end - next];
+            Observation[] deliveries = new Observation[end - next];
+
+            for (int i = next; i < end; i++) {
+
+                due[i - next] = mimeMessages[order.get(i)];
+                deliveries[i - next] = startDelivery(parents[order.get(i)], now - start);
+
+            }
+
+            next = end;
+            Map<Object, Exception> sendFailures = Map.of();
+
+            try {
+
+                mailSender.send(due);
+
+            } catch (MailSendException e) {
+
+                if (e.getFailedMessages().isEmpty()) {
+
+                    stopDeliveries(due, deliveries, Map.of(), e);
+                    throw e;
+
+                }
+
+                sendFailures = e.getFailedMessages();
+                failedMessages.putAll(sendFailures);
+
+                if (e.getFailedMessages().values().stream().anyMatch(MailDispatcher::isThrottleReply)) {
+
+                    // given back before the hold, which they cannot shorten then
+                    deferRest(mimeMessages, order, next, failedMessages, "The provider is throttling sends",
+                            readyAt, domainReadyAt, domainBucketOf);
+                    backOff();
+                    throttledDeferredCounter.increment(order.size() - next);
+                    stopDeliveries(due, deliveries, sendFailures, null);
+                    break;
+
+                }
+
+            } catch (RuntimeException e) {
+
+                stopDeliveries(due, deliveries, Map.of(), e);
+                throw e;
+
+            }
+
+            stopDeliveries(due, deliveries, sendFailures, null);
+
+        }
+
+        if (!failedMessages.isEmpty()) {
+
+            throw new MailSendException(failedMessages);
+
+        }
+
+    }
+
+    public boolean isPaused() {
+
+        return paused;
+
+    }
+
+    /**
+     * Forgets the buckets of domains that have refilled completely, so the map only holds recently used domains.
+     */
+    @Scheduled(fixedDelayString = "${mail.dispatch.domain.eviction-interval-ms:60000}")
+    public void evictIdleDomains() {
+
+        long now = System.nanoTime();
+        domainBuckets.values().removeIf(bucket -> bucket.isFull(now));
+
+    }
+
+    private synchronized void pauseIfSaturated() {
+
+        long backlog = providerBucket.waitNanos(System.nanoTime());
+
+        if (paused || backlog <= pauseThresholdNanos) {
+
+            return;
+
+        }
+
+        logger.debug("Send slots of {} are reserved {} ms ahead, pausing the listeners", provider, TimeUnit.NANOSECONDS.toMillis(backlog));
+        paused = true;
+        listenerRegistry.getListenerContainers().forEach(MessageListenerContainer::pause);
+        scheduleResume(backlog);
+
+    }
+
+    private synchronized void resumeIfDrained() {
+
+        long backlog = providerBucket.waitNanos(System.nanoTime());
+
+        if (backlog > pauseThresholdNanos / 2) {
+
+            scheduleResume(backlog);
+            return;
+
+        }
+
+        logger.debug("Send slots of {} have drained, resuming the listeners", provider);
+        // partitions the retry listener paused itself stay paused, resume() only undoes pause()
+        listenerRegistry.getListenerContainers().forEach(MessageListenerContainer::resume);
+        paused = false;
+
+    }
+
+    // the listeners poll again while half the threshold is left, so sending does not stall waiting for the next batch
+    private void scheduleResume(long backlog) {
+
+        taskScheduler.schedule(this::resumeIfDrained, Instant.now().plusNanos(backlog - pauseThresholdNanos / 2));
+
+    }
+
+    private Observation startDelivery(Observation parent, long waitNanos) {
+
+        Observation delivery = Observation.createNotStarted("mail.smtp.deliver", observationRegistry)
+                .lowCardinalityKeyValue("provider", provider)
+                .highCardinalityKeyValue("dispatch.wait.ms", Long.toString(TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+
+        if (parent != null) {
+
+            delivery.parentObservation(parent);
+
+        }
+
+        return delivery.start();
+
+    }
+
+    // failure applies to every email, as when the whole send failed before reaching the provider
+    private static void stopDeliveries(MimeMessage[] due, Observation[] deliveries, Map<Object, Exception> sendFailures, Exception failure) {
+
+        for (int i = 0; i < due.length; i++) {
+
+            Exception error = failure != null ? failure : sendFailures.get(due[i]);
+
+            if (error != null) {
+
+                deliveries[i].error(error);
+
+            }
+
+            deliveries[i].stop();
+
+        }
+
+    }
+
+    private void backOff() {
+
+        throttleRepliesCounter.increment();
+        logger.warn("{} is throttling sends, holding its send slots for {}", provider, throttleBackoff);
+        providerBucket.holdUntil(System.nanoTime() + throttleBackoff.toNanos());
+        pauseIfSaturated();
+
+    }
+
+    // the deferred emails give back the slots they reserved, which would otherwise sit unused
+    private void deferRest(MimeMessage[] mimeMessages, List<Integer> order, int from, Map<Object, Exception> failedMessages, String reason,
+                           long[] readyAt, long[] domainReadyAt, TokenBucket[] domainBucketOf) {
+
+        for (int i = from; i < order.size(); i++) {
+
+            int index = order.get(i);
+            failedMessages.put(mimeMessages[index], new MailThrottledException(reason));
+            providerBucket.release(readyAt[index]);
+            domainBucketOf[index].release(domainReadyAt[index]);
+
+        }
+
+    }
+
+    private TokenBucket domainBucket(String domain, long now) {
+
+        return domainBuckets.computeIfAbsent(domain,
+                key -> new TokenBucket(domainRates.getOrDefault(key, domainRate), domainBurst, now));
+
+    }
+
+    private int throttledDomains() {
+
+        long now = System.nanoTime();
+        return (int) domainBuckets.values().stream().filter(bucket -> bucket.waitNanos(now) > 0).count();
+
+    }
+
+    private Counter deferredCounter(MeterRegistry meterRegistry, String reason) {
+
+        return Counter.builder("mail.dispatch.deferred")
+                .description("Emails handed to a retry tier instead of waiting for a send slot")
+                .tag("provider", provider)
+                .tag("reason", reason)
+                .register(meterRegistry);
+
+    }
+
+    private static boolean isThrottleReply(Exception failure) {
+
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+
+            if (cause instanceof SMTPSendFailedException sendFailed && THROTTLE_REPLIES.contains(sendFailed.getReturnCode())
+                    || cause instanceof SMTPSenderFailedException senderFailed && THROTTLE_REPLIES.contains(senderFailed.getReturnCode())) {
+
+                return true;
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    private static String domain(MimeMessage mimeMessage) {
+
+        try {
+
+            Address[] recipients = mimeMessage.getAllRecipients();
+
+            if (recipients != null && recipients.length > 0 && recipients[0] instanceof InternetAddress address) {
+
+                String email = address.getAddress();
+                return email.substring(email.lastIndexOf('@') + 1).toLowerCase(Locale.ROOT);
+
+            }
+
+        } catch (MessagingException e) {
+
+            // an unreadable recipient fails when sent, until then it shares the bucket of addresses without a domain
+            return "";
+
+        }
+
+        return "";
+
+    }
+
+    /**
+     * Parses {@code mail.dispatch.domain.limits}, a list of {@code domain=rate} entries such as
+     * {@code gmail.com=20,outlook.com=10}.
+     */
+    static Map<String, Double> parseLimits(String limits) {
+
+        Map<String, Double> rates = new HashMap<>();
+
+        for (String entry : limits.split(",")) {
+
+            if (entry.isBlank()) {
+
+                continue;
+
+            }
+
+            String[] parts = entry.split("=");
+
+            if (parts.length != 2) {
+
+                throw new IllegalArgumentException("Expected domain=rate in mail.dispatch.domain.limits, got '" + entry.trim() + "'");
+
+            }
+
+            rates.put(parts[0].trim().toLowerCase(Locale.ROOT), Double.parseDouble(parts[1].trim()));
+
+        }
+
+        return rates;
+
+    }
+
+
+}
@@ -0,0 +1,14 @@
+package com.mailapplication.dispatch;
+
+/**
+ * The email was not sent because no send slot was free for it in time. It is handed to a retry tier like any other
+ * temporary failure.
+ */
+public class MailThrottledException extends RuntimeException {
+
+    public MailThrottledException(String message) {
+        super(message);
+    }
+
+
+}
@@ -0,0 +1,106 @@
+package com.mailapplication.dispatch;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket kept as a single theoretical arrival time (GCRA): a token is available once the clock is within
+ * {@code burst} intervals of it, and taking one pushes it forward by one interval. Reserving is a compare-and-set on
+ * that one value, so listener threads never block each other, and a reservation can be granted in the future, which
+ * is how callers learn how long to wait instead of polling.
+ */
+final class TokenBucket {
+
+    static final long NO_TOKEN = Long.MIN_VALUE;
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival;
+
+    TokenBucket(double ratePerSecond, int burst, long nowNanos) {
+
+        if (ratePerSecond <= 0 || burst < 1) {
+
+            throw new IllegalArgumentException("A token bucket needs a positive rate and a burst of at least 1");
+
+        }
+
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.toleranceNanos = (burst - 1) * intervalNanos;
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+
+    }
+
+    /**
+     * Takes the next token available at or after {@code earliestNanos}.
+     *
+     * @return when the token may be used, or {@link #NO_TOKEN} without taking anything if that is after {@code latestNanos}
+     */
+    long reserve(long earliestNanos, long latestNanos) {
+
+        while (true) {
+
+            long arrival = theoreticalArrival.get();
+            long granted = Math.max(earliestNanos, arrival - toleranceNanos);
+
+            if (granted - latestNanos > 0) {
+
+                return NO_TOKEN;
+
+            }
+
+            if (theoreticalArrival.compareAndSet(arrival, Math.max(arrival, granted) + intervalNanos)) {
+
+                return granted;
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Gives back a token {@link #reserve} granted at {@code grantedNanos} that was not used, so the next reservation
+     * can have it. A bucket that has since refilled completely stays as it is.
+     */
+    void release(long grantedNanos) {
+
+        while (true) {
+
+            long arrival = theoreticalArrival.get();
+
+            // never back past the token's own slot, which a second release of it would do
+            if (arrival - (grantedNanos + intervalNanos) < 0 || theoreticalArrival.compareAndSet(arrival, arrival - intervalNanos)) {
+
+                return;
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Hands out no token before {@code untilNanos}, and then one interval at a time instead of a whole burst.
+     */
+    void holdUntil(long untilNanos) {
+
+        theoreticalArrival.accumulateAndGet(untilNanos + toleranceNanos, Math::max);
+
+    }
+
+    /**
+     * How long a token asked for at {@code nowNanos} would have to wait, 0 if one is available.
+     */
+    long waitNanos(long nowNanos) {
+        return Math.max(0, theoreticalArrival.get() - toleranceNanos - nowNanos);
+    }
+
+    /**
+     * Whether the bucket has refilled completely, so dropping it and starting a new one changes nothing.
+     */
+    boolean isFull(long nowNanos) {
+        return theoreticalArrival.get() - nowNanos <= 0;
+    }
+
+
+}
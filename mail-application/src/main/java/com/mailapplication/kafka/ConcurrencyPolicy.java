@@ -0,0 +1,91 @@
+package com.mailapplication.kafka;
+
+import java.time.Duration;
+
+/**
+ * Decides how many consumers a listener should run from its lag. Scaling up follows the lag straight away, scaling
+ * down goes one consumer at a time and only after the lag stayed low for several checks in a row, since every change
+ * restarts the container and rebalances the group.
+ */
+final class ConcurrencyPolicy {
+
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final long targetLagPerConsumer;
+    private final int scaleDownChecks;
+    private final long cooldownNanos;
+
+    ConcurrencyPolicy(int minConcurrency, int maxConcurrency, long targetLagPerConsumer, int scaleDownChecks, Duration cooldown) {
+
+        if (minConcurrency < 1 || maxConcurrency < minConcurrency || targetLagPerConsumer < 1) {
+
+            throw new IllegalArgumentException("Listener concurrency needs 1 <= min <= max and a positive target lag");
+
+        }
+
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.targetLagPerConsumer = targetLagPerConsumer;
+        this.scaleDownChecks = scaleDownChecks;
+        this.cooldownNanos = cooldown.toNanos();
+
+    }
+
+    /**
+     * One consumer per {@code targetLagPerConsumer} records of lag. Consumers beyond the partitions not already taken
+     * by other members of the group, such as other replicas of this application, would sit idle, so they are not
+     * asked for.
+     */
+    int desired(long lag, int partitions, int otherMembers) {
+
+        long byLag = Math.max(1, (lag + targetLagPerConsumer - 1) / targetLagPerConsumer);
+        int cap = Math.max(minConcurrency, Math.min(maxConcurrency, partitions - otherMembers));
+        return (int) Math.max(minConcurrency, Math.min(byLag, cap));
+
+    }
+
+    /**
+     * @return the concurrency to switch to, or {@code current} to leave the listener alone
+     */
+    int next(ListenerState state, int current, int desired, long nowNanos) {
+
+        boolean coolingDown = state.lastChangeNanos != 0 && nowNanos - state.lastChangeNanos < cooldownNanos;
+
+        if (desired > current) {
+
+            state.lowChecks = 0;
+            return coolingDown ? current : changed(state, desired, nowNanos);
+
+        }
+
+        if (desired < current) {
+
+            state.lowChecks++;
+            return coolingDown || state.lowChecks < scaleDownChecks ? current : changed(state, current - 1, nowNanos);
+
+        }
+
+        state.lowChecks = 0;
+        return current;
+
+    }
+
+    private static int changed(ListenerState state, int concurrency, long nowNanos) {
+
+        state.lowChecks = 0;
+        state.lastChangeNanos = nowNanos;
+        return concurrency;
+
+    }
+
+    static final class ListenerState {
+
+        private int lowChecks;
+        private long lastChangeNanos;
+        volatile long lag;
+        volatile int concurrency;
+
+    }
+
+
+}
@@ -0,0 +1,229 @@
+package com.mailapplication.kafka;
+
+import com.mailapplication.dispatch.MailDispatcher;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lag of each listener's consumer group and restarts its container with more consumers while it falls
+ * behind, and fewer once it has caught up, within {@code kafka.listener.autoscale.min-concurrency} and
+ * {@code max-concurrency}. Lag and concurrency are published as {@code kafka.listener.lag} and
+ * {@code kafka.listener.concurrency}, tagged with the listener id. Only the listeners in
+ * {@code kafka.listener.autoscale.listeners} are scaled; the retry listener's lag is mostly records waiting out their
+ * delay, which more consumers would not send any sooner. Nor do more consumers help while the {@link MailDispatcher}
+ * has paused the listeners because the SMTP provider is the bottleneck, so no listener is scaled up then.
+ */
+@Component
+@ConditionalOnProperty(name = "kafka.listener.autoscale.enabled", matchIfMissing = true)
+public class ListenerConcurrencyController implements DisposableBean {
+
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final MailDispatcher mailDispatcher;
+    private final Admin admin;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrencyPolicy policy;
+    private final Duration adminTimeout;
+    private final Set<String> listenerIds;
+    private final Map<String, ConcurrencyPolicy.ListenerState> states = new ConcurrentHashMap<>();
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public ListenerConcurrencyController(KafkaListenerEndpointRegistry listenerRegistry, MailDispatcher mailDispatcher, KafkaAdmin kafkaAdmin,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${kafka.listener.autoscale.min-concurrency:1}") int minConcurrency,
+                                         @Value("${kafka.listener.autoscale.max-concurrency:8}") int maxConcurrency,
+                                         @Value("${kafka.listener.autoscale.target-lag:1000}") long targetLag,
+                                         @Value("${kafka.listener.autoscale.scale-down-checks:4}") int scaleDownChecks,
+                                         @Value("${kafka.listener.autoscale.cooldown:1m}") Duration cooldown,
+                                         @Value("${kafka.listener.autoscale.admin-timeout:5s}") Duration adminTimeout,
+                                         @Value("${kafka.listener.autoscale.listeners:user-created,admin-grant,password-reset}") Set<String> listenerIds) {
+
+        this.listenerRegistry = listenerRegistry;
+        this.mailDispatcher = mailDispatcher;
+        this.admin = Admin.create(kafkaAdmin.getConfigurationProperties());
+        this.meterRegistry = meterRegistry;
+        this.policy = new ConcurrencyPolicy(minConcurrency, maxConcurrency, targetLag, scaleDownChecks, cooldown);
+        this.adminTimeout = adminTimeout;
+        this.listenerIds = listenerIds;
+
+    }
+
+    @Scheduled(fixedDelayString = "${kafka.listener.autoscale.interval-ms:15000}", initialDelayString = "${kafka.listener.autoscale.interval-ms:15000}")
+    public void adjustConcurrency() {
+
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+
+            if (!(container instanceof ConcurrentMessageListenerContainer<?, ?> concurrent) || !container.isRunning()
+                    || !listenerIds.contains(container.getListenerId())) {
+
+                continue;
+
+            }
+
+            try {
+
+                adjust(concurrent);
+
+            } catch (Exception e) {
+
+                logger.warn("Could not adjust the concurrency of listener {}: {}", container.getListenerId(), e.toString());
+
+            }
+
+        }
+
+    }
+
+    private void adjust(ConcurrentMessageListenerContainer<?, ?> container) throws Exception {
+
+        String listenerId = container.getListenerId();
+        ConcurrencyPolicy.ListenerState state = states.computeIfAbsent(listenerId, this::register);
+        int current = container.getConcurrency();
+
+        List<TopicPartition> partitions = partitions(container.getContainerProperties().getTopics());
+        long lag = lag(container.getGroupId(), partitions);
+        ConsumerGroupDescription group = admin.describeConsumerGroups(List.of(container.getGroupId()))
+                .describedGroups().get(container.getGroupId())
+                .get(adminTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        // members this container does not own, typically the same listener in other replicas
+        int otherMembers = Math.max(0, group.members().size() - current);
+
+        state.lag = lag;
+        state.concurrency = current;
+
+        int desired = policy.desired(lag, partitions.size(), otherMembers);
+
+        // the lag grows while sends are throttled, more consumers would only hold more records waiting for send slots
+        if (mailDispatcher.isPaused()) {
+
+            desired = Math.min(desired, current);
+
+        }
+
+        int next = policy.next(state, current, desired, System.nanoTime());
+
+        if (next == current) {
+
+            return;
+
+        }
+
+        logger.info("Listener {} lag is {} over {} partitions, changing concurrency from {} to {}", listenerId, lag, partitions.size(), current, next);
+
+        // concurrency is only read when the container starts, and stop() waits for the consumers to close
+        container.stop();
+        container.setConcurrency(next);
+        container.start();
+        state.concurrency = next;
+
+    }
+
+    private List<TopicPartition> partitions(String[] topics) throws Exception {
+
+        Map<String, TopicDescription> descriptions = admin.describeTopics(List.of(topics))
+                .allTopicNames()
+                .get(adminTimeout.toMillis(), TimeUnit.MILLISECONDS);
+
+        return descriptions.values().stream()
+                .flatMap(description -> description.partitions().stream()
+                        .map(partition -> new TopicPartition(description.name(), partition.partition())))
+                .toList();
+
+    }
+
+    private long lag(String groupId, List<TopicPartition> partitions) throws Exception {
+
+        Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(groupId)
+                .partitionsToOffsetAndMetadata()
+                .get(adminTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+        Map<TopicPartition, OffsetSpec> earliest = new HashMap<>();
+
+        for (TopicPartition partition : partitions) {
+
+            latest.put(partition, OffsetSpec.latest());
+
+            // a partition the group never committed on is read from its start
+            if (committed.get(partition) == null) {
+
+                earliest.put(partition, OffsetSpec.earliest());
+
+            }
+
+        }
+
+        Map<TopicPartition, Long> endOffsets = offsets(latest);
+        Map<TopicPartition, Long> startOffsets = earliest.isEmpty() ? Map.of() : offsets(earliest);
+        long lag = 0;
+
+        for (TopicPartition partition : partitions) {
+
+            OffsetAndMetadata offset = committed.get(partition);
+            long position = offset != null ? offset.offset() : startOffsets.getOrDefault(partition, 0L);
+            lag += Math.max(0, endOffsets.getOrDefault(partition, position) - position);
+
+        }
+
+        return lag;
+
+    }
+
+    private Map<TopicPartition, Long> offsets(Map<TopicPartition, OffsetSpec> request) throws Exception {
+
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        admin.listOffsets(request).all().get(adminTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .forEach((partition, info) -> offsets.put(partition, info.offset()));
+        return offsets;
+
+    }
+
+    private ConcurrencyPolicy.ListenerState register(String listenerId) {
+
+        ConcurrencyPolicy.ListenerState state = new ConcurrencyPolicy.ListenerState();
+
+        Gauge.builder("kafka.listener.lag", state, listenerState -> listenerState.lag)
+                .description("Records on the listener's topics its consumer group has not committed yet")
+                .tag("listener", listenerId)
+                .register(meterRegistry);
+        Gauge.builder("kafka.listener.concurrency", state, listenerState -> listenerState.concurrency)
+                .description("Consumers the listener container runs in this instance")
+                .tag("listener", listenerId)
+                .register(meterRegistry);
+
+        return state;
+
+    }
+
+    @Override
+    public void destroy() {
+
+        admin.close(adminTimeout);
+
+    }
+
+
+}
@@ -0,0 +1,30 @@
+package com.mailapplication.retry;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code dltreplay} actuator operation. The application has no web server, so it is reached over JMX, e.g.
+ * {@code org.springframework.boot:type=Endpoint,name=Dltreplay} with operation {@code replay(topic, maxRecords)}.
+ */
+@Component
+@Endpoint(id = "dltreplay")
+public class DeadLetterReplayEndpoint {
+
+    private static final int DEFAULT_MAX_RECORDS = 1000;
+
+    private final DeadLetterReplayService deadLetterReplayService;
+
+    public DeadLetterReplayEndpoint(DeadLetterReplayService deadLetterReplayService) {
+        this.deadLetterReplayService = deadLetterReplayService;
+    }
+
+    @WriteOperation
+    public DeadLetterReplayService.ReplayResult replay(String topic, @Nullable Integer maxRecords) {
+        return deadLetterReplayService.replay(topic, maxRecords == null ? DEFAULT_MAX_RECORDS : maxRecords);
+    }
+
+
+}
@@ -0,0 +1,195 @@
+package com.mailapplication.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Re-drives dead-lettered emails by publishing them back to their event topic, where they start over with a fresh
+ * set of retries. Progress is committed for the {@code mail-dlt-replay} group after each batch is acknowledged, so
+ * consecutive replays continue where the previous one stopped and a record is never replayed twice.
+ */
+@Service
+public class DeadLetterReplayService {
+
+    static final String GROUP_ID = "mail-dlt-replay";
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(1);
+
+    private final ConsumerFactory<Object, Object> consumerFactory;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final MailRetryTopics retryTopics;
+    private final Counter replayed;
+    private final int batchSize;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public DeadLetterReplayService(ConsumerFactory<Object, Object> consumerFactory, KafkaTemplate<String, Object> kafkaTemplate,
+                                   MailRetryTopics retryTopics, MeterRegistry meterRegistry,
+                                   @Value("${mail.retry.replay.batch-size:500}") int batchSize) {
+
+        this.consumerFactory = consumerFactory;
+        this.kafkaTemplate = kafkaTemplate;
+        this.retryTopics = retryTopics;
+        this.replayed = Counter.builder("mail.dlt.replayed")
+                .description("Dead-lettered emails published back to their event topic")
+                .register(meterRegistry);
+        this.batchSize = batchSize;
+
+    }
+
+    /**
+     * Replays up to {@code maxRecords} dead-lettered records of one event topic, oldest first.
+     *
+     * @return how many records were replayed, and how many were dropped because they could not be read
+     */
+    public ReplayResult replay(String eventTopic, int maxRecords) {
+
+        String deadLetterTopic = retryTopics.deadLetterTopic(retryTopics.eventTopic(eventTopic));
+        int replayedCount = 0;
+        int unreadable = 0;
+
+        Properties overrides = new Properties();
+        // progress is committed explicitly, only for records that were republished
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchSize);
+
+        try (Consumer<Object, Object> consumer = consumerFactory.createConsumer(GROUP_ID, null, null, overrides)) {
+
+            List<TopicPartition> partitions = new ArrayList<>();
+
+            for (PartitionInfo partition : consumer.partitionsFor(deadLetterTopic)) {
+
+                partitions.add(new TopicPartition(deadLetterTopic, partition.partition()));
+
+            }
+
+            consumer.assign(partitions);
+            // records dead-lettered while the replay runs are left for the next one
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+            while (replayedCount + unreadable < maxRecords && !caughtUp(consumer, endOffsets)) {
+
+                ConsumerRecords<Object, Object> records = consumer.poll(POLL_TIMEOUT);
+                List<CompletableFuture<?>> sends = new ArrayList<>();
+                Map<TopicPartition, OffsetAndMetadata> processed = new HashMap<>();
+
+                for (ConsumerRecord<Object, Object> record : records) {
+
+                    TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+
+                    if (replayedCount + unreadable >= maxRecords || record.offset() >= endOffsets.get(partition)) {
+
+                        continue;
+
+                    }
+
+                    if (record.value() == null) {
+
+                        logger.warn("Dropping unreadable dead-lettered record {}-{}@{}", record.topic(), record.partition(), record.offset());
+                        unreadable++;
+
+                    } else {
+
+                        sends.add(kafkaTemplate.send(new ProducerRecord<>(retryTopics.eventTopic(record.topic()), null,
+                                (String) record.key(), record.value(), replayHeaders(record.headers()))));
+                        replayedCount++;
+
+                    }
+
+                    processed.put(partition, new OffsetAndMetadata(record.offset() + 1));
+
+                }
+
+                CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+
+                if (!processed.isEmpty()) {
+
+                    consumer.commitSync(processed);
+                    // the poll may have fetched past maxRecords, the next one has to start after the committed records
+                    processed.forEach((partition, offset) -> consumer.seek(partition, offset.offset()));
+
+                }
+
+                replayed.increment(sends.size());
+
+            }
+
+        }
+
+        logger.info("Replayed {} records from {}, dropped {} unreadable ones", replayedCount, deadLetterTopic, unreadable);
+        return new ReplayResult(deadLetterTopic, replayedCount, unreadable);
+
+    }
+
+    private boolean caughtUp(Consumer<Object, Object> consumer, Map<TopicPartition, Long> endOffsets) {
+
+        for (Map.Entry<TopicPartition, Long> endOffset : endOffsets.entrySet()) {
+
+            if (consumer.position(endOffset.getKey()) < endOffset.getValue()) {
+
+                return false;
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+    // the original-record headers stay for tracing, the retry state and last failure do not
+    private static Headers replayHeaders(Headers headers) {
+
+        Headers replay = new RecordHeaders();
+
+        for (Header header : headers) {
+
+            if (!header.key().equals(MailRetryTopics.ATTEMPT_HEADER) && !header.key().equals(MailRetryTopics.DUE_AT_HEADER)
+                    && !header.key().startsWith(KafkaHeaders.PREFIX + "dlt-exception")) {
+
+                replay.add(header);
+
+            }
+
+        }
+
+        return replay;
+
+    }
+
+    public record ReplayResult(String topic, int replayed, int unreadable) {
+
+        public ReplayResult(String topic, int replayed, int unreadable) {
+            this.topic = topic;
+            this.replayed = replayed;
+            this.unreadable = unreadable;
+        }
+
+    }
+
+
+}
@@ -0,0 +1,125 @@
+package com.mailapplication.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Hands a record whose email could not be sent to the next retry tier, so the partition it came from moves on
+ * instead of retrying in place. After the last tier, or straight away when the server rejected the recipient, the
+ * record goes to the dead-letter topic, carrying where it came from and the last failure in the standard
+ * {@code kafka_dlt-*} headers.
+ */
+@Component
+public class MailRetryRouter {
+
+    // rewritten on every hop, any other header (trace context, original-record metadata) is carried along
+    private static final Set<String> REWRITTEN_HEADERS = Set.of(MailRetryTopics.ATTEMPT_HEADER, MailRetryTopics.DUE_AT_HEADER,
+            KafkaHeaders.DLT_EXCEPTION_FQCN, KafkaHeaders.DLT_EXCEPTION_MESSAGE, KafkaHeaders.DLT_EXCEPTION_CAUSE_FQCN);
+    private static final int MAX_MESSAGE_LENGTH = 1000;
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final MailRetryTopics retryTopics;
+    private final MeterRegistry meterRegistry;
+
+    public MailRetryRouter(KafkaTemplate<String, Object> kafkaTemplate, MailRetryTopics retryTopics, MeterRegistry meterRegistry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.retryTopics = retryTopics;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public CompletableFuture<SendResult<String, Object>> forward(ConsumerRecord<String, ?> record, Exception failure) {
+
+        String eventTopic = retryTopics.eventTopic(record.topic());
+        int attempt = MailRetryTopics.attempt(record) + 1;
+        boolean deadLetter = attempt > retryTopics.tiers() || isPermanent(failure);
+        String target = deadLetter ? retryTopics.deadLetterTopic(eventTopic) : retryTopics.retryTopic(eventTopic, attempt - 1);
+        Headers headers = headers(record, failure);
+
+        headers.add(MailRetryTopics.ATTEMPT_HEADER, Integer.toString(attempt).getBytes(StandardCharsets.UTF_8));
+
+        if (!deadLetter) {
+
+            long dueAt = System.currentTimeMillis() + retryTopics.delay(attempt - 1).toMillis();
+            headers.add(MailRetryTopics.DUE_AT_HEADER, Long.toString(dueAt).getBytes(StandardCharsets.UTF_8));
+
+        }
+
+        Counter.builder("mail.retry.forwarded")
+                .description("Emails handed to a retry tier or the dead-letter topic after a failed send")
+                .tag("topic", eventTopic)
+                .tag("target", deadLetter ? "dlt" : "retry-" + (attempt - 1))
+                .register(meterRegistry)
+                .increment();
+
+        // the key is kept, so retries of one key stay on one partition of each tier
+        return kafkaTemplate.send(new ProducerRecord<>(target, null, record.key(), record.value(), headers));
+
+    }
+
+    /**
+     * The address is malformed or the server refused it, which no retry changes.
+     */
+    static boolean isPermanent(Exception failure) {
+
+        return failure instanceof AddressException || failure instanceof SendFailedException sendFailed
+                && sendFailed.getInvalidAddresses() != null && sendFailed.getInvalidAddresses().length > 0;
+
+    }
+
+    private static Headers headers(ConsumerRecord<String, ?> record, Exception failure) {
+
+        Headers headers = new RecordHeaders();
+
+        for (Header header : record.headers()) {
+
+            if (!REWRITTEN_HEADERS.contains(header.key())) {
+
+                headers.add(header);
+
+            }
+
+        }
+
+        // only the first hop knows where the event was originally consumed
+        if (headers.lastHeader(KafkaHeaders.DLT_ORIGINAL_TOPIC) == null) {
+
+            headers.add(KafkaHeaders.DLT_ORIGINAL_TOPIC, record.topic().getBytes(StandardCharsets.UTF_8));
+            headers.add(KafkaHeaders.DLT_ORIGINAL_PARTITION, ByteBuffer.allocate(Integer.BYTES).putInt(record.partition()).array());
+            headers.add(KafkaHeaders.DLT_ORIGINAL_OFFSET, ByteBuffer.allocate(Long.BYTES).putLong(record.offset()).array());
+            headers.add(KafkaHeaders.DLT_ORIGINAL_TIMESTAMP, ByteBuffer.allocate(Long.BYTES).putLong(record.timestamp()).array());
+
+        }
+
+        String message = failure.getMessage() == null ? "" : failure.getMessage();
+        headers.add(KafkaHeaders.DLT_EXCEPTION_FQCN, failure.getClass().getName().getBytes(StandardCharsets.UTF_8));
+        headers.add(KafkaHeaders.DLT_EXCEPTION_MESSAGE,
+                message.substring(0, Math.min(message.length(), MAX_MESSAGE_LENGTH)).getBytes(StandardCharsets.UTF_8));
+
+        if (failure.getCause() != null) {
+
+            headers.add(KafkaHeaders.DLT_EXCEPTION_CAUSE_FQCN, failure.getCause().getClass().getName().getBytes(StandardCharsets.UTF_8));
+
+        }
+
+        return headers;
+
+    }
+
+
+}
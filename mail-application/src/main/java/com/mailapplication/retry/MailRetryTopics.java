@@ -0,0 +1,109 @@
+package com.mailapplication.retry;
+
+import com.eventschema.EventType;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Names of the delay and dead-letter topics of every event topic. A failed email moves through
+ * {@code <topic>-retry-0} to {@code <topic>-retry-<n-1>}, one tier per {@code mail.retry.delays} entry, and ends in
+ * {@code <topic>-dlt}. Tiers are numbered rather than named after their delay, so changing a delay never strands
+ * records in a topic nothing reads anymore.
+ */
+@Component
+public class MailRetryTopics {
+
+    static final String ATTEMPT_HEADER = "mail-retry-attempt";
+    static final String DUE_AT_HEADER = "mail-retry-due-at";
+    private static final String RETRY_SUFFIX = "-retry-";
+    private static final String DEAD_LETTER_SUFFIX = "-dlt";
+
+    private final Duration[] delays;
+
+    public MailRetryTopics(@Value("${mail.retry.delays:30s,5m,30m}") Duration[] delays) {
+        this.delays = delays;
+    }
+
+    public int tiers() {
+        return delays.length;
+    }
+
+    public Duration delay(int tier) {
+        return delays[tier];
+    }
+
+    public String retryTopic(String eventTopic, int tier) {
+        return eventTopic + RETRY_SUFFIX + tier;
+    }
+
+    public String deadLetterTopic(String eventTopic) {
+        return eventTopic + DEAD_LETTER_SUFFIX;
+    }
+
+    /**
+     * Every tier of every event topic, for the retry listener to subscribe to.
+     */
+    public String[] retryTopics() {
+
+        List<String> topics = new ArrayList<>();
+
+        for (EventType eventType : EventType.values()) {
+
+            for (int tier = 0; tier < delays.length; tier++) {
+
+                topics.add(retryTopic(eventType.topic(), tier));
+
+            }
+
+        }
+
+        return topics.toArray(String[]::new);
+
+    }
+
+    /**
+     * The event topic a retry or dead-letter topic belongs to, or the topic itself.
+     */
+    public String eventTopic(String topic) {
+
+        int retry = topic.lastIndexOf(RETRY_SUFFIX);
+
+        if (retry > 0) {
+
+            return topic.substring(0, retry);
+
+        }
+
+        return topic.endsWith(DEAD_LETTER_SUFFIX) ? topic.substring(0, topic.length() - DEAD_LETTER_SUFFIX.length()) : topic;
+
+    }
+
+    /**
+     * How many times sending this record's email has failed already, 0 for a record from an event topic.
+     */
+    static int attempt(ConsumerRecord<?, ?> record) {
+
+        Header header = record.headers().lastHeader(ATTEMPT_HEADER);
+        return header == null ? 0 : Integer.parseInt(new String(header.value(), StandardCharsets.UTF_8));
+
+    }
+
+    /**
+     * Epoch millis before which a record in a retry tier must not be sent again, 0 if it has none.
+     */
+    public static long dueAt(ConsumerRecord<?, ?> record) {
+
+        Header header = record.headers().lastHeader(DUE_AT_HEADER);
+        return header == null ? 0 : Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+
+    }
+
+
+}
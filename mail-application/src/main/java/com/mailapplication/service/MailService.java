@@ -1,81 +1,391 @@
 package com.mailapplication.service;
 
-import com.mailapplication.dto.PasswordResetTokenEvent;
-import com.mailapplication.dto.UserAdminAccessGrant;
-import com.mailapplication.dto.UserCreatedEvent;
+import com.eventschema.EventType;
+import com.eventschema.PasswordResetTokenEvent;
+import com.eventschema.UserAdminAccessGrant;
+import com.eventschema.UserCreatedEvent;
+import com.eventschema.tracing.KafkaTracing;
+import com.mailapplication.dispatch.MailDispatcher;
+import com.mailapplication.retry.MailRetryRouter;
+import com.mailapplication.retry.MailRetryTopics;
+import com.mailapplication.template.MailTemplate;
+import com.mailapplication.template.MailTemplateRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.mail.SimpleMailMessage;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 @Service
 public class MailService {
+    public static final String RETRY_LISTENER_ID = "mail-retry";
+
     private final JavaMailSender mailSender;
+    private final MailDispatcher mailDispatcher;
+    private final MailTemplateRegistry mailTemplateRegistry;
+    private final MailRetryRouter mailRetryRouter;
+    private final MailRetryTopics retryTopics;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final TaskScheduler taskScheduler;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final Map<EventType, Timer> renderTimers = new EnumMap<>(EventType.class);
+    private final Map<EventType, Timer> deliveryTimers = new EnumMap<>(EventType.class);
+    private final Map<String, Timer> queueDelayTimers = new ConcurrentHashMap<>();
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
 
-    public MailService(JavaMailSender mailSender) {
+    public MailService(JavaMailSender mailSender, MailDispatcher mailDispatcher, MailTemplateRegistry mailTemplateRegistry, MailRetryRouter mailRetryRouter,
+                       MailRetryTopics retryTopics, KafkaListenerEndpointRegistry listenerRegistry, TaskScheduler taskScheduler,
+                       MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
         this.mailSender = mailSender;
+        this.mailDispatcher = mailDispatcher;
+        this.mailTemplateRegistry = mailTemplateRegistry;
+        this.mailRetryRouter = mailRetryRouter;
+        this.retryTopics = retryTopics;
+        this.listenerRegistry = listenerRegistry;
+        this.taskScheduler = taskScheduler;
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+
+        for (EventType eventType : EventType.values()) {
+
+            renderTimers.put(eventType, Timer.builder("mail.template.render")
+                    .description("Time to render an email from its template")
+                    .tag("type", eventType.topic())
+                    .register(meterRegistry));
+            // from when the user application created the event until the SMTP server accepted the email, retries included
+            deliveryTimers.put(eventType, Timer.builder("mail.delivery.latency")
+                    .description("Time from the creation of an event to the delivery of its email")
+                    .tag("type", eventType.topic())
+                    .publishPercentileHistogram()
+                    .maximumExpectedValue(Duration.ofHours(1))
+                    .register(meterRegistry));
+
+        }
+
+    }
+
+    @KafkaListener(id = "user-created", topics = "user-created", groupId = "user-created-group", concurrency = "${kafka.listener.autoscale.min-concurrency:1}")
+    public void sendEmailUserCreated(List<ConsumerRecord<String, UserCreatedEvent>> userCreatedEvents) {
+
+        logger.info("Sending {} user-created emails...", userCreatedEvents.size());
+        sendBatch(userCreatedEvents, EventType.USER_CREATED);
+
+    }
+
+
+    @KafkaListener(id = "admin-grant", topics = "admin-grant", groupId = "user-admin-grant", concurrency = "${kafka.listener.autoscale.min-concurrency:1}")
+    public void sendEmailUserHasAdminAccess (List<ConsumerRecord<String, UserAdminAccessGrant>> userAdminAccessGrants) {
+
+        logger.info("Sending {} user-admin access grant emails...", userAdminAccessGrants.size());
+        sendBatch(userAdminAccessGrants, EventType.ADMIN_GRANT);
+
+    }
+
+
+    @KafkaListener (id = "password-reset", topics = "password-reset", groupId = "user-password-reset", concurrency = "${kafka.listener.autoscale.min-concurrency:1}")
+    public void sendResetTokenToEmail (List<ConsumerRecord<String, PasswordResetTokenEvent>> passwordResetTokenEvents) {
+
+        logger.info("Sending {} password-reset emails...", passwordResetTokenEvents.size());
+        sendBatch(passwordResetTokenEvents, EventType.PASSWORD_RESET);
+
+    }
+
+    /**
+     * Emails from every retry tier. Each tier has a fixed delay, so its records become due in offset order: the first
+     * record of a partition that is not due yet is sought back to, and the partition is paused until it is.
+     */
+    @KafkaListener(id = RETRY_LISTENER_ID, topics = "#{@mailRetryTopics.retryTopics()}", groupId = "mail-retry")
+    public void retryEmails(List<ConsumerRecord<String, Object>> records, Consumer<?, ?> consumer) {
+
+        long now = System.currentTimeMillis();
+        Set<TopicPartition> heldBack = new HashSet<>();
+        Map<EventType, List<ConsumerRecord<String, Object>>> due = new EnumMap<>(EventType.class);
+
+        for (ConsumerRecord<String, Object> record : records) {
+
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+
+            if (heldBack.contains(partition)) {
+
+                continue;
+
+            }
+
+            long dueAt = MailRetryTopics.dueAt(record);
+
+            if (dueAt > now) {
+
+                heldBack.add(partition);
+                holdBack(consumer, partition, record.offset(), dueAt);
+                continue;
+
+            }
+
+            due.computeIfAbsent(EventType.forTopic(retryTopics.eventTopic(record.topic())), eventType -> new ArrayList<>()).add(record);
+
+        }
+
+        due.forEach((eventType, dueRecords) -> {
+
+            logger.info("Retrying {} {} emails...", dueRecords.size(), eventType.topic());
+            sendBatch(dueRecords, eventType);
+
+        });
+
+    }
+
+    private void holdBack(Consumer<?, ?> consumer, TopicPartition partition, long offset, long dueAt) {
+
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(RETRY_LISTENER_ID);
+        consumer.seek(partition, offset);
+        container.pausePartition(partition);
+        taskScheduler.schedule(() -> container.resumePartition(partition), Instant.ofEpochMilli(dueAt));
+
+    }
+
+    /**
+     * Each record is a {@code mail.consume} span continuing the trace in its headers, from the poll until its email
+     * was sent or handed over for retry, with the SMTP delivery as its child.
+     */
+    private <T> void sendBatch(List<ConsumerRecord<String, T>> records, EventType eventType) {
+
+        Map<ConsumerRecord<String, T>, Observation> consumes = new IdentityHashMap<>(records.size());
+
+        try {
+
+            sendBatch(records, eventType, consumes);
+
+        } catch (RuntimeException e) {
+
+            consumes.values().forEach(consume -> consume.error(e));
+            throw e;
+
+        } finally {
+
+            consumes.values().forEach(Observation::stop);
+
+        }
+
+    }
+
+    private <T> void sendBatch(List<ConsumerRecord<String, T>> records, EventType eventType, Map<ConsumerRecord<String, T>, Observation> consumes) {
+
+        MailTemplate template = mailTemplateRegistry.template(eventType);
+        Timer renderTimer = renderTimers.get(eventType);
+        long polledAt = System.currentTimeMillis();
+        List<ConsumerRecord<String, T>> sources = new ArrayList<>(records.size());
+        List<MimeMessage> mailMessages = new ArrayList<>(records.size());
+        List<ConsumerRecord<String, T>> failed = new ArrayList<>();
+        List<Exception> failures = new ArrayList<>();
+
+        for (ConsumerRecord<String, T> record : records) {
+
+            // ErrorHandlingDeserializer hands over a null value for records it could not read
+            if (record.value() == null) {
+
+                logger.warn("Skipping unreadable record {}-{}@{}", record.topic(), record.partition(), record.offset());
+                continue;
+
+            }
+
+            queueDelayTimer(record.topic()).record(Math.max(0, polledAt - record.timestamp()), TimeUnit.MILLISECONDS);
+            consumes.put(record, startConsume(record));
+            MimeMessage mimeMessage = mailSender.createMimeMessage();
+            long renderStart = System.nanoTime();
+
+            try {
+
+                template.prepare(mimeMessage, recipient(record.value()), record.value());
+                renderTimer.record(System.nanoTime() - renderStart, TimeUnit.NANOSECONDS);
+
+            } catch (MessagingException e) {
+
+                failed.add(record);
+                failures.add(e);
+                continue;
+
+            }
+
+            sources.add(record);
+            mailMessages.add(mimeMessage);
+
+        }
+
+        int sent = mailMessages.size();
+        Map<Object, Exception> sendFailures = Map.of();
+
+        try {
+
+            if (!mailMessages.isEmpty()) {
+
+                // waits for send slots, so the listener polls no faster than the provider accepts emails
+                mailDispatcher.send(mailMessages.toArray(MimeMessage[]::new), sources.stream().map(consumes::get).toArray(Observation[]::new));
+
+            }
+
+        } catch (MailSendException e) {
+
+            if (e.getFailedMessages().isEmpty()) {
+
+                throw e;
+
+            }
+
+            sendFailures = e.getFailedMessages();
+
+            for (int i = 0; i < mailMessages.size(); i++) {
+
+                Exception failure = sendFailures.get(mailMessages.get(i));
+
+                if (failure != null) {
+
+                    failed.add(sources.get(i));
+                    failures.add(failure);
+                    sent--;
+
+                }
+
+            }
+
+        }
+
+        recordDelivered(eventType, sources, mailMessages, sendFailures);
+
+        for (int i = 0; i < failed.size(); i++) {
+
+            consumes.get(failed.get(i)).error(failures.get(i));
+
+        }
+
+        // failed emails continue in a retry tier, so the rest of the partition is not held up by them
+        handOver(failed, failures);
+        logger.info("{} emails sent successfully, {} handed over for retry...", sent, failed.size());
+
     }
 
-    @KafkaListener(topics = "user-created", groupId = "user-created-group", properties = {"spring.json.value.default.type=com.mailapplication.dto.UserCreatedEvent"})
-    public UserCreatedEvent sendEmailUserCreated(UserCreatedEvent userCreatedEvent) {
-        SimpleMailMessage mailMessage = new SimpleMailMessage();
+    private Observation startConsume(ConsumerRecord<String, ?> record) {
 
-        logger.info("Sending user-created email...");
+        return Observation.createNotStarted("mail.consume", () -> KafkaTracing.receiver(record.headers()), observationRegistry)
+                .contextualName(record.topic() + " process")
+                .lowCardinalityKeyValue("topic", record.topic())
+                .highCardinalityKeyValue("partition", Integer.toString(record.partition()))
+                .highCardinalityKeyValue("offset", Long.toString(record.offset()))
+                .start();
 
-        mailMessage.setSubject("Your new user has been successfully created");
-        mailMessage.setText("Hello, \n\n" + "We are happy to announce that your account has been successfully created. ");
-        mailMessage.setTo(userCreatedEvent.email());
-        mailSender.send(mailMessage);
+    }
+
+    private <T> void handOver(List<ConsumerRecord<String, T>> failed, List<Exception> failures) {
+
+        List<CompletableFuture<?>> forwards = new ArrayList<>(failed.size());
+
+        for (int i = 0; i < failed.size(); i++) {
+
+            forwards.add(mailRetryRouter.forward(failed.get(i), failures.get(i)));
+
+        }
+
+        for (int i = 0; i < forwards.size(); i++) {
 
-        logger.info("Email sent successfully...");
+            try {
 
-        return userCreatedEvent;
+                forwards.get(i).join();
+
+            } catch (CompletionException forwardFailure) {
+
+                // without a retry record the email would be lost, so this one is retried in place instead
+                throw new BatchListenerFailedException("Failed to hand email over for retry", forwardFailure.getCause(), failed.get(i));
+
+            }
+
+        }
 
     }
 
+    private <T> void recordDelivered(EventType eventType, List<ConsumerRecord<String, T>> sources, List<MimeMessage> mailMessages,
+                                     Map<Object, Exception> sendFailures) {
 
-    @KafkaListener(topics = "admin-grant", groupId = "user-admin-grant", properties = {"spring.json.value.default.type=com.mailapplication.dto.UserAdminAccessGrant"})
-    public UserAdminAccessGrant sendEmailUserHasAdminAccess (UserAdminAccessGrant userAdminAccessGrant) {
+        Timer deliveryTimer = deliveryTimers.get(eventType);
+        Instant now = Instant.now();
 
-        SimpleMailMessage mailMessage = new SimpleMailMessage();
+        for (int i = 0; i < mailMessages.size(); i++) {
 
-        logger.info("Sending user-admin access grant...");
+            Instant createdAt = createdAt(sources.get(i).value());
 
-        mailMessage.setSubject("You now have admin access, " + userAdminAccessGrant.email());
-        mailMessage.setText(userAdminAccessGrant.message());
-        mailMessage.setTo(userAdminAccessGrant.email());
-        mailSender.send(mailMessage);
+            // events published before they carried a creation time have nothing to measure from
+            if (createdAt != null && !sendFailures.containsKey(mailMessages.get(i))) {
 
-        logger.info("Email sent successfully...");
+                deliveryTimer.record(Duration.between(createdAt, now));
 
-        return userAdminAccessGrant;
+            }
 
+        }
 
     }
 
+    /**
+     * Time from a record's timestamp, when it was produced, to this application reading it, which for a retry topic
+     * includes the tier's delay.
+     */
+    private Timer queueDelayTimer(String topic) {
 
-    @KafkaListener (topics = "password-reset", groupId = "user-password-reset", properties = {"spring.json.value.default.type=com.mailapplication.dto.PasswordResetTokenEvent"})
-    public PasswordResetTokenEvent sendResetTokenToEmail (PasswordResetTokenEvent passwordResetTokenEvent) {
+        return queueDelayTimers.computeIfAbsent(topic, key -> Timer.builder("mail.consumer.queue.delay")
+                .description("Time a record spent in its topic before it was consumed")
+                .tag("topic", key)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofHours(1))
+                .register(meterRegistry));
 
-        SimpleMailMessage mailMessage = new SimpleMailMessage();
+    }
 
-        logger.info("Sending user-admin access grant...");
+    private static Instant createdAt(Object event) {
 
-        mailMessage.setSubject("Password reset Token");
-        mailMessage.setText("Here is your token to reset your password:\n" + passwordResetTokenEvent.token() +
-                "\n" + "You need to send the token inside the request to change your password, like this: [LINK]/api/user/password?token= " + passwordResetTokenEvent.token() + "\n" + 
-                "Remember, this token is only valid for 30 minutes. If it is not used to reset your password within the specified time, you will need to request a new token. ");
-        mailMessage.setTo(passwordResetTokenEvent.username());
-        mailSender.send(mailMessage);
+        return switch (event) {
+            case UserCreatedEvent userCreatedEvent -> userCreatedEvent.createdAt();
+            case UserAdminAccessGrant userAdminAccessGrant -> userAdminAccessGrant.createdAt();
+            case PasswordResetTokenEvent passwordResetTokenEvent -> passwordResetTokenEvent.createdAt();
+            default -> null;
+        };
 
-        logger.info("Email sent successfully...");
+    }
 
-        return  passwordResetTokenEvent;
+    private static String recipient(Object event) {
 
+        return switch (event) {
+            case UserCreatedEvent userCreatedEvent -> userCreatedEvent.email();
+            case UserAdminAccessGrant userAdminAccessGrant -> userAdminAccessGrant.email();
+            case PasswordResetTokenEvent passwordResetTokenEvent -> passwordResetTokenEvent.username();
+            default -> throw new IllegalArgumentException("No recipient for " + event.getClass().getName());
+        };
 
     }
 
@@ -0,0 +1,377 @@
+package com.mailapplication.smtp;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JavaMailSenderImpl} that keeps a bounded pool of connected, authenticated SMTP transports instead of
+ * opening a new session (TCP, STARTTLS and AUTH) for every send call. As a {@link MeterBinder} it times every message
+ * handed to the server as {@code mail.smtp.send}, per outcome, and publishes the pool's connections.
+ */
+public class PooledJavaMailSender extends JavaMailSenderImpl implements DisposableBean, MeterBinder {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final GenericObjectPool<PooledTransport> transportPool;
+    private final int maxMessagesPerConnection;
+    // set once bound to a registry, sends before that are not timed
+    private volatile Timer sentTimer;
+    private volatile Timer failedTimer;
+
+    public PooledJavaMailSender(int maxConnections, Duration maxWait, Duration idleTimeout, Duration evictionInterval, int maxMessagesPerConnection) {
+
+        GenericObjectPoolConfig<PooledTransport> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(maxConnections);
+        poolConfig.setMaxIdle(maxConnections);
+        poolConfig.setMinIdle(0);
+        poolConfig.setMaxWait(maxWait);
+        // idle connections are NOOP-checked by the evictor and closed once they exceed the idle timeout
+        poolConfig.setTestWhileIdle(true);
+        poolConfig.setMinEvictableIdleDuration(idleTimeout);
+        poolConfig.setTimeBetweenEvictionRuns(evictionInterval);
+        poolConfig.setJmxEnabled(false);
+
+        this.transportPool = new GenericObjectPool<>(new TransportFactory(), poolConfig);
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+
+    }
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) throws MailException {
+
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        PooledTransport transport = null;
+
+        try {
+
+            for (int i = 0; i < mimeMessages.length; i++) {
+
+                MimeMessage mimeMessage = mimeMessages[i];
+                Object original = (originalMessages != null ? originalMessages[i] : mimeMessage);
+
+                try {
+
+                    prepare(mimeMessage);
+
+                } catch (MessagingException e) {
+
+                    failedMessages.put(original, new MailPreparationException(e));
+                    continue;
+
+                }
+
+                try {
+
+                    if (transport == null) {
+
+                        transport = borrowTransport();
+
+                    }
+
+                } catch (MessagingException e) {
+
+                    // without a connection the rest of the batch fails the same way, so it is not retried message by message
+                    for (int j = i; j < mimeMessages.length; j++) {
+
+                        failedMessages.put(originalMessages != null ? originalMessages[j] : mimeMessages[j], e);
+
+                    }
+
+                    break;
+
+                }
+
+                try {
+
+                    send(transport, mimeMessage);
+
+                } catch (MessagingException e) {
+
+                    if (!isConnectionFailure(e, transport)) {
+
+                        // rejected recipients or content, the connection itself is still usable
+                        failedMessages.put(original, e);
+                        continue;
+
+                    }
+
+                    logger.debug("Pooled SMTP connection failed, retrying on a new connection", e);
+                    invalidate(transport);
+                    transport = null;
+
+                    try {
+
+                        transport = borrowTransport();
+                        send(transport, mimeMessage);
+
+                    } catch (MessagingException retryFailure) {
+
+                        failedMessages.put(original, retryFailure);
+
+                        if (transport != null && isConnectionFailure(retryFailure, transport)) {
+
+                            invalidate(transport);
+                            transport = null;
+
+                        }
+
+                    }
+
+                }
+
+            }
+
+        } finally {
+
+            release(transport);
+
+        }
+
+        if (!failedMessages.isEmpty()) {
+
+            throw new MailSendException(failedMessages);
+
+        }
+
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+
+        this.sentTimer = sendTimer(registry, "success");
+        this.failedTimer = sendTimer(registry, "failure");
+
+        Gauge.builder("mail.smtp.connections", this, PooledJavaMailSender::getActiveConnections)
+                .description("Pooled SMTP connections")
+                .tag("state", "active")
+                .register(registry);
+        Gauge.builder("mail.smtp.connections", this, PooledJavaMailSender::getIdleConnections)
+                .description("Pooled SMTP connections")
+                .tag("state", "idle")
+                .register(registry);
+
+    }
+
+    public int getActiveConnections() {
+
+        return transportPool.getNumActive();
+
+    }
+
+    public int getIdleConnections() {
+
+        return transportPool.getNumIdle();
+
+    }
+
+    @Override
+    public void destroy() {
+
+        transportPool.close();
+
+    }
+
+    private void send(PooledTransport transport, MimeMessage mimeMessage) throws MessagingException {
+
+        long start = System.nanoTime();
+
+        try {
+
+            transport.send(mimeMessage);
+            record(sentTimer, start);
+
+        } catch (MessagingException e) {
+
+            record(failedTimer, start);
+            throw e;
+
+        }
+
+    }
+
+    private static void record(@Nullable Timer timer, long start) {
+
+        if (timer != null) {
+
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        }
+
+    }
+
+    private static Timer sendTimer(MeterRegistry registry, String outcome) {
+
+        return Timer.builder("mail.smtp.send")
+                .description("Time the SMTP server took to accept or refuse a message")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+
+    }
+
+    private void prepare(MimeMessage mimeMessage) throws MessagingException {
+
+        if (mimeMessage.getSentDate() == null) {
+
+            mimeMessage.setSentDate(new Date());
+
+        }
+
+        String messageId = mimeMessage.getMessageID();
+        mimeMessage.saveChanges();
+
+        if (messageId != null) {
+
+            mimeMessage.setHeader("Message-ID", messageId);
+
+        }
+
+    }
+
+    /**
+     * A {@link SendFailedException} normally means the server refused this message, but it is also what the transport
+     * throws when the server closes the connection mid-command, so the connection state decides.
+     */
+    private boolean isConnectionFailure(MessagingException e, PooledTransport transport) {
+
+        return !(e instanceof SendFailedException) || !transport.transport.isConnected();
+
+    }
+
+    private PooledTransport borrowTransport() throws MessagingException {
+
+        try {
+
+            return transportPool.borrowObject();
+
+        } catch (AuthenticationFailedException e) {
+
+            throw new MailAuthenticationException(e);
+
+        } catch (MessagingException e) {
+
+            throw e;
+
+        } catch (Exception e) {
+
+            throw new MessagingException("Could not obtain an SMTP connection from the pool", e);
+
+        }
+
+    }
+
+    private void release(@Nullable PooledTransport transport) {
+
+        if (transport == null) {
+
+            return;
+
+        }
+
+        if (transport.messagesSent >= maxMessagesPerConnection) {
+
+            invalidate(transport);
+
+        } else {
+
+            transportPool.returnObject(transport);
+
+        }
+
+    }
+
+    private void invalidate(PooledTransport transport) {
+
+        try {
+
+            transportPool.invalidateObject(transport);
+
+        } catch (Exception e) {
+
+            logger.debug("Failed to close pooled SMTP connection", e);
+
+        }
+
+    }
+
+    static final class PooledTransport {
+
+        private final Transport transport;
+        private int messagesSent;
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+
+        private void send(MimeMessage mimeMessage) throws MessagingException {
+
+            Address[] addresses = mimeMessage.getAllRecipients();
+            transport.sendMessage(mimeMessage, (addresses != null ? addresses : new Address[0]));
+            messagesSent++;
+
+        }
+
+    }
+
+    private final class TransportFactory extends BasePooledObjectFactory<PooledTransport> {
+
+        @Override
+        public PooledTransport create() throws MessagingException {
+
+            return new PooledTransport(connectTransport());
+
+        }
+
+        @Override
+        public PooledObject<PooledTransport> wrap(PooledTransport transport) {
+
+            return new DefaultPooledObject<>(transport);
+
+        }
+
+        @Override
+        public boolean validateObject(PooledObject<PooledTransport> pooledObject) {
+
+            // SMTPTransport.isConnected() issues a NOOP, so this also catches connections the server has dropped
+            return pooledObject.getObject().transport.isConnected();
+
+        }
+
+        @Override
+        public void destroyObject(PooledObject<PooledTransport> pooledObject) throws MessagingException {
+
+            pooledObject.getObject().transport.close();
+
+        }
+
+    }
+
+
+}
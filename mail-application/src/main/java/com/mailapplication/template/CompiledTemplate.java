@@ -0,0 +1,187 @@
+package com.mailapplication.template;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.RecordComponent;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One template part turned into a render plan: the literal text between placeholders and a bound accessor for each
+ * {@code {{field}}}. Rendering walks the plan into a single pre-sized buffer, nothing is parsed or looked up per message.
+ */
+final class CompiledTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+    // room left per placeholder when sizing the buffer, most values are emails, ids and tokens
+    private static final int VALUE_ESTIMATE = 32;
+
+    private final String[] literals;
+    private final MethodHandle[] accessors;
+    private final boolean html;
+    private final DateTimeFormatter instantFormatter;
+    private final int capacity;
+
+    private CompiledTemplate(String[] literals, MethodHandle[] accessors, boolean html, DateTimeFormatter instantFormatter) {
+
+        this.literals = literals;
+        this.accessors = accessors;
+        this.html = html;
+        this.instantFormatter = instantFormatter;
+
+        int literalLength = 0;
+
+        for (String literal : literals) {
+
+            literalLength += literal.length();
+
+        }
+
+        this.capacity = literalLength + accessors.length * VALUE_ESTIMATE;
+
+    }
+
+    /**
+     * @param name used in error messages only
+     * @param html whether values are HTML-escaped
+     * @throws IllegalStateException if the source is malformed or names a field the event type does not have
+     */
+    static CompiledTemplate compile(String name, String source, Class<?> eventType, boolean html,
+                                    DateTimeFormatter instantFormatter) {
+
+        List<String> literals = new ArrayList<>();
+        List<MethodHandle> accessors = new ArrayList<>();
+        int position = 0;
+
+        while (true) {
+
+            int open = source.indexOf(OPEN, position);
+
+            if (open < 0) {
+
+                literals.add(source.substring(position));
+                break;
+
+            }
+
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+
+            if (close < 0) {
+
+                throw new IllegalStateException("Template " + name + " has an unclosed " + OPEN + " at offset " + open);
+
+            }
+
+            literals.add(source.substring(position, open));
+            accessors.add(accessor(name, eventType, source.substring(open + OPEN.length(), close).strip()));
+            position = close + CLOSE.length();
+
+        }
+
+        return new CompiledTemplate(literals.toArray(String[]::new), accessors.toArray(MethodHandle[]::new), html, instantFormatter);
+
+    }
+
+    String render(Object event) {
+
+        StringBuilder out = new StringBuilder(capacity);
+        out.append(literals[0]);
+
+        for (int i = 0; i < accessors.length; i++) {
+
+            appendValue(out, value(accessors[i], event));
+            out.append(literals[i + 1]);
+
+        }
+
+        return out.toString();
+
+    }
+
+    private void appendValue(StringBuilder out, Object value) {
+
+        if (value == null) {
+
+            return;
+
+        }
+
+        CharSequence text = value instanceof Instant instant ? instantFormatter.format(instant) : value.toString();
+
+        if (!html) {
+
+            out.append(text);
+            return;
+
+        }
+
+        for (int i = 0; i < text.length(); i++) {
+
+            char c = text.charAt(i);
+
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                default -> out.append(c);
+            }
+
+        }
+
+    }
+
+    private static Object value(MethodHandle accessor, Object event) {
+
+        try {
+
+            return accessor.invokeExact(event);
+
+        } catch (RuntimeException | Error e) {
+
+            throw e;
+
+        } catch (Throwable e) {
+
+            throw new IllegalStateException("Could not read a template value from " + event.getClass().getSimpleName(), e);
+
+        }
+
+    }
+
+    private static MethodHandle accessor(String name, Class<?> eventType, String field) {
+
+        RecordComponent[] components = eventType.getRecordComponents();
+
+        for (RecordComponent component : components == null ? new RecordComponent[0] : components) {
+
+            if (component.getName().equals(field)) {
+
+                try {
+
+                    return MethodHandles.publicLookup()
+                            .unreflect(component.getAccessor())
+                            .asType(MethodType.methodType(Object.class, Object.class));
+
+                } catch (IllegalAccessException e) {
+
+                    throw new IllegalStateException("Cannot read " + eventType.getSimpleName() + "." + field + " for template " + name, e);
+
+                }
+
+            }
+
+        }
+
+        throw new IllegalStateException("Template " + name + " uses " + OPEN + field + CLOSE + ", but "
+                + eventType.getSimpleName() + " has no such field");
+
+    }
+
+
+}
@@ -0,0 +1,63 @@
+package com.mailapplication.template;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The compiled subject, text and optional HTML body of one event type in one locale. With an HTML body the message is
+ * sent as multipart/alternative, so clients without HTML support show the text part.
+ */
+public final class MailTemplate {
+
+    private final CompiledTemplate subject;
+    private final CompiledTemplate text;
+    private final CompiledTemplate html;
+
+    MailTemplate(CompiledTemplate subject, CompiledTemplate text, CompiledTemplate html) {
+        this.subject = subject;
+        this.text = text;
+        this.html = html;
+    }
+
+    public boolean isMultipart() {
+        return html != null;
+    }
+
+    /**
+     * Renders the event into the message and addresses it to {@code to}.
+     */
+    public void prepare(MimeMessage mimeMessage, String to, Object event) throws MessagingException {
+
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, isMultipart(), StandardCharsets.UTF_8.name());
+        helper.setTo(to);
+        helper.setSubject(subject.render(event));
+
+        if (html != null) {
+
+            helper.setText(text.render(event), html.render(event));
+
+        } else {
+
+            helper.setText(text.render(event));
+
+        }
+
+    }
+
+    String renderSubject(Object event) {
+        return subject.render(event);
+    }
+
+    String renderText(Object event) {
+        return text.render(event);
+    }
+
+    String renderHtml(Object event) {
+        return html == null ? null : html.render(event);
+    }
+
+
+}
@@ -0,0 +1,276 @@
+package com.mailapplication.template;
+
+import com.eventschema.EventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mail templates per event type and locale, read from {@code mail.templates.location} as
+ * {@code <topic>/subject.txt}, {@code <topic>/text.txt} and an optional {@code <topic>/html.html}. A locale is picked
+ * the way resource bundles are, {@code text_pt_BR.txt} before {@code text_pt.txt} before {@code text.txt}.
+ * <p>
+ * The default locale is compiled at startup, so a broken template stops the application instead of the first send.
+ * Other locales are compiled on first use and kept. With {@code mail.templates.refresh-interval} set, the files a
+ * compiled template was chosen from are checked that often and everything is recompiled when one of them changed.
+ */
+@Component
+public class MailTemplateRegistry {
+
+    private static final String[][] PARTS = {{"subject", "txt"}, {"text", "txt"}, {"html", "html"}};
+
+    private final ResourceLoader resourceLoader;
+    private final String location;
+    private final Locale defaultLocale;
+    private final ZoneId zone;
+    private final Duration refreshInterval;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private volatile TemplateSet templates;
+    private volatile long nextCheckNanos;
+
+    public MailTemplateRegistry(ResourceLoader resourceLoader,
+                                @Value("${mail.templates.location:classpath:/mail-templates/}") String location,
+                                @Value("${mail.templates.default-locale:en}") Locale defaultLocale,
+                                @Value("${mail.templates.zone:UTC}") ZoneId zone,
+                                @Value("${mail.templates.refresh-interval:0s}") Duration refreshInterval) {
+
+        this.resourceLoader = resourceLoader;
+        this.location = location.endsWith("/") ? location : location + "/";
+        this.defaultLocale = defaultLocale;
+        this.zone = zone;
+        this.refreshInterval = refreshInterval;
+        this.templates = load();
+        this.nextCheckNanos = System.nanoTime() + refreshInterval.toNanos();
+
+    }
+
+    public MailTemplate template(EventType eventType) {
+        return template(eventType, defaultLocale);
+    }
+
+    public MailTemplate template(EventType eventType, Locale locale) {
+
+        TemplateSet current = current();
+        return current.compiled().computeIfAbsent(new TemplateKey(eventType, locale), key -> compile(key, current.sources()));
+
+    }
+
+    private TemplateSet current() {
+
+        TemplateSet current = templates;
+
+        if (refreshInterval.isZero() || System.nanoTime() - nextCheckNanos < 0) {
+
+            return current;
+
+        }
+
+        synchronized (this) {
+
+            if (System.nanoTime() - nextCheckNanos >= 0) {
+
+                if (changed(templates.sources())) {
+
+                    try {
+
+                        templates = load();
+                        logger.info("Mail templates changed in {}, recompiled", location);
+
+                    } catch (RuntimeException e) {
+
+                        // a half-edited template must not take the listeners down, the previous version stays in use
+                        logger.error("Could not recompile the changed mail templates in {}, keeping the previous ones", location, e);
+
+                    }
+
+                }
+
+                nextCheckNanos = System.nanoTime() + refreshInterval.toNanos();
+
+            }
+
+            return templates;
+
+        }
+
+    }
+
+    private TemplateSet load() {
+
+        TemplateSet loaded = new TemplateSet(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+
+        for (EventType eventType : EventType.values()) {
+
+            TemplateKey key = new TemplateKey(eventType, defaultLocale);
+            loaded.compiled().put(key, compile(key, loaded.sources()));
+
+        }
+
+        return loaded;
+
+    }
+
+    private MailTemplate compile(TemplateKey key, Map<String, Long> sources) {
+
+        DateTimeFormatter instantFormatter = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM)
+                .withLocale(key.locale())
+                .withZone(zone);
+        CompiledTemplate[] parts = new CompiledTemplate[PARTS.length];
+
+        for (int i = 0; i < PARTS.length; i++) {
+
+            Resource resource = resolve(key, PARTS[i][0], PARTS[i][1], sources);
+
+            if (resource == null) {
+
+                continue;
+
+            }
+
+            String name = key.eventType().topic() + "/" + resource.getFilename();
+            String source = read(resource);
+            boolean html = PARTS[i][0].equals("html");
+
+            // a header cannot span lines, so the trailing newline editors add is dropped
+            parts[i] = CompiledTemplate.compile(name, i == 0 ? source.strip() : source, key.eventType().type(), html, instantFormatter);
+
+        }
+
+        if (parts[0] == null || parts[1] == null) {
+
+            throw new IllegalStateException("No subject.txt and text.txt mail template for " + key.eventType().topic() + " in " + location);
+
+        }
+
+        return new MailTemplate(parts[0], parts[1], parts[2]);
+
+    }
+
+    private Resource resolve(TemplateKey key, String part, String extension, Map<String, Long> sources) {
+
+        for (String candidate : candidates(key, part, extension)) {
+
+            Resource resource = resourceLoader.getResource(candidate);
+            boolean exists = resource.exists();
+            // missing candidates are tracked too, adding a more specific file is a change
+            sources.put(candidate, exists ? lastModified(resource) : -1L);
+
+            if (exists) {
+
+                return resource;
+
+            }
+
+        }
+
+        return null;
+
+    }
+
+    private List<String> candidates(TemplateKey key, String part, String extension) {
+
+        String base = location + key.eventType().topic() + "/" + part;
+        Locale locale = key.locale();
+        List<String> candidates = new ArrayList<>(3);
+
+        if (!locale.getCountry().isEmpty()) {
+
+            candidates.add(base + "_" + locale.getLanguage() + "_" + locale.getCountry() + "." + extension);
+
+        }
+
+        if (!locale.getLanguage().isEmpty()) {
+
+            candidates.add(base + "_" + locale.getLanguage() + "." + extension);
+
+        }
+
+        candidates.add(base + "." + extension);
+        return candidates;
+
+    }
+
+    private boolean changed(Map<String, Long> sources) {
+
+        for (Map.Entry<String, Long> source : sources.entrySet()) {
+
+            Resource resource = resourceLoader.getResource(source.getKey());
+            long lastModified = resource.exists() ? lastModified(resource) : -1L;
+
+            if (lastModified != source.getValue()) {
+
+                return true;
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    private static long lastModified(Resource resource) {
+
+        try {
+
+            return resource.lastModified();
+
+        } catch (IOException e) {
+
+            return 0L;
+
+        }
+
+    }
+
+    private static String read(Resource resource) {
+
+        try {
+
+            return resource.getContentAsString(StandardCharsets.UTF_8);
+
+        } catch (IOException e) {
+
+            throw new UncheckedIOException("Could not read mail template " + resource.getDescription(), e);
+
+        }
+
+    }
+
+    private record TemplateKey(EventType eventType, Locale locale) {
+
+        private TemplateKey(EventType eventType, Locale locale) {
+            this.eventType = eventType;
+            this.locale = locale;
+        }
+
+    }
+
+    private record TemplateSet(Map<TemplateKey, MailTemplate> compiled, Map<String, Long> sources) {
+
+        private TemplateSet(Map<TemplateKey, MailTemplate> compiled, Map<String, Long> sources) {
+            this.compiled = compiled;
+            this.sources = sources;
+        }
+
+    }
+
+
+}
@@ -0,0 +1,149 @@
+package com.mailapplication.dispatch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.mail.Message;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MailDispatcherTests {
+
+    private final JavaMailSender mailSender = mock(JavaMailSender.class);
+    private final KafkaListenerEndpointRegistry listenerRegistry = mock(KafkaListenerEndpointRegistry.class);
+    private final MessageListenerContainer container = mock(MessageListenerContainer.class);
+    private final TaskScheduler taskScheduler = mock(TaskScheduler.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void emailsWithoutASlotInTimeAreDeferredAndTheListenersPaused() throws Exception {
+
+        when(listenerRegistry.getListenerContainers()).thenReturn(List.of(container));
+        // two emails a second in a burst of two, and no waiting at all
+        MailDispatcher dispatcher = dispatcher(2, 2, "0s");
+        MimeMessage first = message("a@example.com");
+        MimeMessage second = message("b@example.org");
+        MimeMessage third = message("c@example.net");
+
+        MailSendException e = assertThrows(MailSendException.class, () -> dispatcher.send(first, second, third));
+
+        assertEquals(1, e.getFailedMessages().size());
+        assertInstanceOf(MailThrottledException.class, e.getFailedMessages().get(third));
+        verify(mailSender).send(first, second);
+        assertTrue(dispatcher.isPaused());
+        verify(container).pause();
+        verify(taskScheduler).schedule(any(Runnable.class), any(Instant.class));
+
+    }
+
+    @Test
+    void aThrottlingReplyDefersTheRestOfTheBatch() throws Exception {
+
+        when(listenerRegistry.getListenerContainers()).thenReturn(List.of(container));
+        // one slot now and the next one half a second later, so the emails go out in two sends
+        MailDispatcher dispatcher = dispatcher(2, 1, "1s");
+        MimeMessage first = message("a@example.com");
+        MimeMessage second = message("b@example.org");
+        SMTPSendFailedException throttled = new SMTPSendFailedException("MAIL", 421, "421 4.7.0 Try again later", null,
+                new InternetAddress[0], new InternetAddress[0], new InternetAddress[0]);
+        // the array picks send(MimeMessage...) over send(MimeMessage)
+        doThrow(new MailSendException(Map.of(first, throttled))).when(mailSender).send(new MimeMessage[]{first});
+
+        MailSendException e = assertThrows(MailSendException.class, () -> dispatcher.send(first, second));
+
+        assertSame(throttled, e.getFailedMessages().get(first));
+        assertInstanceOf(MailThrottledException.class, e.getFailedMessages().get(second));
+        verify(mailSender, never()).send(new MimeMessage[]{second});
+        assertTrue(dispatcher.isPaused());
+
+    }
+
+    @Test
+    void aDomainSlotIsGivenBackWhenTheProviderHasNone() throws Exception {
+
+        when(listenerRegistry.getListenerContainers()).thenReturn(List.of(container));
+        // the domain allows two emails and then one every 100 s, the provider one every 50 ms
+        MailDispatcher dispatcher = dispatcher(20, 1, 0.01, 2, "0s");
+        MimeMessage first = message("a@example.com");
+        MimeMessage second = message("b@example.com");
+        MimeMessage third = message("c@example.com");
+
+        assertThrows(MailSendException.class, () -> dispatcher.send(first, second));
+        TimeUnit.MILLISECONDS.sleep(60);
+        // the second email's domain slot was not used, so the third one gets it
+        dispatcher.send(third);
+
+        verify(mailSender).send(new MimeMessage[]{first});
+        verify(mailSender).send(new MimeMessage[]{third});
+
+    }
+
+    @Test
+    void emailsDeferredByAThrottlingReplyGiveBackTheirDomainSlots() throws Exception {
+
+        when(listenerRegistry.getListenerContainers()).thenReturn(List.of(container));
+        // one email per domain at a time, and the provider sends them half a second apart
+        MailDispatcher dispatcher = dispatcher(2, 1, 0.01, 1, "1s");
+        MimeMessage first = message("a@example.com");
+        MimeMessage second = message("b@example.org");
+        SMTPSendFailedException throttled = new SMTPSendFailedException("MAIL", 421, "421 4.7.0 Try again later", null,
+                new InternetAddress[0], new InternetAddress[0], new InternetAddress[0]);
+        doThrow(new MailSendException(Map.of(first, throttled))).when(mailSender).send(new MimeMessage[]{first});
+
+        assertThrows(MailSendException.class, () -> dispatcher.send(first, second));
+
+        // only the domain the provider was asked to send to has used its slot
+        assertEquals(1, meterRegistry.get("mail.dispatch.domains.throttled").gauge().value());
+
+    }
+
+    @Test
+    void domainLimitsAreParsed() {
+
+        assertEquals(Map.of("gmail.com", 20.0, "outlook.com", 2.5), MailDispatcher.parseLimits(" Gmail.com=20, outlook.com = 2.5,"));
+        assertThrows(IllegalArgumentException.class, () -> MailDispatcher.parseLimits("gmail.com"));
+
+    }
+
+    private MailDispatcher dispatcher(double providerRate, int providerBurst, String maxWait) {
+
+        return dispatcher(providerRate, providerBurst, 100, 10, maxWait);
+
+    }
+
+    private MailDispatcher dispatcher(double providerRate, int providerBurst, double domainRate, int domainBurst, String maxWait) {
+
+        return new MailDispatcher(mailSender, listenerRegistry, taskScheduler, meterRegistry, ObservationRegistry.NOOP, "smtp.example.com",
+                providerRate, providerBurst, domainRate, domainBurst, "", Duration.parse("PT" + maxWait.toUpperCase()),
+                Duration.ofMillis(100), Duration.ofMinutes(1));
+
+    }
+
+    private static MimeMessage message(String to) throws Exception {
+
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress(to));
+        return message;
+
+    }
+
+
+}
@@ -0,0 +1,92 @@
+package com.mailapplication.dispatch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTests {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void aFullBucketGrantsTheBurstAtOnceAndThenOneTokenPerInterval() {
+
+        TokenBucket bucket = new TokenBucket(2, 3, 0);
+
+        assertEquals(0, bucket.reserve(0, 10 * SECOND));
+        assertEquals(0, bucket.reserve(0, 10 * SECOND));
+        assertEquals(0, bucket.reserve(0, 10 * SECOND));
+        assertEquals(SECOND / 2, bucket.reserve(0, 10 * SECOND));
+        assertEquals(SECOND, bucket.reserve(0, 10 * SECOND));
+        assertEquals(SECOND * 3 / 2, bucket.waitNanos(0));
+
+    }
+
+    @Test
+    void aTokenPastTheLatestTimeIsNotTaken() {
+
+        TokenBucket bucket = new TokenBucket(1, 1, 0);
+
+        assertEquals(0, bucket.reserve(0, 0));
+        assertEquals(TokenBucket.NO_TOKEN, bucket.reserve(0, SECOND / 2));
+        assertEquals(SECOND, bucket.reserve(0, SECOND));
+
+    }
+
+    @Test
+    void tokensAreGrantedNoEarlierThanAsked() {
+
+        TokenBucket bucket = new TokenBucket(1, 2, 0);
+
+        assertEquals(5 * SECOND, bucket.reserve(5 * SECOND, 10 * SECOND));
+        // the bucket refilled while idle, so the second token of the burst is free at the same time
+        assertEquals(5 * SECOND, bucket.reserve(5 * SECOND, 10 * SECOND));
+        assertEquals(6 * SECOND, bucket.reserve(5 * SECOND, 10 * SECOND));
+
+    }
+
+    @Test
+    void aHoldReleasesOneTokenAtATime() {
+
+        TokenBucket bucket = new TokenBucket(1, 10, 0);
+
+        bucket.holdUntil(30 * SECOND);
+
+        assertEquals(30 * SECOND, bucket.waitNanos(0));
+        assertEquals(30 * SECOND, bucket.reserve(0, 60 * SECOND));
+        assertEquals(31 * SECOND, bucket.reserve(0, 60 * SECOND));
+        assertFalse(bucket.isFull(40 * SECOND));
+        assertTrue(bucket.isFull(41 * SECOND));
+
+    }
+
+    @Test
+    void aReleasedTokenGoesToTheNextReservation() {
+
+        TokenBucket bucket = new TokenBucket(1, 2, 0);
+
+        assertEquals(0, bucket.reserve(0, 10 * SECOND));
+        long unused = bucket.reserve(0, 10 * SECOND);
+        bucket.release(unused);
+
+        assertEquals(0, bucket.reserve(0, 0));
+        assertEquals(SECOND, bucket.reserve(0, 10 * SECOND));
+
+    }
+
+    @Test
+    void aTokenIsGivenBackOnlyOnce() {
+
+        TokenBucket bucket = new TokenBucket(1, 1, 0);
+
+        long unused = bucket.reserve(0, 10 * SECOND);
+        bucket.release(unused);
+        bucket.release(unused);
+
+        assertEquals(0, bucket.reserve(0, 10 * SECOND));
+        assertEquals(SECOND, bucket.reserve(0, 10 * SECOND));
+
+    }
+
+
+}
@@ -0,0 +1,53 @@
+package com.mailapplication.kafka;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyPolicyTests {
+
+    private final ConcurrencyPolicy policy = new ConcurrencyPolicy(1, 8, 1000, 3, Duration.ofSeconds(60));
+
+    @Test
+    void desiredConcurrencyFollowsLagWithinPartitionsLeftByOtherMembers() {
+
+        assertEquals(1, policy.desired(0, 12, 0));
+        assertEquals(1, policy.desired(1000, 12, 0));
+        assertEquals(5, policy.desired(4001, 12, 0));
+        assertEquals(8, policy.desired(1_000_000, 12, 0));
+        assertEquals(4, policy.desired(1_000_000, 12, 8));
+        assertEquals(1, policy.desired(1_000_000, 2, 2));
+
+    }
+
+    @Test
+    void scalesUpAtOnceAndDownOneStepAfterConsecutiveLowChecks() {
+
+        ConcurrencyPolicy.ListenerState state = new ConcurrencyPolicy.ListenerState();
+        long minute = Duration.ofMinutes(1).toNanos();
+        long now = minute;
+
+        assertEquals(6, policy.next(state, 1, 6, now));
+
+        // still cooling down from the last change
+        now += minute / 2;
+        assertEquals(6, policy.next(state, 6, 8, now));
+
+        now += minute;
+        assertEquals(6, policy.next(state, 6, 2, now));
+        assertEquals(6, policy.next(state, 6, 2, now));
+        assertEquals(6, policy.next(state, 6, 6, now));
+        assertEquals(6, policy.next(state, 6, 2, now));
+        assertEquals(6, policy.next(state, 6, 2, now));
+        assertEquals(5, policy.next(state, 6, 2, now));
+
+        now += minute;
+        assertEquals(5, policy.next(state, 5, 2, now));
+        assertEquals(8, policy.next(state, 5, 8, now));
+
+    }
+
+
+}
@@ -0,0 +1,123 @@
+package com.mailapplication.retry;
+
+import com.eventschema.PasswordResetTokenEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MailRetryRouterTests {
+
+    private final MailRetryTopics retryTopics = new MailRetryTopics(new Duration[]{Duration.ofSeconds(30), Duration.ofMinutes(5)});
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, Object> kafkaTemplate = mock(KafkaTemplate.class);
+    private final MailRetryRouter router = new MailRetryRouter(kafkaTemplate, retryTopics, new SimpleMeterRegistry());
+    private final PasswordResetTokenEvent event = new PasswordResetTokenEvent("token-value", Instant.now(), "user@example.com", Instant.now());
+
+    @Test
+    void failuresMoveThroughEveryTierAndEndInTheDeadLetterTopic() {
+
+        when(kafkaTemplate.send(ArgumentMatchers.<ProducerRecord<String, Object>>any())).thenReturn(new CompletableFuture<>());
+        MessagingException failure = new MessagingException("451 try again later");
+
+        ProducerRecord<String, Object> first = forward(record("password-reset", 7, 42L, new RecordHeaders()), failure);
+        assertEquals("password-reset-retry-0", first.topic());
+        assertEquals("user-key", first.key());
+        assertEquals("1", header(first, "mail-retry-attempt"));
+        long dueAt = Long.parseLong(header(first, "mail-retry-due-at"));
+        assertTrue(dueAt > System.currentTimeMillis() + 25_000 && dueAt <= System.currentTimeMillis() + 30_000);
+
+        ProducerRecord<String, Object> second = forward(record("password-reset-retry-0", 0, 3L, first.headers()), failure);
+        assertEquals("password-reset-retry-1", second.topic());
+        assertEquals("2", header(second, "mail-retry-attempt"));
+
+        ProducerRecord<String, Object> last = forward(record("password-reset-retry-1", 1, 9L, second.headers()), failure);
+        assertEquals("password-reset-dlt", last.topic());
+        assertNull(last.headers().lastHeader("mail-retry-due-at"));
+        assertEquals("password-reset", header(last, KafkaHeaders.DLT_ORIGINAL_TOPIC));
+        assertEquals(7, ByteBuffer.wrap(last.headers().lastHeader(KafkaHeaders.DLT_ORIGINAL_PARTITION).value()).getInt());
+        assertEquals(42L, ByteBuffer.wrap(last.headers().lastHeader(KafkaHeaders.DLT_ORIGINAL_OFFSET).value()).getLong());
+        assertEquals(MessagingException.class.getName(), header(last, KafkaHeaders.DLT_EXCEPTION_FQCN));
+        assertEquals("451 try again later", header(last, KafkaHeaders.DLT_EXCEPTION_MESSAGE));
+        assertEquals(1, count(last, KafkaHeaders.DLT_EXCEPTION_FQCN));
+        assertEquals(1, count(last, "traceparent"));
+
+    }
+
+    @Test
+    void rejectedRecipientsSkipTheRetryTiers() throws Exception {
+
+        when(kafkaTemplate.send(ArgumentMatchers.<ProducerRecord<String, Object>>any())).thenReturn(new CompletableFuture<>());
+        SendFailedException rejected = new SendFailedException("550 no such user", null, new InternetAddress[0],
+                new InternetAddress[0], new InternetAddress[]{new InternetAddress("user@example.com")});
+
+        assertEquals("password-reset-dlt", forward(record("password-reset", 0, 0L, new RecordHeaders()), rejected).topic());
+
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProducerRecord<String, Object> forward(ConsumerRecord<String, Object> record, Exception failure) {
+
+        clearInvocations(kafkaTemplate);
+        router.forward(record, failure);
+        ArgumentCaptor<ProducerRecord<String, Object>> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(sent.capture());
+        return sent.getValue();
+
+    }
+
+    private ConsumerRecord<String, Object> record(String topic, int partition, long offset, Iterable<Header> headers) {
+
+        RecordHeaders recordHeaders = new RecordHeaders(headers);
+
+        if (recordHeaders.lastHeader("traceparent") == null) {
+
+            recordHeaders.add("traceparent", "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01".getBytes(StandardCharsets.UTF_8));
+
+        }
+
+        return new ConsumerRecord<>(topic, partition, offset, 0L, TimestampType.CREATE_TIME, 0, 0, "user-key", event,
+                recordHeaders, Optional.empty());
+
+    }
+
+    private static String header(ProducerRecord<?, ?> record, String key) {
+        return new String(record.headers().lastHeader(key).value(), StandardCharsets.UTF_8);
+    }
+
+    private static int count(ProducerRecord<?, ?> record, String key) {
+
+        int count = 0;
+
+        for (Header ignored : record.headers().headers(key)) {
+
+            count++;
+
+        }
+
+        return count;
+
+    }
+
+
+}
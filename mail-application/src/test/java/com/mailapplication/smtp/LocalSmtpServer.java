@@ -0,0 +1,161 @@
+package com.mailapplication.smtp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process SMTP server, in the spirit of GreenMail, so the transport pool can be tested offline.
+ * It accepts AUTH PLAIN with any credentials and rejects recipients whose address starts with "reject".
+ */
+class LocalSmtpServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final List<Socket> openConnections = new CopyOnWriteArrayList<>();
+    private final List<String> receivedMessages = new CopyOnWriteArrayList<>();
+    private final AtomicInteger acceptedConnections = new AtomicInteger();
+    private final AtomicInteger authentications = new AtomicInteger();
+
+    LocalSmtpServer() throws IOException {
+
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().start(this::acceptLoop);
+
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    int getAcceptedConnections() {
+        return acceptedConnections.get();
+    }
+
+    int getAuthentications() {
+        return authentications.get();
+    }
+
+    List<String> getReceivedMessages() {
+        return receivedMessages;
+    }
+
+    void dropConnections() throws IOException {
+
+        for (Socket socket : openConnections) {
+
+            socket.close();
+
+        }
+
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        serverSocket.close();
+        dropConnections();
+
+    }
+
+    private void acceptLoop() {
+
+        while (!serverSocket.isClosed()) {
+
+            try {
+
+                Socket socket = serverSocket.accept();
+                acceptedConnections.incrementAndGet();
+                openConnections.add(socket);
+                Thread.ofVirtual().start(() -> handle(socket));
+
+            } catch (IOException e) {
+
+                return;
+
+            }
+
+        }
+
+    }
+
+    private void handle(Socket socket) {
+
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))) {
+
+            OutputStream out = socket.getOutputStream();
+            reply(out, "220 localhost ESMTP");
+            String line;
+
+            while ((line = in.readLine()) != null) {
+
+                String command = line.toUpperCase();
+
+                if (command.startsWith("EHLO")) {
+
+                    reply(out, "250-localhost\r\n250-AUTH PLAIN\r\n250 OK");
+
+                } else if (command.startsWith("AUTH PLAIN")) {
+
+                    authentications.incrementAndGet();
+                    reply(out, "235 2.7.0 Authentication successful");
+
+                } else if (command.startsWith("RCPT TO")) {
+
+                    reply(out, command.startsWith("RCPT TO:<REJECT") ? "550 5.1.1 No such user" : "250 OK");
+
+                } else if (command.equals("DATA")) {
+
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    StringBuilder message = new StringBuilder();
+
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+
+                        message.append(line).append('\n');
+
+                    }
+
+                    receivedMessages.add(message.toString());
+                    reply(out, "250 OK");
+
+                } else if (command.equals("QUIT")) {
+
+                    reply(out, "221 Bye");
+                    return;
+
+                } else {
+
+                    // HELO, MAIL FROM, RSET and NOOP
+                    reply(out, "250 OK");
+
+                }
+
+            }
+
+        } catch (IOException ignored) {
+
+        } finally {
+
+            openConnections.remove(socket);
+
+        }
+
+    }
+
+    private void reply(OutputStream out, String response) throws IOException {
+
+        out.write((response + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+
+    }
+
+
+}
@@ -0,0 +1,118 @@
+package com.mailapplication.smtp;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PooledJavaMailSenderTests {
+
+    private LocalSmtpServer smtpServer;
+    private PooledJavaMailSender mailSender;
+
+    @BeforeEach
+    void setUp() throws Exception {
+
+        smtpServer = new LocalSmtpServer();
+        mailSender = new PooledJavaMailSender(2, Duration.ofSeconds(10), Duration.ofMinutes(1), Duration.ofSeconds(30), 100);
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtpServer.getPort());
+        mailSender.setUsername("user");
+        mailSender.setPassword("secret");
+        mailSender.getJavaMailProperties().put("mail.smtp.auth", "true");
+
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+
+        mailSender.destroy();
+        smtpServer.close();
+
+    }
+
+    @Test
+    void concurrentSendsShareTheBoundedSetOfConnections() throws Exception {
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        mailSender.bindTo(meterRegistry);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+
+            List<Future<?>> sends = new ArrayList<>();
+
+            for (int i = 0; i < 40; i++) {
+
+                int index = i;
+                sends.add(executor.submit(() -> mailSender.send(message("user" + index + "@example.com"))));
+
+            }
+
+            for (Future<?> send : sends) {
+
+                send.get();
+
+            }
+
+        }
+
+        assertEquals(40, smtpServer.getReceivedMessages().size());
+        assertTrue(smtpServer.getAcceptedConnections() <= 2);
+        assertEquals(smtpServer.getAcceptedConnections(), smtpServer.getAuthentications());
+        assertEquals(40, meterRegistry.get("mail.smtp.send").tag("outcome", "success").timer().count());
+        assertEquals(smtpServer.getAcceptedConnections(), meterRegistry.get("mail.smtp.connections").tag("state", "idle").gauge().value());
+
+    }
+
+    @Test
+    void brokenConnectionIsReplacedTransparently() throws Exception {
+
+        mailSender.send(message("first@example.com"));
+        smtpServer.dropConnections();
+
+        mailSender.send(message("second@example.com"));
+
+        assertEquals(2, smtpServer.getReceivedMessages().size());
+        assertEquals(2, smtpServer.getAcceptedConnections());
+
+    }
+
+    @Test
+    void rejectedRecipientOnlyFailsItsOwnMessage() {
+
+        SimpleMailMessage rejected = message("reject@example.com");
+
+        MailSendException exception = assertThrows(MailSendException.class,
+                () -> mailSender.send(message("a@example.com"), rejected, message("b@example.com")));
+
+        assertEquals(1, exception.getFailedMessages().size());
+        assertTrue(exception.getFailedMessages().containsKey(rejected));
+        assertEquals(2, smtpServer.getReceivedMessages().size());
+        assertEquals(1, smtpServer.getAcceptedConnections());
+
+    }
+
+    private SimpleMailMessage message(String to) {
+
+        SimpleMailMessage mailMessage = new SimpleMailMessage();
+        mailMessage.setFrom("noreply@example.com");
+        mailMessage.setTo(to);
+        mailMessage.setSubject("Subject");
+        mailMessage.setText("Body");
+        return mailMessage;
+
+    }
+
+
+}
@@ -0,0 +1,138 @@
+package com.mailapplication.template;
+
+import com.eventschema.EventType;
+import com.eventschema.PasswordResetTokenEvent;
+import com.eventschema.UserAdminAccessGrant;
+import com.eventschema.UserCreatedEvent;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Locale;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailTemplateRegistryTests {
+
+    @TempDir
+    Path templates;
+
+    @Test
+    void shippedTemplatesRenderEveryEventAsTextAndHtml() throws Exception {
+
+        MailTemplateRegistry registry = registry("classpath:/mail-templates/", Duration.ZERO);
+        PasswordResetTokenEvent reset = new PasswordResetTokenEvent("token-value", Instant.parse("2025-01-02T03:04:05Z"), "user@example.com",
+                Instant.parse("2025-01-02T02:49:05Z"));
+
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+        registry.template(EventType.PASSWORD_RESET).prepare(message, reset.username(), reset);
+        message.saveChanges();
+
+        assertEquals("Password reset Token", message.getSubject());
+        assertEquals("user@example.com", message.getAllRecipients()[0].toString());
+        assertInstanceOf(MimeMultipart.class, message.getContent());
+        assertTrue(registry.template(EventType.PASSWORD_RESET).renderText(reset).contains("token-value"));
+        assertTrue(registry.template(EventType.PASSWORD_RESET).renderHtml(reset).contains("Jan 2, 2025"));
+
+        UserAdminAccessGrant grant = new UserAdminAccessGrant("admin@example.com", "Welcome <b>aboard</b>", Instant.now());
+        assertEquals("You now have admin access, admin@example.com", registry.template(EventType.ADMIN_GRANT).renderSubject(grant));
+        assertTrue(registry.template(EventType.ADMIN_GRANT).renderHtml(grant).contains("Welcome &lt;b&gt;aboard&lt;/b&gt;"));
+        assertNotNull(registry.template(EventType.USER_CREATED).renderHtml(new UserCreatedEvent(1L, Instant.now(), "user@example.com")));
+
+    }
+
+    @Test
+    void localeFallsBackFromCountryToLanguageToBase() throws Exception {
+
+        write("user-created/subject.txt", "Welcome {{email}}");
+        write("user-created/subject_pt.txt", "Bem-vindo {{email}}");
+        write("user-created/text.txt", "Created {{ id }} at {{createdAt}}");
+        writeAllOtherEvents();
+
+        MailTemplateRegistry registry = registry(templates.toUri().toString(), Duration.ZERO);
+        UserCreatedEvent event = new UserCreatedEvent(7L, Instant.EPOCH, "user@example.com");
+
+        assertEquals("Bem-vindo user@example.com", registry.template(EventType.USER_CREATED, Locale.of("pt", "BR")).renderSubject(event));
+        assertEquals("Welcome user@example.com", registry.template(EventType.USER_CREATED, Locale.GERMAN).renderSubject(event));
+        assertTrue(registry.template(EventType.USER_CREATED).renderText(event).startsWith("Created 7 at Jan 1, 1970"));
+        assertNull(registry.template(EventType.USER_CREATED).renderHtml(event));
+        assertFalse(registry.template(EventType.USER_CREATED).isMultipart());
+
+    }
+
+    @Test
+    void unknownFieldsAndMissingPartsFailAtStartup() throws Exception {
+
+        write("user-created/subject.txt", "Welcome {{name}}");
+        write("user-created/text.txt", "Hello");
+        writeAllOtherEvents();
+
+        IllegalStateException unknownField = assertThrows(IllegalStateException.class, () -> registry(templates.toUri().toString(), Duration.ZERO));
+        assertTrue(unknownField.getMessage().contains("{{name}}"));
+
+        Files.delete(templates.resolve("user-created/subject.txt"));
+
+        assertThrows(IllegalStateException.class, () -> registry(templates.toUri().toString(), Duration.ZERO));
+
+    }
+
+    @Test
+    void changedTemplatesAreRecompiledAndBrokenEditsKeepThePreviousVersion() throws Exception {
+
+        write("user-created/subject.txt", "Welcome");
+        write("user-created/text.txt", "Hello");
+        writeAllOtherEvents();
+
+        MailTemplateRegistry registry = registry(templates.toUri().toString(), Duration.ofNanos(1));
+        UserCreatedEvent event = new UserCreatedEvent(1L, Instant.now(), "user@example.com");
+
+        write("user-created/subject.txt", "Welcome back");
+        assertEquals("Welcome back", registry.template(EventType.USER_CREATED).renderSubject(event));
+
+        write("user-created/subject.txt", "Welcome {{unclosed");
+        assertEquals("Welcome back", registry.template(EventType.USER_CREATED).renderSubject(event));
+
+        write("user-created/html.html", "<p>{{email}}</p>");
+        write("user-created/subject.txt", "Welcome back");
+        assertEquals("<p>user@example.com</p>", registry.template(EventType.USER_CREATED).renderHtml(event));
+
+    }
+
+    private MailTemplateRegistry registry(String location, Duration refreshInterval) {
+        return new MailTemplateRegistry(new DefaultResourceLoader(), location, Locale.ENGLISH, ZoneOffset.UTC, refreshInterval);
+    }
+
+    private void writeAllOtherEvents() throws Exception {
+
+        for (String topic : new String[]{"admin-grant", "password-reset"}) {
+
+            write(topic + "/subject.txt", "Subject");
+            write(topic + "/text.txt", "Text");
+
+        }
+
+    }
+
+    // bumps the modification time, several writes can land within the file system's timestamp resolution
+    private void write(String name, String content) throws Exception {
+
+        Path file = templates.resolve(name);
+        Files.createDirectories(file.getParent());
+        FileTime previous = Files.exists(file) ? Files.getLastModifiedTime(file) : FileTime.fromMillis(0);
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Math.max(System.currentTimeMillis(), previous.toMillis() + 1000)));
+
+    }
+
+
+}
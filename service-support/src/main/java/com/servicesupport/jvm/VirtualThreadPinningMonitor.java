@@ -0,0 +1,101 @@
+package com.servicesupport.jvm;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Streams JFR {@code jdk.VirtualThreadPinned} events while virtual threads are enabled. A virtual thread that blocks
+ * inside a synchronized block (JavaMail's SMTPTransport, older JDBC drivers) holds on to its carrier thread, so each
+ * pinning is counted and timed, and every distinct blocking location is logged once with its stack. Both applications
+ * {@code @Import} it.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+@ConditionalOnProperty(name = "virtual-threads.pinning-monitor.enabled", matchIfMissing = true)
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 8;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final Set<String> reportedLocations = ConcurrentHashMap.newKeySet();
+    private final Timer pinnedTimer;
+    private final Duration threshold;
+    private RecordingStream recordingStream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry, @Value("${virtual-threads.pinning-monitor.threshold:20ms}") Duration threshold) {
+
+        this.pinnedTimer = Timer.builder("jvm.threads.virtual.pinned").register(meterRegistry);
+        this.threshold = threshold;
+
+    }
+
+    @Override
+    public void start() {
+
+        recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+        recordingStream.startAsync();
+
+    }
+
+    @Override
+    public void stop() {
+
+        recordingStream.close();
+        recordingStream = null;
+
+    }
+
+    @Override
+    public boolean isRunning() {
+
+        return recordingStream != null;
+
+    }
+
+    private void onPinned(RecordedEvent event) {
+
+        pinnedTimer.record(event.getDuration());
+
+        if (event.getStackTrace() == null) {
+
+            return;
+
+        }
+
+        String stack = event.getStackTrace().getFrames().stream().limit(LOGGED_FRAMES).map(this::describe).collect(Collectors.joining("\n\tat "));
+
+        if (reportedLocations.add(stack)) {
+
+            logger.warn("Virtual thread pinned to its carrier for {} ms\n\tat {}", event.getDuration().toMillis(), stack);
+
+        }
+
+    }
+
+    private String describe(RecordedFrame frame) {
+
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+
+    }
+
+
+}
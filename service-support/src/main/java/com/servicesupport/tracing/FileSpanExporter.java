@@ -0,0 +1,164 @@
+package com.servicesupport.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends spans to a file, one JSON object per line, so traces can be collected without running a collector: the
+ * spans of one trace, from both applications, are found with {@code grep <trace id>}. Spans are queued and written by
+ * a background thread; when the queue is full they are dropped and counted instead of slowing the caller down.
+ */
+public class FileSpanExporter implements SpanExporter, Closeable {
+
+    private static final int WRITE_BATCH = 512;
+
+    private final BlockingQueue<SpanData> queue;
+    private final BufferedWriter writer;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writerThread;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private volatile boolean closed;
+
+    public FileSpanExporter(Path file, int queueCapacity) throws IOException {
+
+        if (file.toAbsolutePath().getParent() != null) {
+
+            Files.createDirectories(file.toAbsolutePath().getParent());
+
+        }
+
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.writerThread = Thread.ofPlatform().name("span-file-exporter").daemon().start(this::writeLoop);
+
+    }
+
+    @Override
+    public void export(SpanData span) {
+
+        if (closed || !queue.offer(span)) {
+
+            dropped.incrementAndGet();
+
+        }
+
+    }
+
+    public long getDroppedSpans() {
+
+        return dropped.get();
+
+    }
+
+    /**
+     * Writes what is still queued and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+
+        closed = true;
+        writerThread.interrupt();
+
+        try {
+
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+        }
+
+        writer.close();
+
+    }
+
+    private void writeLoop() {
+
+        List<SpanData> batch = new ArrayList<>(WRITE_BATCH);
+
+        while (!closed || !queue.isEmpty()) {
+
+            try {
+
+                if (queue.isEmpty()) {
+
+                    batch.add(queue.take());
+
+                }
+
+            } catch (InterruptedException e) {
+
+                // close() interrupts the wait, the loop then drains the queue
+                continue;
+
+            }
+
+            queue.drainTo(batch, WRITE_BATCH - batch.size());
+
+            try {
+
+                for (SpanData span : batch) {
+
+                    writer.write(objectMapper.writeValueAsString(toJson(span)));
+                    writer.newLine();
+
+                }
+
+                writer.flush();
+
+            } catch (IOException e) {
+
+                dropped.addAndGet(batch.size());
+                logger.warn("Failed to write {} spans: {}", batch.size(), e.toString());
+
+            }
+
+            batch.clear();
+
+        }
+
+    }
+
+    private static Map<String, Object> toJson(SpanData span) {
+
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("traceId", span.context().traceId());
+        json.put("spanId", span.context().spanId());
+        json.put("parentSpanId", span.parentSpanId());
+        json.put("service", span.service());
+        json.put("name", span.name());
+        json.put("start", span.start().toString());
+        json.put("durationMicros", TimeUnit.NANOSECONDS.toMicros(span.durationNanos()));
+        json.put("attributes", span.attributes());
+
+        if (span.error() != null) {
+
+            json.put("error", span.error());
+
+        }
+
+        return json;
+
+    }
+
+
+}
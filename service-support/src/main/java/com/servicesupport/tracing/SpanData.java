@@ -0,0 +1,25 @@
+package com.servicesupport.tracing;
+
+import com.eventschema.tracing.TraceContext;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * A finished span, as handed to a {@link SpanExporter}.
+ */
+public record SpanData(String service, String name, TraceContext context, String parentSpanId, Instant start, long durationNanos,
+                       Map<String, String> attributes, String error) {
+
+    public SpanData(String service, String name, TraceContext context, String parentSpanId, Instant start, long durationNanos,
+                    Map<String, String> attributes, String error) {
+        this.service = service;
+        this.name = name;
+        this.context = context;
+        this.parentSpanId = parentSpanId;
+        this.start = start;
+        this.durationNanos = durationNanos;
+        this.attributes = attributes;
+        this.error = error;
+    }
+}
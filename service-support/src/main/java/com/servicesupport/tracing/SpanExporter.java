@@ -0,0 +1,12 @@
+package com.servicesupport.tracing;
+
+/**
+ * Receives every sampled span when it ends. Called on the thread that ended the span, so it must not block.
+ */
+@FunctionalInterface
+public interface SpanExporter {
+
+    void export(SpanData span);
+
+
+}
@@ -0,0 +1,196 @@
+package com.servicesupport.tracing;
+
+import com.eventschema.tracing.TraceContext;
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.ObservationView;
+import io.micrometer.observation.transport.ReceiverContext;
+import io.micrometer.observation.transport.SenderContext;
+import org.slf4j.MDC;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Turns every observation into a span. Its parent is, in order: a parent set with {@link #setRemoteParent}, the
+ * traceparent of a {@link ReceiverContext}'s carrier (an HTTP request or a consumed record), or the enclosing
+ * observation. Without any, the span starts a new trace, sampled with the configured probability. A
+ * {@link SenderContext} gets the span's traceparent written to its carrier. Sampled spans go to the exporter when
+ * they stop, with the observation's key values as attributes. While an observation is in scope its ids are in the
+ * MDC as {@code traceId} and {@code spanId}, so log lines can be matched to spans.
+ */
+public class SpanObservationHandler implements ObservationHandler<Observation.Context> {
+
+    private static final String TRACE_ID = "traceId";
+    private static final String SPAN_ID = "spanId";
+
+    private final String service;
+    private final SpanExporter exporter;
+    private final double samplingProbability;
+
+    public SpanObservationHandler(String service, SpanExporter exporter, double samplingProbability) {
+        this.service = service;
+        this.exporter = exporter;
+        this.samplingProbability = samplingProbability;
+    }
+
+    /**
+     * Makes the observation, which must not have started yet, continue a trace that is not in scope, such as one
+     * stored with an outbox row.
+     */
+    public static void setRemoteParent(Observation.Context context, TraceContext parent) {
+
+        if (parent != null) {
+
+            context.put(RemoteParent.class, new RemoteParent(parent));
+
+        }
+
+    }
+
+    /**
+     * @return the trace context of the current observation's span, or {@code null} when nothing is traced
+     */
+    public static TraceContext currentTraceContext(ObservationRegistry registry) {
+
+        Observation observation = registry.getCurrentObservation();
+        return observation == null ? null : traceContext(observation);
+
+    }
+
+    public static TraceContext traceContext(ObservationView observation) {
+
+        Span span = observation.getContextView().get(Span.class);
+        return span == null ? null : span.context();
+
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+
+        TraceContext parent = parent(context);
+        TraceContext traceContext = parent == null ? TraceContext.root(ThreadLocalRandom.current().nextDouble() < samplingProbability) : parent.child();
+
+        context.put(Span.class, new Span(traceContext, parent == null ? null : parent.spanId(), Instant.now(), System.nanoTime()));
+
+        if (context instanceof SenderContext<?> sender && sender.getCarrier() != null) {
+
+            inject(sender, traceContext);
+
+        }
+
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+
+        Span span = context.get(Span.class);
+
+        if (span == null || !span.context().sampled()) {
+
+            return;
+
+        }
+
+        Map<String, String> attributes = new LinkedHashMap<>();
+
+        for (KeyValue keyValue : context.getAllKeyValues()) {
+
+            attributes.put(keyValue.getKey(), keyValue.getValue());
+
+        }
+
+        Throwable error = context.getError();
+
+        exporter.export(new SpanData(service, context.getContextualName() != null ? context.getContextualName() : context.getName(),
+                span.context(), span.parentSpanId(), span.start(), System.nanoTime() - span.startNanos(), attributes,
+                error == null ? null : error.getClass().getName() + ": " + error.getMessage()));
+
+    }
+
+    @Override
+    public void onScopeOpened(Observation.Context context) {
+
+        putInMdc(context.get(Span.class));
+
+    }
+
+    @Override
+    public void onScopeClosed(Observation.Context context) {
+
+        ObservationView parentObservation = context.getParentObservation();
+        putInMdc(parentObservation == null ? null : parentObservation.getContextView().get(Span.class));
+
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return true;
+    }
+
+    private static TraceContext parent(Observation.Context context) {
+
+        RemoteParent remoteParent = context.get(RemoteParent.class);
+
+        if (remoteParent != null) {
+
+            return remoteParent.context();
+
+        }
+
+        if (context instanceof ReceiverContext<?> receiver && receiver.getCarrier() != null) {
+
+            TraceContext extracted = extract(receiver);
+
+            if (extracted != null) {
+
+                return extracted;
+
+            }
+
+        }
+
+        ObservationView parentObservation = context.getParentObservation();
+        return parentObservation == null ? null : traceContext(parentObservation);
+
+    }
+
+    private static void putInMdc(Span span) {
+
+        if (span == null) {
+
+            MDC.remove(TRACE_ID);
+            MDC.remove(SPAN_ID);
+            return;
+
+        }
+
+        MDC.put(TRACE_ID, span.context().traceId());
+        MDC.put(SPAN_ID, span.context().spanId());
+
+    }
+
+    private static <C> TraceContext extract(ReceiverContext<C> receiver) {
+
+        return TraceContext.parse(receiver.getGetter().get(receiver.getCarrier(), TraceContext.HEADER));
+
+    }
+
+    private static <C> void inject(SenderContext<C> sender, TraceContext traceContext) {
+
+        sender.getSetter().set(sender.getCarrier(), TraceContext.HEADER, traceContext.traceparent());
+
+    }
+
+    private record RemoteParent(TraceContext context) {
+    }
+
+    private record Span(TraceContext context, String parentSpanId, Instant start, long startNanos) {
+    }
+
+
+}
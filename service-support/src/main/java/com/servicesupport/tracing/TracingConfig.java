@@ -0,0 +1,53 @@
+package com.servicesupport.tracing;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Makes every observation of the application that imports it a span of the service {@code spring.application.name}.
+ * With {@code tracing.exporter} set to {@code file} the spans are written as JSON lines to {@code tracing.file.path},
+ * by default {@code traces/<spring.application.name>-spans.jsonl}; otherwise they are only propagated.
+ */
+@Configuration
+public class TracingConfig {
+
+    // a file exporter is closed through the inferred destroy method, which writes the spans still queued
+    @Bean
+    public SpanExporter spanExporter(@Value("${tracing.exporter:none}") String exporter,
+                                     @Value("${tracing.file.path:traces/${spring.application.name}-spans.jsonl}") Path path,
+                                     @Value("${tracing.file.queue-capacity:10000}") int queueCapacity,
+                                     MeterRegistry meterRegistry) throws IOException {
+
+        if (!exporter.equals("file")) {
+
+            return span -> {
+            };
+
+        }
+
+        FileSpanExporter fileSpanExporter = new FileSpanExporter(path, queueCapacity);
+
+        Gauge.builder("tracing.spans.dropped", fileSpanExporter, FileSpanExporter::getDroppedSpans)
+                .description("Spans not written because the export queue was full or the file could not be written")
+                .register(meterRegistry);
+
+        return fileSpanExporter;
+
+    }
+
+    @Bean
+    public SpanObservationHandler spanObservationHandler(@Value("${spring.application.name}") String service, SpanExporter spanExporter,
+                                                         @Value("${tracing.sampling.probability:1.0}") double samplingProbability) {
+
+        return new SpanObservationHandler(service, spanExporter, samplingProbability);
+
+    }
+
+
+}
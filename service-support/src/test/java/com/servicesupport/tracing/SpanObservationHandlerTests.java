@@ -0,0 +1,109 @@
+package com.servicesupport.tracing;
+
+import com.eventschema.tracing.KafkaTracing;
+import com.eventschema.tracing.TraceContext;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpanObservationHandlerTests {
+
+    private final List<SpanData> spans = new ArrayList<>();
+    private final ObservationRegistry registry = registry("user-application");
+
+    @Test
+    void theTraceFollowsTheRecordHeadersIntoTheConsumer() {
+
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(TraceContext.HEADER, "stale".getBytes(StandardCharsets.UTF_8));
+
+        Observation.createNotStarted("user.db.write", registry).observe(() ->
+                Observation.createNotStarted("outbox.send", () -> KafkaTracing.sender(headers), registry).observe(() -> { }));
+        Observation.createNotStarted("mail.consume", () -> KafkaTracing.receiver(headers), registry("mail-application"))
+                .lowCardinalityKeyValue("topic", "user-created")
+                .observe(() -> { });
+
+        SpanData send = spans.get(0);
+        SpanData write = spans.get(1);
+        SpanData consume = spans.get(2);
+        assertEquals(1, count(headers));
+        assertEquals(send.context().traceparent(), new String(headers.lastHeader(TraceContext.HEADER).value(), StandardCharsets.UTF_8));
+        assertNull(write.parentSpanId());
+        assertEquals(write.context().spanId(), send.parentSpanId());
+        assertEquals(send.context().spanId(), consume.parentSpanId());
+        assertEquals(write.context().traceId(), consume.context().traceId());
+        assertEquals("mail-application", consume.service());
+        assertEquals("user-created", consume.attributes().get("topic"));
+
+    }
+
+    @Test
+    void aRemoteParentContinuesATraceThatIsNotInScope() {
+
+        TraceContext stored = TraceContext.root(true);
+        Observation.Context context = new Observation.Context();
+        SpanObservationHandler.setRemoteParent(context, stored);
+
+        Observation.createNotStarted("outbox.send", () -> context, registry)
+                .observe(() -> assertEquals(stored.traceId(), SpanObservationHandler.currentTraceContext(registry).traceId()));
+
+        assertEquals(stored.spanId(), spans.get(0).parentSpanId());
+
+    }
+
+    @Test
+    void unsampledTracesAreNotExported() {
+
+        Observation.Context context = new Observation.Context();
+        SpanObservationHandler.setRemoteParent(context, TraceContext.root(false));
+
+        Observation.createNotStarted("outbox.send", () -> context, registry).observe(() -> { });
+
+        assertTrue(spans.isEmpty());
+
+    }
+
+    @Test
+    void onlyVersion00TraceparentsAreRead() {
+
+        TraceContext context = TraceContext.root(true);
+
+        assertEquals(context, TraceContext.parse(context.traceparent()));
+        assertNull(TraceContext.parse("01-" + context.traceparent().substring(3)));
+        assertNull(TraceContext.parse("00-00000000000000000000000000000000-" + context.spanId() + "-01"));
+        assertNull(TraceContext.parse(context.traceparent().toUpperCase()));
+        assertNull(TraceContext.parse(null));
+
+    }
+
+    private ObservationRegistry registry(String service) {
+
+        ObservationRegistry registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(new SpanObservationHandler(service, spans::add, 1.0));
+        return registry;
+
+    }
+
+    private static int count(RecordHeaders headers) {
+
+        int count = 0;
+
+        for (var ignored : headers.headers(TraceContext.HEADER)) {
+
+            count++;
+
+        }
+
+        return count;
+
+    }
+
+
+}
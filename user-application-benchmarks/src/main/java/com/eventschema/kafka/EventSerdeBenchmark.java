@@ -0,0 +1,77 @@
+package com.eventschema.kafka;
+
+import com.eventschema.UserCreatedEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The binary event serde against the Spring Kafka JSON serde it replaced, configured as the applications had it
+ * (no type headers, default type on the consumer).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventSerdeBenchmark {
+
+    private static final String TOPIC = "user-created";
+
+    private final EventSerializer eventSerializer = new EventSerializer();
+    private final EventDeserializer eventDeserializer = new EventDeserializer();
+    private final JsonSerializer<Object> jsonSerializer = new JsonSerializer<>();
+    private final JsonDeserializer<Object> jsonDeserializer = new JsonDeserializer<>();
+    private UserCreatedEvent event;
+    private byte[] binary;
+    private byte[] json;
+
+    @Setup
+    public void setUp() {
+
+        jsonSerializer.configure(Map.of(JsonSerializer.ADD_TYPE_INFO_HEADERS, false), false);
+        jsonDeserializer.configure(Map.of(JsonDeserializer.VALUE_DEFAULT_TYPE, UserCreatedEvent.class.getName(),
+                JsonDeserializer.TRUSTED_PACKAGES, "*"), false);
+
+        event = new UserCreatedEvent(123_456L, Instant.now(), "some.user.name@example.com");
+        binary = eventSerializer.serialize(TOPIC, event);
+        json = jsonSerializer.serialize(TOPIC, event);
+
+    }
+
+    @Benchmark
+    public byte[] serializeBinary() {
+        return eventSerializer.serialize(TOPIC, event);
+    }
+
+    @Benchmark
+    public byte[] serializeJson() {
+        return jsonSerializer.serialize(TOPIC, event);
+    }
+
+    @Benchmark
+    public Object deserializeBinary() {
+        return eventDeserializer.deserialize(TOPIC, binary);
+    }
+
+    @Benchmark
+    public Object deserializeJson() {
+        return jsonDeserializer.deserialize(TOPIC, json);
+    }
+
+
+}
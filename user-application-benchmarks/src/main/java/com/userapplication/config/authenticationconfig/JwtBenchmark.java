@@ -0,0 +1,211 @@
+package com.userapplication.config.authenticationconfig;
+
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.userapplication.entity.RoleEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.config.annotation.web.configuration.OAuth2AuthorizationServerConfiguration;
+import org.springframework.security.oauth2.server.authorization.token.JwtEncodingContext;
+
+import java.security.KeyPairGenerator;
+import java.security.KeyPair;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issuing (claim customization, and RS256 against ES256 signing), and the per-request bearer token work: signature
+ * verification with and without {@link CachingJwtDecoder}, and the JWT to authentication conversion for both the
+ * string and the compact authorities claim.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    private final RoleAuthorityRegistry roleAuthorityRegistry = new RoleAuthorityRegistry(
+            () -> List.of(new RoleEntity(1L, "Administrator", "ROLE_ADMIN"), new RoleEntity(2L, "User", "ROLE_USER")));
+    private final JwtTokenCustomizer jwtTokenCustomizer = new JwtTokenCustomizer(roleAuthorityRegistry, JwtTokenCustomizer.AuthoritiesClaimFormat.STRINGS);
+    private final JwtTokenCustomizer compactJwtTokenCustomizer = new JwtTokenCustomizer(roleAuthorityRegistry, JwtTokenCustomizer.AuthoritiesClaimFormat.COMPACT);
+    private final JwtAuthenticationConverter jwtAuthenticationConverter = new JwtAuthenticationConverter(roleAuthorityRegistry, 10_000);
+    private NimbusJwtEncoder jwtEncoder;
+    private NimbusJwtEncoder es256JwtEncoder;
+    private JwtDecoder jwtDecoder;
+    private JwtDecoder es256JwtDecoder;
+    private CachingJwtDecoder cachingJwtDecoder;
+    private RegisteredClient registeredClient;
+    private Authentication principal;
+    private Jwt jwt;
+    private Jwt compactJwt;
+    private Jwt es256Jwt;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        // the key types JwkStoreService generates for jwk.algorithm RS256 and ES256
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+        RSAKey rsaKey = new RSAKey.Builder((RSAPublicKey) keyPair.getPublic()).privateKey((RSAPrivateKey) keyPair.getPrivate())
+                .keyID(UUID.randomUUID().toString()).build();
+        jwtEncoder = new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(rsaKey)));
+        ECKey ecKey = new ECKeyGenerator(Curve.P_256).keyID(UUID.randomUUID().toString()).generate();
+        es256JwtEncoder = new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(ecKey)));
+
+        registeredClient = RegisteredClient.withId(UUID.randomUUID().toString())
+                .clientId("benchmark-client")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                .redirectUri("https://www.google.com.br")
+                .build();
+
+        principal = new UsernamePasswordAuthenticationToken("benchmark@example.com", null,
+                AuthorityUtils.createAuthorityList("ROLE_ADMIN", "ROLE_USER"));
+
+        jwt = jwtEncoder.encode(JwtEncoderParameters.from(JwsHeader.with(SignatureAlgorithm.RS256).build(), claims().claim("authorities", List.of("ROLE_ADMIN", "ROLE_USER")).build()));
+
+        compactJwt = jwtEncoder.encode(JwtEncoderParameters.from(JwsHeader.with(SignatureAlgorithm.RS256).build(), claims().claim("roles", 3L).build()));
+        jwtDecoder = NimbusJwtDecoder.withPublicKey((RSAPublicKey) keyPair.getPublic()).build();
+        cachingJwtDecoder = new CachingJwtDecoder(jwtDecoder, 10_000, Duration.ofHours(1));
+
+        es256Jwt = es256JwtEncoder.encode(JwtEncoderParameters.from(JwsHeader.with(SignatureAlgorithm.ES256).build(), claims().claim("authorities", List.of("ROLE_ADMIN", "ROLE_USER")).build()));
+        es256JwtDecoder = OAuth2AuthorizationServerConfiguration.jwtDecoder(new ImmutableJWKSet<>(new JWKSet(ecKey.toPublicJWK())));
+
+
+    }
+
+    @Benchmark
+    public JwtClaimsSet customize() {
+
+        JwtEncodingContext context = encodingContext();
+        jwtTokenCustomizer.customize(context);
+        return context.getClaims().build();
+
+    }
+
+    @Benchmark
+    public JwtClaimsSet customizeCompact() {
+
+        JwtEncodingContext context = encodingContext();
+        compactJwtTokenCustomizer.customize(context);
+        return context.getClaims().build();
+
+    }
+
+    @Benchmark
+    public Jwt customizeAndSign() {
+
+        JwtEncodingContext context = encodingContext();
+        jwtTokenCustomizer.customize(context);
+        return jwtEncoder.encode(JwtEncoderParameters.from(context.getJwsHeader().build(), context.getClaims().build()));
+
+    }
+
+    @Benchmark
+    public Jwt customizeAndSignEs256() {
+
+        JwtEncodingContext context = encodingContext();
+        jwtTokenCustomizer.customize(context);
+        return es256JwtEncoder.encode(JwtEncoderParameters.from(context.getJwsHeader().algorithm(SignatureAlgorithm.ES256).build(), context.getClaims().build()));
+
+    }
+
+    @Benchmark
+    public Jwt decode() {
+
+        return jwtDecoder.decode(jwt.getTokenValue());
+
+    }
+
+    @Benchmark
+    public Jwt decodeEs256() {
+
+        return es256JwtDecoder.decode(es256Jwt.getTokenValue());
+
+    }
+
+    @Benchmark
+    public Jwt decodeCached() {
+
+        return cachingJwtDecoder.decode(jwt.getTokenValue());
+
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken convert() {
+
+        return jwtAuthenticationConverter.convert(jwt);
+
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken convertCompact() {
+
+        return jwtAuthenticationConverter.convert(compactJwt);
+
+    }
+
+    private JwtEncodingContext encodingContext() {
+
+        return JwtEncodingContext.with(JwsHeader.with(SignatureAlgorithm.RS256), claims())
+                .registeredClient(registeredClient)
+                .principal(principal)
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .tokenType(OAuth2TokenType.ACCESS_TOKEN)
+                .build();
+
+    }
+
+    private JwtClaimsSet.Builder claims() {
+
+        Instant issuedAt = Instant.now();
+
+        return JwtClaimsSet.builder()
+                .issuer("http://localhost:8081")
+                .subject("benchmark@example.com")
+                .audience(List.of("benchmark-client"))
+                .issuedAt(issuedAt)
+                .expiresAt(issuedAt.plus(1, ChronoUnit.HOURS))
+                .id(UUID.randomUUID().toString());
+
+    }
+
+
+}
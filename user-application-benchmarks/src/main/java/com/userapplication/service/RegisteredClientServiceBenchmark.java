@@ -0,0 +1,93 @@
+package com.userapplication.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.userapplication.entity.ClientEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.oidc.OidcScopes;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilding a {@link RegisteredClient} from its table row, which is what every uncached client lookup pays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegisteredClientServiceBenchmark {
+
+    private RegisteredClientService registeredClientService;
+    private ClientEntity clientEntity;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        // same date and duration handling as the ObjectMapper Spring Boot injects
+        objectMapper = new ObjectMapper().findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS);
+
+        registeredClientService = new RegisteredClientService();
+        Field objectMapperField = ReflectionUtils.findField(RegisteredClientService.class, "objectMapper");
+        ReflectionUtils.makeAccessible(objectMapperField);
+        ReflectionUtils.setField(objectMapperField, registeredClientService, objectMapper);
+
+        RegisteredClient registeredClient = RegisteredClient.withId(UUID.randomUUID().toString())
+                .clientName("benchmark-client")
+                .clientSecret("{bcrypt}$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z7xvK6Lhq4pG3o9YzGJp0K2e")
+                .clientId("benchmark-client")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+                .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                .scope(OidcScopes.OPENID)
+                .scope(OidcScopes.PROFILE)
+                .redirectUri("https://www.google.com.br")
+                .tokenSettings(TokenSettings.builder().accessTokenTimeToLive(Duration.ofHours(1)).build())
+                .build();
+
+        clientEntity = new ClientEntity();
+        registeredClientService.registeredClientToClient(registeredClient, clientEntity);
+        clientEntity.setId(1L);
+
+    }
+
+    @Benchmark
+    public RegisteredClient clientToRegisteredClient() {
+
+        return registeredClientService.clientToRegisteredClient(clientEntity);
+
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> convertDurationStrings() throws Exception {
+
+        // convertDurationStrings replaces values in place, so each call gets a freshly parsed map
+        return registeredClientService.convertDurationStrings(objectMapper.readValue(clientEntity.getTokenSettings(), Map.class));
+
+    }
+
+
+}
@@ -0,0 +1,52 @@
+package com.userapplication.service;
+
+import com.userapplication.dto.UserSecureDTO;
+import com.userapplication.entity.RoleEntity;
+import com.userapplication.entity.UserEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The entity to {@link UserSecureDTO} mapping used by createUser and getUserByUsername.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserSecureDtoMappingBenchmark {
+
+    private UserEntity userEntity;
+
+    @Setup
+    public void setUp() {
+
+        userEntity = new UserEntity();
+        userEntity.setId(42L);
+        userEntity.setUsername("benchmark@example.com");
+        userEntity.setPassword("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z7xvK6Lhq4pG3o9YzGJp0K2e");
+        userEntity.getRoles().add(new RoleEntity(1L, "Administrator", "ROLE_ADMIN"));
+        userEntity.getRoles().add(new RoleEntity(2L, "User", "ROLE_USER"));
+
+    }
+
+    @Benchmark
+    public UserSecureDTO toUserSecureDTO() {
+
+        return UserService.toUserSecureDTO(userEntity);
+
+    }
+
+
+}
@@ -0,0 +1,358 @@
+package com.userapplication.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives an open workload: scenarios arrive at the step's rate whether or not earlier ones have finished, as users
+ * do, so a slow application builds up a backlog instead of slowing the generator down. Each arrival runs on its own
+ * virtual thread, at most {@code loadtest.max-in-flight} at once. Steps follow each other without a pause, so the
+ * application is never idle between them.
+ */
+public class LoadGenerator {
+
+    private static final String PASSWORD = "LoadTest-Password-1";
+
+    private final LoadTestSettings settings;
+    private final UserApiClient client;
+    private final ResetTokenInbox inbox;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore inFlight;
+    private final Scenario[] scenarios;
+    private final int[] cumulativeWeights;
+    // usernames stay unique across runs against the same database, and within its 30 characters
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong signups = new AtomicLong();
+    private final List<PoolUser> users = new ArrayList<>();
+    // a user has one reset token at a time, so each is in at most one password reset
+    private final BlockingQueue<PoolUser> idleForReset = new LinkedBlockingQueue<>();
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private volatile StepStats currentStep;
+
+    public LoadGenerator(LoadTestSettings settings, UserApiClient client, ResetTokenInbox inbox) {
+
+        this.settings = settings;
+        this.client = client;
+        this.inbox = inbox;
+        this.inFlight = new Semaphore(settings.maxInFlight());
+        this.scenarios = settings.mix().keySet().toArray(Scenario[]::new);
+        this.cumulativeWeights = new int[scenarios.length];
+
+        int total = 0;
+
+        for (int i = 0; i < scenarios.length; i++) {
+
+            total += settings.mix().get(scenarios[i]);
+            cumulativeWeights[i] = total;
+
+        }
+
+    }
+
+    /**
+     * Signs up {@code loadtest.users} users and logs each in once, for the scenarios that act on an existing user.
+     */
+    public void provision() throws InterruptedException {
+
+        StepStats discarded = new StepStats(0, System.nanoTime(), System.nanoTime());
+        // hashing is bounded by the application's pool, more parallel signups would only be shed with 503s
+        Semaphore parallelism = new Semaphore(Runtime.getRuntime().availableProcessors());
+        List<Future<PoolUser>> provisioned = new ArrayList<>(settings.users());
+
+        for (int i = 0; i < settings.users(); i++) {
+
+            String username = "u-" + runId + '-' + i + "@lt.invalid";
+            parallelism.acquire();
+
+            provisioned.add(executor.submit(() -> {
+
+                try {
+
+                    if (!client.signup(discarded, username, PASSWORD)) {
+
+                        return null;
+
+                    }
+
+                    return new PoolUser(username, client.login(discarded, username, PASSWORD));
+
+                } finally {
+
+                    parallelism.release();
+
+                }
+
+            }));
+
+        }
+
+        for (Future<PoolUser> user : provisioned) {
+
+            try {
+
+                PoolUser poolUser = user.get();
+
+                if (poolUser != null && poolUser.accessToken != null) {
+
+                    users.add(poolUser);
+
+                }
+
+            } catch (ExecutionException e) {
+
+                logger.warn("Failed to provision a user", e.getCause());
+
+            }
+
+        }
+
+        if (users.isEmpty()) {
+
+            throw new IllegalStateException("No user could be signed up and logged in, check the application log");
+
+        }
+
+        idleForReset.addAll(users);
+        logger.info("Provisioned {} of {} users", users.size(), settings.users());
+
+    }
+
+    /**
+     * Runs the warm-up and then every rate step, stopping after the first saturated one unless
+     * {@code loadtest.stop-on-saturation} is false.
+     */
+    public List<StepStats> run() throws InterruptedException {
+
+        if (!settings.warmup().isZero()) {
+
+            logger.info("Warming up at {}/s for {}", settings.rates().getFirst(), settings.warmup());
+            runStep(settings.rates().getFirst(), settings.warmup());
+
+        }
+
+        List<StepStats> steps = new ArrayList<>(settings.rates().size());
+
+        for (double rate : settings.rates()) {
+
+            logger.info("Offering {}/s for {}", rate, settings.stepDuration());
+            StepStats step = runStep(rate, settings.stepDuration());
+            steps.add(step);
+
+            logger.info("{}/s offered: {} scenarios/s completed, {} dropped, {}% errors", rate, String.format("%.1f", step.throughput()),
+                    step.droppedArrivals(), String.format("%.2f", step.errorRatio() * 100));
+
+            if (step.saturated() && settings.stopOnSaturation()) {
+
+                break;
+
+            }
+
+        }
+
+        drain();
+        executor.shutdown();
+        return steps;
+
+    }
+
+    private StepStats runStep(double rate, Duration duration) throws InterruptedException {
+
+        long start = System.nanoTime();
+        StepStats stats = new StepStats(rate, start, start + duration.toNanos());
+        currentStep = stats;
+        long due = start;
+
+        while (due - stats.endNanos() < 0) {
+
+            long wait = due - System.nanoTime();
+
+            if (wait > 0) {
+
+                LockSupport.parkNanos(wait);
+                continue;
+
+            }
+
+            stats.arrived();
+            Scenario scenario = nextScenario();
+            long arrival = due;
+
+            if (inFlight.tryAcquire()) {
+
+                executor.execute(() -> {
+
+                    try {
+
+                        stats.record(StepStats.SCENARIO_PREFIX + scenario.key(), arrival, run(scenario, stats));
+                        currentStep.completed();
+
+                    } finally {
+
+                        inFlight.release();
+
+                    }
+
+                });
+
+            } else {
+
+                stats.dropped();
+
+            }
+
+            due += interArrivalNanos(rate);
+
+        }
+
+        return stats;
+
+    }
+
+    // waits for the last scenarios to finish, so their latencies are in the report
+    private void drain() throws InterruptedException {
+
+        Duration timeout = settings.requestTimeout().multipliedBy(4).plus(settings.resetTokenTimeout());
+
+        if (inFlight.tryAcquire(settings.maxInFlight(), timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+
+            inFlight.release(settings.maxInFlight());
+
+        } else {
+
+            logger.warn("Scenarios still running after {}, reporting without them", timeout);
+
+        }
+
+    }
+
+    private boolean run(Scenario scenario, StepStats stats) {
+
+        try {
+
+            return switch (scenario) {
+                case SIGNUP -> client.signup(stats, "s-" + runId + '-' + signups.incrementAndGet() + "@lt.invalid", PASSWORD);
+                case LOGIN -> login(stats, randomUser());
+                case GET_USER -> getUser(stats, randomUser());
+                case PASSWORD_RESET -> resetPassword(stats);
+            };
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            return false;
+
+        } catch (RuntimeException e) {
+
+            logger.debug("{} failed", scenario.key(), e);
+            return false;
+
+        }
+
+    }
+
+    private boolean login(StepStats stats, PoolUser user) throws InterruptedException {
+
+        String accessToken = client.login(stats, user.username, PASSWORD);
+
+        if (accessToken == null) {
+
+            return false;
+
+        }
+
+        user.accessToken = accessToken;
+        return true;
+
+    }
+
+    private boolean getUser(StepStats stats, PoolUser user) throws InterruptedException {
+
+        return client.getUser(stats, user.username, user.accessToken);
+
+    }
+
+    private boolean resetPassword(StepStats stats) throws InterruptedException {
+
+        PoolUser user = idleForReset.poll();
+
+        if (user == null) {
+
+            // more resets in flight than provisioned users, raise loadtest.users
+            return false;
+
+        }
+
+        try {
+
+            return client.resetPassword(stats, inbox, user.username, PASSWORD);
+
+        } finally {
+
+            idleForReset.add(user);
+
+        }
+
+    }
+
+    private Scenario nextScenario() {
+
+        int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+
+        for (int i = 0; i < scenarios.length; i++) {
+
+            if (pick < cumulativeWeights[i]) {
+
+                return scenarios[i];
+
+            }
+
+        }
+
+        throw new IllegalStateException();
+
+    }
+
+    private PoolUser randomUser() {
+
+        return users.get(ThreadLocalRandom.current().nextInt(users.size()));
+
+    }
+
+    // exponential gaps make a Poisson process, the arrival pattern of many independent users
+    private long interArrivalNanos(double rate) {
+
+        double seconds = settings.poisson() ? -Math.log(1 - ThreadLocalRandom.current().nextDouble()) / rate : 1 / rate;
+        return (long) (seconds * 1e9);
+
+    }
+
+    private static final class PoolUser {
+
+        private final String username;
+        private volatile String accessToken;
+
+        private PoolUser(String username, String accessToken) {
+            this.username = username;
+            this.accessToken = accessToken;
+        }
+
+
+    }
+
+
+}
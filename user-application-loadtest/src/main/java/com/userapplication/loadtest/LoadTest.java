@@ -0,0 +1,142 @@
+package com.userapplication.loadtest;
+
+import com.userapplication.UserApplication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Starts user-application on H2 with an embedded Kafka broker, both in this JVM, and runs the load steps against
+ * it. With {@code --loadtest.target-url} an already running node is tested instead, and password resets need
+ * {@code --loadtest.kafka-bootstrap} to read the tokens from its broker.
+ * <p>
+ * Arguments are {@code --key=value}: {@code loadtest.*} configures the run, anything else is a property of the
+ * in-process application, e.g. {@code --password.hashing.threads=8}.
+ */
+public class LoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+
+    public static void main(String[] args) throws Exception {
+
+        Map<String, String> loadTestProperties = new HashMap<>();
+        Map<String, String> applicationProperties = new LinkedHashMap<>();
+
+        for (String arg : args) {
+
+            int separator = arg.indexOf('=');
+
+            if (!arg.startsWith("--") || separator < 0) {
+
+                throw new IllegalArgumentException("Expected --key=value, got " + arg);
+
+            }
+
+            String key = arg.substring(2, separator);
+
+            if (key.startsWith(LoadTestSettings.PREFIX)) {
+
+                loadTestProperties.put(key.substring(LoadTestSettings.PREFIX.length()), arg.substring(separator + 1));
+
+            } else {
+
+                applicationProperties.put(key, arg.substring(separator + 1));
+
+            }
+
+        }
+
+        LoadTestSettings settings = LoadTestSettings.from(loadTestProperties);
+        EmbeddedKafkaBroker broker = null;
+        ConfigurableApplicationContext application = null;
+
+        try {
+
+            String baseUrl = settings.targetUrl();
+            String kafkaBootstrap = settings.kafkaBootstrap();
+
+            if (baseUrl == null) {
+
+                broker = new EmbeddedKafkaKraftBroker(1, 1);
+                broker.afterPropertiesSet();
+                kafkaBootstrap = broker.getBrokersAsString();
+                application = startApplication(settings, kafkaBootstrap, applicationProperties);
+                baseUrl = "http://localhost:" + application.getEnvironment().getProperty("local.server.port");
+
+            }
+
+            if (settings.mix().containsKey(Scenario.PASSWORD_RESET) && kafkaBootstrap == null) {
+
+                throw new IllegalArgumentException("password-reset needs --loadtest.kafka-bootstrap to read the reset tokens of " + baseUrl);
+
+            }
+
+            try (ResetTokenInbox inbox = kafkaBootstrap == null ? null : new ResetTokenInbox(kafkaBootstrap)) {
+
+                if (inbox != null && !inbox.awaitAssignment(Duration.ofSeconds(60))) {
+
+                    throw new IllegalStateException("The password-reset topic was not assigned within a minute");
+
+                }
+
+                LoadGenerator generator = new LoadGenerator(settings, new UserApiClient(baseUrl, settings), inbox);
+                generator.provision();
+                List<StepStats> steps = generator.run();
+
+                logger.info("Report written to {}{}{}", settings.reportDir().toAbsolutePath(), System.lineSeparator(),
+                        new ReportWriter(settings).write(steps));
+
+            }
+
+        } finally {
+
+            if (application != null) {
+
+                application.close();
+
+            }
+
+            if (broker != null) {
+
+                broker.destroy();
+
+            }
+
+        }
+
+    }
+
+    private static ConfigurableApplicationContext startApplication(LoadTestSettings settings, String kafkaBootstrap, Map<String, String> overrides) {
+
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.profiles.active", "test");
+        properties.put("server.port", "0");
+        properties.put("spring.kafka.bootstrap-servers", kafkaBootstrap);
+        properties.put("spring.kafka.producer.bootstrap-servers", kafkaBootstrap);
+        // the test profile logs every statement and security decision, which would be measured along with the requests
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("logging.level.org.springframework.security", "warn");
+        // every scenario comes from one address and the pool users reset their passwords over and over
+        properties.put("rate-limit.enabled", "false");
+        properties.put("client.id", settings.clientId());
+        properties.put("client.secret", settings.clientSecret());
+        properties.put("client.redirect-uri", settings.redirectUri());
+        properties.putAll(overrides);
+
+        return SpringApplication.run(UserApplication.class, properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + '=' + property.getValue())
+                .toArray(String[]::new));
+
+    }
+
+
+}
@@ -0,0 +1,141 @@
+package com.userapplication.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code loadtest.*} arguments. Every other argument is passed on to the in-process user-application.
+ */
+public record LoadTestSettings(List<Double> rates, Duration stepDuration, Duration warmup, boolean poisson, Map<Scenario, Integer> mix,
+                               int users, int maxInFlight, Duration requestTimeout, Duration resetTokenTimeout, boolean stopOnSaturation,
+                               Path reportDir, String targetUrl, String kafkaBootstrap, String clientId, String clientSecret, String redirectUri) {
+
+    public static final String PREFIX = "loadtest.";
+
+    public LoadTestSettings(List<Double> rates, Duration stepDuration, Duration warmup, boolean poisson, Map<Scenario, Integer> mix,
+                            int users, int maxInFlight, Duration requestTimeout, Duration resetTokenTimeout, boolean stopOnSaturation,
+                            Path reportDir, String targetUrl, String kafkaBootstrap, String clientId, String clientSecret, String redirectUri) {
+        this.rates = rates;
+        this.stepDuration = stepDuration;
+        this.warmup = warmup;
+        this.poisson = poisson;
+        this.mix = mix;
+        this.users = users;
+        this.maxInFlight = maxInFlight;
+        this.requestTimeout = requestTimeout;
+        this.resetTokenTimeout = resetTokenTimeout;
+        this.stopOnSaturation = stopOnSaturation;
+        this.reportDir = reportDir;
+        this.targetUrl = targetUrl;
+        this.kafkaBootstrap = kafkaBootstrap;
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.redirectUri = redirectUri;
+    }
+
+    /**
+     * @param properties the {@code loadtest.*} arguments without their prefix
+     */
+    public static LoadTestSettings from(Map<String, String> properties) {
+
+        String arrivals = properties.getOrDefault("arrivals", "poisson");
+
+        if (!arrivals.equals("poisson") && !arrivals.equals("uniform")) {
+
+            throw new IllegalArgumentException("loadtest.arrivals must be poisson or uniform, not " + arrivals);
+
+        }
+
+        String targetUrl = properties.get("target-url");
+
+        return new LoadTestSettings(
+                parseRates(properties.getOrDefault("rates", "25,50,100,200,400")),
+                DurationStyle.detectAndParse(properties.getOrDefault("step-duration", "60s")),
+                DurationStyle.detectAndParse(properties.getOrDefault("warmup", "15s")),
+                arrivals.equals("poisson"),
+                parseMix(properties.getOrDefault("mix", "get-user=60,login=15,signup=15,password-reset=10")),
+                Integer.parseInt(properties.getOrDefault("users", "200")),
+                Integer.parseInt(properties.getOrDefault("max-in-flight", "5000")),
+                DurationStyle.detectAndParse(properties.getOrDefault("request-timeout", "30s")),
+                DurationStyle.detectAndParse(properties.getOrDefault("reset-token-timeout", "30s")),
+                Boolean.parseBoolean(properties.getOrDefault("stop-on-saturation", "true")),
+                Path.of(properties.getOrDefault("report-dir", "loadtest-reports")),
+                targetUrl == null || targetUrl.isBlank() ? null : targetUrl.replaceAll("/+$", ""),
+                properties.get("kafka-bootstrap"),
+                properties.getOrDefault("client-id", "loadtest-client"),
+                properties.getOrDefault("client-secret", "loadtest-secret"),
+                properties.getOrDefault("redirect-uri", "https://loadtest.invalid/callback"));
+
+    }
+
+    static List<Double> parseRates(String rates) {
+
+        List<Double> parsed = new ArrayList<>();
+
+        for (String rate : rates.split(",")) {
+
+            double value = Double.parseDouble(rate.trim());
+
+            if (value <= 0) {
+
+                throw new IllegalArgumentException("Arrival rates must be positive, not " + rate.trim());
+
+            }
+
+            parsed.add(value);
+
+        }
+
+        return List.copyOf(parsed);
+
+    }
+
+    // signup=15,get-user=60; scenarios left out never run
+    static Map<Scenario, Integer> parseMix(String mix) {
+
+        Map<Scenario, Integer> weights = new EnumMap<>(Scenario.class);
+
+        for (String entry : mix.split(",")) {
+
+            if (entry.isBlank()) {
+
+                continue;
+
+            }
+
+            int separator = entry.indexOf('=');
+
+            if (separator < 0) {
+
+                throw new IllegalArgumentException("Expected scenario=weight in loadtest.mix, got " + entry.trim());
+
+            }
+
+            int weight = Integer.parseInt(entry.substring(separator + 1).trim());
+
+            if (weight > 0) {
+
+                weights.put(Scenario.forKey(entry.substring(0, separator).trim()), weight);
+
+            }
+
+        }
+
+        if (weights.isEmpty()) {
+
+            throw new IllegalArgumentException("loadtest.mix has no scenario with a positive weight");
+
+        }
+
+        return weights;
+
+    }
+
+
+}
@@ -0,0 +1,150 @@
+package com.userapplication.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the steps as a readable report and as CSV, one row per step and operation, for comparing runs.
+ */
+public class ReportWriter {
+
+    private static final String CSV_HEADER = "step,offered_rate,operation,count,errors,throughput,p50_ms,p99_ms,p999_ms,max_ms";
+    private static final String ROW_FORMAT = "  %-28s %8s %7s %9s %9s %9s %9s %9s%n";
+
+    private final LoadTestSettings settings;
+
+    public ReportWriter(LoadTestSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * @return the readable report, which was also written next to the CSV
+     */
+    public String write(List<StepStats> steps) throws IOException {
+
+        String name = "report-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        String report = text(steps);
+
+        Files.createDirectories(settings.reportDir());
+        Files.writeString(settings.reportDir().resolve(name + ".txt"), report);
+        Files.write(settings.reportDir().resolve(name + ".csv"), csv(steps));
+
+        return report;
+
+    }
+
+    private String text(List<StepStats> steps) {
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "Open-model load test, %s arrivals, mix %s%n%n", settings.poisson() ? "poisson" : "uniform",
+                settings.mix().entrySet().stream().map(entry -> entry.getKey().key() + '=' + entry.getValue()).collect(Collectors.joining(","))));
+
+        for (int i = 0; i < steps.size(); i++) {
+
+            StepStats step = steps.get(i);
+
+            report.append(String.format(Locale.ROOT, "Step %d: offered %.1f/s for %.0f s, %d arrivals, %d dropped, %.1f scenarios/s completed, %.2f%% errors%s%n",
+                    i + 1, step.offeredRate(), step.seconds(), step.arrivals(), step.droppedArrivals(), step.throughput(), step.errorRatio() * 100,
+                    step.saturated() ? ", SATURATED" : ""));
+            report.append(String.format(Locale.ROOT, ROW_FORMAT, "operation", "count", "errors", "ops/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+
+            for (Map.Entry<String, StepStats.Operation> entry : ordered(step)) {
+
+                StepStats.Operation operation = entry.getValue();
+                Histogram latencies = operation.latencies();
+
+                report.append(String.format(Locale.ROOT, ROW_FORMAT, entry.getKey(), operation.count(), operation.errors(),
+                        String.format(Locale.ROOT, "%.1f", operation.count() / step.seconds()), millis(latencies, 50), millis(latencies, 99),
+                        millis(latencies, 99.9), String.format(Locale.ROOT, "%.1f", latencies.getMaxValue() / 1000.0)));
+
+            }
+
+            report.append(System.lineSeparator());
+
+        }
+
+        report.append(summary(steps)).append(System.lineSeparator());
+        return report.toString();
+
+    }
+
+    private List<String> csv(List<StepStats> steps) {
+
+        List<String> lines = new ArrayList<>();
+        lines.add(CSV_HEADER);
+
+        for (int i = 0; i < steps.size(); i++) {
+
+            StepStats step = steps.get(i);
+
+            for (Map.Entry<String, StepStats.Operation> entry : ordered(step)) {
+
+                StepStats.Operation operation = entry.getValue();
+                Histogram latencies = operation.latencies();
+
+                lines.add(String.format(Locale.ROOT, "%d,%.1f,%s,%d,%d,%.2f,%s,%s,%s,%.3f", i + 1, step.offeredRate(), entry.getKey(), operation.count(),
+                        operation.errors(), operation.count() / step.seconds(), millis(latencies, 50), millis(latencies, 99), millis(latencies, 99.9),
+                        latencies.getMaxValue() / 1000.0));
+
+            }
+
+        }
+
+        return lines;
+
+    }
+
+    // the highest step the application kept up with is the saturation point to size a node by
+    private static String summary(List<StepStats> steps) {
+
+        StepStats sustained = null;
+        StepStats saturated = null;
+
+        for (StepStats step : steps) {
+
+            if (step.saturated()) {
+
+                saturated = step;
+                break;
+
+            }
+
+            sustained = step;
+
+        }
+
+        String kept = sustained == null ? "No step was sustained"
+                : String.format(Locale.ROOT, "Sustained %.1f scenarios/s", sustained.offeredRate());
+
+        return saturated == null ? kept + ", no step saturated: raise loadtest.rates to find the saturation point"
+                : kept + String.format(Locale.ROOT, ", saturated at %.1f/s offered (%.1f/s completed)", saturated.offeredRate(), saturated.throughput());
+
+    }
+
+    // scenarios first, then the requests they are made of
+    private static List<Map.Entry<String, StepStats.Operation>> ordered(StepStats step) {
+
+        List<Map.Entry<String, StepStats.Operation>> operations = new ArrayList<>(step.operations().entrySet());
+        operations.sort(Map.Entry.comparingByKey());
+        operations.sort((left, right) -> Boolean.compare(!left.getKey().startsWith(StepStats.SCENARIO_PREFIX), !right.getKey().startsWith(StepStats.SCENARIO_PREFIX)));
+        return operations;
+
+    }
+
+    private static String millis(Histogram latencies, double percentile) {
+
+        return String.format(Locale.ROOT, "%.1f", latencies.getValueAtPercentile(percentile) / 1000.0);
+
+    }
+
+
+}
@@ -0,0 +1,151 @@
+package com.userapplication.loadtest;
+
+import com.eventschema.EventType;
+import com.eventschema.PasswordResetTokenEvent;
+import com.eventschema.kafka.EventDeserializer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stands in for the mail application: reads the password-reset topic and hands each token to the scenario that
+ * asked for it, so a reset can be completed the way a user would complete it from the email.
+ */
+public class ResetTokenInbox implements AutoCloseable {
+
+    private final KafkaConsumer<String, Object> consumer;
+    private final Map<String, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+    private final CountDownLatch assigned = new CountDownLatch(1);
+    private final Thread pollThread;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private volatile boolean closed;
+
+    public ResetTokenInbox(String bootstrapServers) {
+
+        this.consumer = new KafkaConsumer<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                // a group of its own per run, reading from the start so no token published before the assignment is missed
+                ConsumerConfig.GROUP_ID_CONFIG, "loadtest-" + UUID.randomUUID(),
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest",
+                ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false),
+                new StringDeserializer(), new EventDeserializer());
+        this.consumer.subscribe(List.of(EventType.PASSWORD_RESET.topic()), new ConsumerRebalanceListener() {
+
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+
+                assigned.countDown();
+
+            }
+
+        });
+        this.pollThread = Thread.ofPlatform().name("reset-token-inbox").daemon().start(this::pollLoop);
+
+    }
+
+    /**
+     * @return whether the topic was assigned in time, after which no token can be missed
+     */
+    public boolean awaitAssignment(Duration timeout) throws InterruptedException {
+
+        return assigned.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+    }
+
+    /**
+     * Must be called before the reset is requested, so the token cannot arrive before anyone waits for it.
+     */
+    public CompletableFuture<String> expect(String username) {
+
+        CompletableFuture<String> token = new CompletableFuture<>();
+        pending.put(username, token);
+        return token;
+
+    }
+
+    public void forget(String username) {
+
+        pending.remove(username);
+
+    }
+
+    @Override
+    public void close() {
+
+        closed = true;
+        consumer.wakeup();
+
+        try {
+
+            pollThread.join(TimeUnit.SECONDS.toMillis(10));
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+        }
+
+    }
+
+    private void pollLoop() {
+
+        try {
+
+            while (!closed) {
+
+                for (ConsumerRecord<String, Object> record : consumer.poll(Duration.ofMillis(100))) {
+
+                    if (record.value() instanceof PasswordResetTokenEvent event) {
+
+                        CompletableFuture<String> token = pending.remove(event.username());
+
+                        if (token != null) {
+
+                            token.complete(event.token());
+
+                        }
+
+                    }
+
+                }
+
+            }
+
+        } catch (WakeupException e) {
+
+            // close() stops the poll
+
+        } catch (RuntimeException e) {
+
+            logger.error("Reset token inbox stopped, password-reset scenarios will time out", e);
+
+        } finally {
+
+            consumer.close();
+
+        }
+
+    }
+
+
+}
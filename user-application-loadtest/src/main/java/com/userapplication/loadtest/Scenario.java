@@ -0,0 +1,47 @@
+package com.userapplication.loadtest;
+
+import java.util.NoSuchElementException;
+
+/**
+ * What one arrival does. Each scenario is one or more requests, every request timed on its own under the operation
+ * names listed here.
+ */
+public enum Scenario {
+
+    // POST /api/user
+    SIGNUP("signup"),
+    // POST /login, GET /oauth2/authorize, POST /oauth2/token
+    LOGIN("login"),
+    // GET /api/user/{username} with a token from an earlier login
+    GET_USER("get-user"),
+    // POST /api/user/reset/token, the token read from the password-reset topic, PUT /api/user/password
+    PASSWORD_RESET("password-reset");
+
+    private final String key;
+
+    Scenario(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public static Scenario forKey(String key) {
+
+        for (Scenario scenario : values()) {
+
+            if (scenario.key.equals(key)) {
+
+                return scenario;
+
+            }
+
+        }
+
+        throw new NoSuchElementException("No scenario " + key);
+
+    }
+
+
+}
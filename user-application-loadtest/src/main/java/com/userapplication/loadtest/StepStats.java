@@ -0,0 +1,182 @@
+package com.userapplication.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and errors of one arrival rate step, per operation, in microseconds. A scenario's latency is measured
+ * from when it was due to arrive rather than when it started, so a generator falling behind shows up as latency
+ * instead of hiding it (coordinated omission).
+ */
+public class StepStats {
+
+    public static final String SCENARIO_PREFIX = "scenario:";
+
+    // a step is past the saturation point once the application falls this far behind the offered rate or errors
+    private static final double MIN_THROUGHPUT_RATIO = 0.95;
+    private static final double MAX_ERROR_RATIO = 0.01;
+
+    private final double offeredRate;
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private final LongAdder arrivals = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final long startNanos;
+    private final long endNanos;
+
+    public StepStats(double offeredRate, long startNanos, long endNanos) {
+        this.offeredRate = offeredRate;
+        this.startNanos = startNanos;
+        this.endNanos = endNanos;
+    }
+
+    public void record(String operation, long startNanos, boolean success) {
+
+        Operation stats = operations.computeIfAbsent(operation, key -> new Operation());
+        stats.latencies.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos)));
+
+        if (!success) {
+
+            stats.errors.increment();
+
+        }
+
+    }
+
+    public void arrived() {
+
+        arrivals.increment();
+
+    }
+
+    // the arrival found max-in-flight scenarios still running and was not started
+    public void dropped() {
+
+        dropped.increment();
+
+    }
+
+    /**
+     * A scenario finished while this step was running, whichever step it arrived in. Its latency goes to the step
+     * it arrived in, but counting completions by arrival would let an overloaded step report its offered rate as
+     * throughput once its backlog had drained. Completions after the last step ended, while draining, are not counted.
+     */
+    public void completed() {
+
+        if (System.nanoTime() - endNanos < 0) {
+
+            completed.increment();
+
+        }
+
+    }
+
+    public long endNanos() {
+
+        return endNanos;
+
+    }
+
+    public double offeredRate() {
+
+        return offeredRate;
+
+    }
+
+    public long arrivals() {
+
+        return arrivals.sum();
+
+    }
+
+    public long droppedArrivals() {
+
+        return dropped.sum();
+
+    }
+
+    public double seconds() {
+
+        return (endNanos - startNanos) / 1e9;
+
+    }
+
+    /**
+     * @return the operations sorted by name
+     */
+    public Map<String, Operation> operations() {
+
+        return new TreeMap<>(operations);
+
+    }
+
+    /**
+     * Scenarios completed per second during the step, failed ones included.
+     */
+    public double throughput() {
+
+        return completed.sum() / seconds();
+
+    }
+
+    // compared with the arrivals rather than the offered rate, which Poisson arrivals over a short step can miss by a lot
+    public boolean saturated() {
+
+        return droppedArrivals() > 0 || throughput() < arrivals() / seconds() * MIN_THROUGHPUT_RATIO || errorRatio() > MAX_ERROR_RATIO;
+
+    }
+
+    public double errorRatio() {
+
+        long count = 0;
+        long errors = 0;
+
+        for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+
+            if (entry.getKey().startsWith(SCENARIO_PREFIX)) {
+
+                count += entry.getValue().count();
+                errors += entry.getValue().errors();
+
+            }
+
+        }
+
+        return count == 0 ? 0 : (double) errors / count;
+
+    }
+
+    public static class Operation {
+
+        private final Histogram latencies = new ConcurrentHistogram(3);
+        private final LongAdder errors = new LongAdder();
+
+        public long count() {
+
+            return latencies.getTotalCount();
+
+        }
+
+        public long errors() {
+
+            return errors.sum();
+
+        }
+
+        public Histogram latencies() {
+
+            return latencies;
+
+        }
+
+
+    }
+
+
+}
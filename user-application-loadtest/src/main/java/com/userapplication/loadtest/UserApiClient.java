@@ -0,0 +1,270 @@
+package com.userapplication.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * The user-application requests the scenarios are made of. Every request is timed under its operation name, and
+ * counted as an error when it fails or answers with anything but the status a working flow gets.
+ */
+public class UserApiClient {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl;
+    private final LoadTestSettings settings;
+
+    public UserApiClient(String baseUrl, LoadTestSettings settings) {
+
+        this.baseUrl = baseUrl;
+        this.settings = settings;
+        // redirects are part of the OAuth2 flow and are read, not followed
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+    }
+
+    public boolean signup(StepStats stats, String username, String password) throws InterruptedException {
+
+        HttpResponse<String> response = call(stats, "signup", request("/api/user")
+                .header("Content-Type", "application/json")
+                .POST(json(Map.of("username", username, "password", password))), 200);
+
+        return response != null;
+
+    }
+
+    /**
+     * Form login, then the authorization-code grant with the session it opened, as a browser and the client's backend
+     * would do it.
+     *
+     * @return the access token, or {@code null} when a step failed
+     */
+    public String login(StepStats stats, String username, String password) throws InterruptedException {
+
+        HttpResponse<String> login = call(stats, "login-form", request("/login")
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(form(Map.of("username", username, "password", password))), 302);
+
+        String session = login == null ? null : sessionCookie(login);
+
+        // a failed login redirects to /login?error instead of answering with an error status
+        if (session == null || login.headers().firstValue("Location").orElse("").contains("error")) {
+
+            return null;
+
+        }
+
+        HttpResponse<String> authorize = call(stats, "authorize", request("/oauth2/authorize?" + query(Map.of(
+                "response_type", "code",
+                "client_id", settings.clientId(),
+                "scope", "openid",
+                "redirect_uri", settings.redirectUri(),
+                "state", "loadtest")))
+                .header("Cookie", session)
+                .GET(), 302);
+
+        String code = authorize == null ? null : codeFrom(authorize.headers().firstValue("Location").orElse(""));
+
+        if (code == null) {
+
+            return null;
+
+        }
+
+        String credentials = URLEncoder.encode(settings.clientId(), StandardCharsets.UTF_8) + ':' + URLEncoder.encode(settings.clientSecret(), StandardCharsets.UTF_8);
+
+        HttpResponse<String> token = call(stats, "token", request("/oauth2/token")
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .header("Authorization", "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)))
+                .POST(form(Map.of("grant_type", "authorization_code", "code", code, "redirect_uri", settings.redirectUri()))), 200);
+
+        return token == null ? null : field(token.body(), "access_token");
+
+    }
+
+    public boolean getUser(StepStats stats, String username, String accessToken) throws InterruptedException {
+
+        HttpResponse<String> response = call(stats, "get-user", request("/api/user/" + URLEncoder.encode(username, StandardCharsets.UTF_8))
+                .header("Authorization", "Bearer " + accessToken)
+                .GET(), 200);
+
+        return response != null;
+
+    }
+
+    /**
+     * Requests a reset token, waits for it on the password-reset topic, and sets the password to the same value, so
+     * the user can keep logging in with it. The wait is timed as {@code reset-token-delivery}: the outbox relay and the
+     * broker hop.
+     */
+    public boolean resetPassword(StepStats stats, ResetTokenInbox inbox, String username, String password) throws InterruptedException {
+
+        CompletableFuture<String> delivery = inbox.expect(username);
+
+        HttpResponse<String> requested = call(stats, "reset-token", request("/api/user/reset/token")
+                .header("Content-Type", "application/json")
+                .POST(json(Map.of("username", username))), 204);
+
+        if (requested == null) {
+
+            inbox.forget(username);
+            return false;
+
+        }
+
+        long deliveryStart = System.nanoTime();
+        String token;
+
+        try {
+
+            token = delivery.get(settings.resetTokenTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            stats.record("reset-token-delivery", deliveryStart, true);
+
+        } catch (TimeoutException | ExecutionException e) {
+
+            inbox.forget(username);
+            stats.record("reset-token-delivery", deliveryStart, false);
+            return false;
+
+        }
+
+        HttpResponse<String> reset = call(stats, "reset-password", request("/api/user/password")
+                .header("Content-Type", "application/json")
+                .PUT(json(Map.of("username", username, "token", token, "newPassword", password))), 204);
+
+        return reset != null;
+
+    }
+
+    /**
+     * @return the response, or {@code null} when the request failed or got an unexpected status
+     */
+    private HttpResponse<String> call(StepStats stats, String operation, HttpRequest.Builder request, int expectedStatus) throws InterruptedException {
+
+        long start = System.nanoTime();
+
+        try {
+
+            HttpResponse<String> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            boolean success = response.statusCode() == expectedStatus;
+            stats.record(operation, start, success);
+            return success ? response : null;
+
+        } catch (IOException e) {
+
+            stats.record(operation, start, false);
+            return null;
+
+        }
+
+    }
+
+    private HttpRequest.Builder request(String path) {
+
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(settings.requestTimeout());
+
+    }
+
+    private HttpRequest.BodyPublisher json(Map<String, String> body) {
+
+        try {
+
+            return HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body));
+
+        } catch (JsonProcessingException e) {
+
+            throw new IllegalStateException(e);
+
+        }
+
+    }
+
+    private String field(String json, String name) {
+
+        try {
+
+            JsonNode value = objectMapper.readTree(json).get(name);
+            return value == null ? null : value.asText();
+
+        } catch (JsonProcessingException e) {
+
+            return null;
+
+        }
+
+    }
+
+    private static HttpRequest.BodyPublisher form(Map<String, String> fields) {
+
+        return HttpRequest.BodyPublishers.ofString(query(fields));
+
+    }
+
+    private static String query(Map<String, String> parameters) {
+
+        return parameters.entrySet().stream()
+                .map(entry -> URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8) + '=' + URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8))
+                .collect(Collectors.joining("&"));
+
+    }
+
+    private static String sessionCookie(HttpResponse<?> response) {
+
+        return response.headers().allValues("Set-Cookie").stream()
+                .filter(cookie -> cookie.startsWith("JSESSIONID="))
+                .map(cookie -> cookie.substring(0, cookie.indexOf(';') < 0 ? cookie.length() : cookie.indexOf(';')))
+                .findFirst()
+                .orElse(null);
+
+    }
+
+    private static String codeFrom(String location) {
+
+        int query = location.indexOf('?');
+
+        if (query < 0) {
+
+            return null;
+
+        }
+
+        for (String parameter : location.substring(query + 1).split("&")) {
+
+            if (parameter.startsWith("code=")) {
+
+                return URLDecoder.decode(parameter.substring("code=".length()), StandardCharsets.UTF_8);
+
+            }
+
+        }
+
+        return null;
+
+    }
+
+
+}
@@ -1,9 +1,15 @@
 package com.userapplication;
 
+import com.servicesupport.jvm.VirtualThreadPinningMonitor;
+import com.servicesupport.tracing.TracingConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
+@Import({TracingConfig.class, VirtualThreadPinningMonitor.class})
 public class UserApplication {
 
     public static void main(String[] args) {
@@ -1,17 +1,27 @@
 package com.userapplication.config;
 
+import com.userapplication.service.PasswordHashingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 
 @Configuration
 public class EncodingConfig {
 
+    // 0 means one thread per available core
+    @Value("${password.hashing.threads:0}")
+    private int threads;
+    @Value("${password.hashing.queue-capacity:64}")
+    private int queueCapacity;
+
     @Bean
-    public PasswordEncoder passwordEncoder() {
+    public PasswordHashingService passwordEncoder(MeterRegistry meterRegistry) {
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
 
-        return new BCryptPasswordEncoder();
+        return new PasswordHashingService(new BCryptPasswordEncoder(), poolSize, queueCapacity, meterRegistry);
     }
 
 
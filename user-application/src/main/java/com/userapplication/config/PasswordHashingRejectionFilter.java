@@ -0,0 +1,76 @@
+package com.userapplication.config;
+
+import com.userapplication.exception.PasswordHashingRejectedException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Turns a shed password hash into a 503 with Retry-After. It sits in front of the security filter chain because
+ * hashing also happens inside login and token requests, which never reach a controller.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class PasswordHashingRejectionFilter extends OncePerRequestFilter {
+
+    @Value("${password.hashing.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+
+        try {
+
+            filterChain.doFilter(request, response);
+
+        } catch (ServletException | RuntimeException e) {
+
+            PasswordHashingRejectedException rejection = findRejection(e);
+
+            if (rejection == null || response.isCommitted()) {
+
+                throw e;
+
+            }
+
+            response.resetBuffer();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Service Unavailable\",\"message\":\"" + rejection.getMessage() + "\"}");
+
+        }
+
+    }
+
+    private PasswordHashingRejectedException findRejection(Throwable throwable) {
+
+        while (throwable != null) {
+
+            if (throwable instanceof PasswordHashingRejectedException rejection) {
+
+                return rejection;
+
+            }
+
+            throwable = throwable.getCause();
+
+        }
+
+        return null;
+
+    }
+
+
+}
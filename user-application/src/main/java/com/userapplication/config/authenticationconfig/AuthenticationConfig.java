@@ -1,11 +1,10 @@
 package com.userapplication.config.authenticationconfig;
 
-import com.nimbusds.jose.jwk.JWKSet;
-import com.nimbusds.jose.jwk.RSAKey;
-import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
 import com.nimbusds.jose.jwk.source.JWKSource;
 import com.nimbusds.jose.proc.SecurityContext;
 import com.userapplication.config.customauthenticationprovider.CustomOAuth2Provider;
+import com.userapplication.service.JwkStoreService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
@@ -18,6 +17,7 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
 import org.springframework.security.oauth2.server.authorization.config.annotation.web.configuration.OAuth2AuthorizationServerConfiguration;
 import org.springframework.security.oauth2.server.authorization.config.annotation.web.configurers.OAuth2AuthorizationServerConfigurer;
 import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
@@ -25,12 +25,7 @@ import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.LoginUrlAuthenticationEntryPoint;
 import org.springframework.security.web.util.matcher.MediaTypeRequestMatcher;
 
-import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.interfaces.RSAPublicKey;
-import java.util.UUID;
+import java.time.Duration;
 
 @Configuration
 @EnableWebSecurity
@@ -113,8 +108,9 @@ public class AuthenticationConfig {
 
 
     @Bean
-    public JwtDecoder jwtDecoder(JWKSource<SecurityContext> jwkSource) {
-        return OAuth2AuthorizationServerConfiguration.jwtDecoder(jwkSource);
+    public JwtDecoder jwtDecoder(JWKSource<SecurityContext> jwkSource, @Value("${jwt.cache.max-size:10000}") long cacheMaxSize,
+                                 @Value("${jwt.cache.max-ttl:1h}") Duration cacheMaxTtl) {
+        return new CachingJwtDecoder(OAuth2AuthorizationServerConfiguration.jwtDecoder(jwkSource), cacheMaxSize, cacheMaxTtl);
     }
 
 
@@ -132,32 +128,8 @@ public class AuthenticationConfig {
 
 
     @Bean
-    JWKSource<SecurityContext> jwkSource() throws NoSuchAlgorithmException {
-
-        KeyPair keyPair = generateKeyPairRSAKeys();
-        RSAKey rsakey = new RSAKey.Builder((RSAPublicKey) keyPair.getPublic()).privateKey((RSAPrivateKey) keyPair.getPrivate()).keyID(UUID.randomUUID().toString()).build();
-        JWKSet jwkSet = new JWKSet(rsakey);
-
-        return new ImmutableJWKSet<>(jwkSet);
-
-
-    }
-
-    private KeyPair generateKeyPairRSAKeys() throws NoSuchAlgorithmException {
-
-        KeyPair keypar;
-        try {
-
-            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
-            keyPairGenerator.initialize(2048);
-            keypar = keyPairGenerator.generateKeyPair();
-        } catch (Exception e) {
-            throw new NoSuchAlgorithmException(e.getMessage());
-        }
-
-        return keypar;
-
-
+    public JwtEncoder jwtEncoder(JwkStoreService jwkStoreService) {
+        return new RotatingJwtEncoder(jwkStoreService);
     }
 
 
@@ -0,0 +1,77 @@
+package com.userapplication.config.authenticationconfig;
+
+import com.userapplication.service.BoundedOAuth2AuthorizationConsentService;
+import com.userapplication.service.BoundedOAuth2AuthorizationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.datasource.init.DataSourceInitializer;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationConsentService;
+import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationConsentService;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Where issued codes, tokens and consents are kept. {@code memory} (the default) is bounded and local to the node;
+ * {@code jdbc} shares them through the database, so any node can serve the token endpoint.
+ */
+@Configuration
+public class AuthorizationStoreConfig {
+
+
+    @Bean
+    @ConditionalOnProperty(name = "authorization.store.type", havingValue = "memory", matchIfMissing = true)
+    public OAuth2AuthorizationService boundedAuthorizationService(@Value("${authorization.store.max-size:100000}") long maxSize,
+                                                                  @Value("${authorization.store.pending-ttl:10m}") Duration pendingTtl,
+                                                                  MeterRegistry meterRegistry) {
+        return new BoundedOAuth2AuthorizationService(maxSize, pendingTtl, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "authorization.store.type", havingValue = "memory", matchIfMissing = true)
+    public OAuth2AuthorizationConsentService boundedAuthorizationConsentService(@Value("${authorization.store.consent.max-size:100000}") long maxSize,
+                                                                                @Value("${authorization.store.consent.ttl:30d}") Duration ttl) {
+        return new BoundedOAuth2AuthorizationConsentService(maxSize, ttl);
+    }
+
+    // the jdbc services read the column types when they are created, so both wait for the tables
+    @Bean
+    @ConditionalOnProperty(name = "authorization.store.type", havingValue = "jdbc")
+    public DataSourceInitializer authorizationSchemaInitializer(DataSource dataSource,
+                                                                @Value("${authorization.store.jdbc.schema}") Resource schema) {
+
+        DataSourceInitializer initializer = new DataSourceInitializer();
+        initializer.setDataSource(dataSource);
+        initializer.setDatabasePopulator(new ResourceDatabasePopulator(schema));
+        return initializer;
+
+    }
+
+    @Bean
+    @DependsOn("authorizationSchemaInitializer")
+    @ConditionalOnProperty(name = "authorization.store.type", havingValue = "jdbc")
+    public OAuth2AuthorizationService jdbcAuthorizationService(JdbcOperations jdbcOperations,
+                                                               RegisteredClientRepository registeredClientRepository) {
+        return new JdbcOAuth2AuthorizationService(jdbcOperations, registeredClientRepository);
+    }
+
+    @Bean
+    @DependsOn("authorizationSchemaInitializer")
+    @ConditionalOnProperty(name = "authorization.store.type", havingValue = "jdbc")
+    public OAuth2AuthorizationConsentService jdbcAuthorizationConsentService(JdbcOperations jdbcOperations,
+                                                                             RegisteredClientRepository registeredClientRepository) {
+        return new JdbcOAuth2AuthorizationConsentService(jdbcOperations, registeredClientRepository);
+    }
+
+
+}
@@ -0,0 +1,95 @@
+package com.userapplication.config.authenticationconfig;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * {@link JwtDecoder} that remembers verified tokens until they expire, so a client reusing its access token pays
+ * for the RSA signature check once instead of on every request. Entries are keyed by a SHA-256 digest of the token
+ * and live until the token's {@code exp}; tokens that fail verification are never cached.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+    private final Cache<String, Jwt> verifiedTokens;
+
+    public CachingJwtDecoder(JwtDecoder delegate, long maxSize, Duration maxTtl) {
+
+        this.delegate = delegate;
+        this.verifiedTokens = Caffeine.newBuilder().maximumSize(maxSize).expireAfter(new UntilTokenExpires(maxTtl)).build();
+
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+
+        String key = digest(token);
+        Jwt jwt = verifiedTokens.getIfPresent(key);
+
+        if (jwt == null) {
+
+            jwt = delegate.decode(token);
+            verifiedTokens.put(key, jwt);
+
+        }
+
+        return jwt;
+
+    }
+
+    private String digest(String token) {
+
+        try {
+
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+
+        } catch (NoSuchAlgorithmException e) {
+
+            throw new IllegalStateException(e);
+
+        }
+
+    }
+
+    private record UntilTokenExpires(Duration maxTtl) implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+
+            // tokens without exp are still only trusted for maxTtl before the signature is checked again
+            Duration untilExpiry = jwt.getExpiresAt() == null ? maxTtl : Duration.between(Instant.now(), jwt.getExpiresAt());
+
+            return Math.max(0, Math.min(untilExpiry.toNanos(), maxTtl.toNanos()));
+
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+
+            return expireAfterCreate(key, jwt, currentTime);
+
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+
+            return currentDuration;
+
+        }
+
+    }
+
+
+}
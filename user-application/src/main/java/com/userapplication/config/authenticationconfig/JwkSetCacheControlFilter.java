@@ -0,0 +1,50 @@
+package com.userapplication.config.authenticationconfig;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Lets resource servers cache the JWK set. Spring Security only writes its no-store header when none is present,
+ * so setting Cache-Control ahead of the security filter chain is enough. Keep the max-age below
+ * {@code jwk.rotation.activation-delay}, so a new key is in every cached set before it signs anything.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class JwkSetCacheControlFilter extends OncePerRequestFilter {
+
+    private final String jwkSetEndpoint;
+    private final String cacheControl;
+
+    public JwkSetCacheControlFilter(AuthorizationServerSettings authorizationServerSettings, @Value("${jwk.set.max-age:5m}") Duration maxAge) {
+        this.jwkSetEndpoint = authorizationServerSettings.getJwkSetEndpoint();
+        this.cacheControl = CacheControl.maxAge(maxAge).cachePublic().getHeaderValue();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !jwkSetEndpoint.equals(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        filterChain.doFilter(request, response);
+
+    }
+
+
+}
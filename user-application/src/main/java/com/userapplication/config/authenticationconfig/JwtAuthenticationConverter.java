@@ -1,5 +1,8 @@
 package com.userapplication.config.authenticationconfig;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.core.GrantedAuthority;
@@ -8,29 +11,40 @@ import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Component;
 
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Component
 public class JwtAuthenticationConverter implements Converter<Jwt, AbstractAuthenticationToken> {
 
+    private final RoleAuthorityRegistry roleAuthorityRegistry;
+    // CachingJwtDecoder hands out the same Jwt instance for a cached token, so identity-keyed entries follow its lifetime.
+    // The JwtAuthenticationToken itself is not cached: JwtAuthenticationProvider sets the request's details on it
+    private final Cache<Jwt, List<GrantedAuthority>> authoritiesByJwt;
+
+    public JwtAuthenticationConverter(RoleAuthorityRegistry roleAuthorityRegistry, @Value("${jwt.cache.max-size:10000}") long maxSize) {
+        this.roleAuthorityRegistry = roleAuthorityRegistry;
+        this.authoritiesByJwt = Caffeine.newBuilder().weakKeys().maximumSize(maxSize).build();
+    }
+
     @Override
     public AbstractAuthenticationToken convert(Jwt jwt) {
-        Collection<GrantedAuthority> authorities = extractAuthorities(jwt);
+        // the compact claim decodes to a shared list, the string claim is converted once per verified token
+        List<GrantedAuthority> authorities = jwt.getClaim(JwtTokenCustomizer.ROLES_CLAIM) instanceof Number mask
+                ? roleAuthorityRegistry.authoritiesOf(mask.longValue())
+                : authoritiesByJwt.get(jwt, this::extractAuthorities);
         return new JwtAuthenticationToken(jwt, authorities);
     }
 
-    private Collection<GrantedAuthority> extractAuthorities(Jwt jwt) {
-        List<String> authorities = jwt.getClaimAsStringList("authorities");
+    private List<GrantedAuthority> extractAuthorities(Jwt jwt) {
+        List<String> authorities = jwt.getClaimAsStringList(JwtTokenCustomizer.AUTHORITIES_CLAIM);
 
         if (authorities == null) {
             return Collections.emptyList();
         }
 
         return authorities.stream()
-                .map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList());
+                .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+                .toList();
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package com.userapplication.config.authenticationconfig;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.oauth2.server.authorization.token.JwtEncodingContext;
@@ -12,6 +13,23 @@ import java.util.stream.Collectors;
 @Component
 public class JwtTokenCustomizer implements OAuth2TokenCustomizer<JwtEncodingContext> {
 
+    public static final String AUTHORITIES_CLAIM = "authorities";
+    public static final String ROLES_CLAIM = "roles";
+
+    /**
+     * STRINGS writes the authority names, COMPACT a {@link RoleAuthorityRegistry} bitmask, BOTH writes both claims
+     * so resource servers that only read the names keep working while tokens migrate.
+     */
+    public enum AuthoritiesClaimFormat { STRINGS, COMPACT, BOTH }
+
+    private final RoleAuthorityRegistry roleAuthorityRegistry;
+    private final AuthoritiesClaimFormat format;
+
+    public JwtTokenCustomizer(RoleAuthorityRegistry roleAuthorityRegistry, @Value("${jwt.authorities-claim.format:strings}") AuthoritiesClaimFormat format) {
+        this.roleAuthorityRegistry = roleAuthorityRegistry;
+        this.format = format;
+    }
+
     @Override
     public void customize(JwtEncodingContext context) {
         Authentication principal = context.getPrincipal();
@@ -21,7 +39,16 @@ public class JwtTokenCustomizer implements OAuth2TokenCustomizer<JwtEncodingCont
                     .map(GrantedAuthority::getAuthority)
                     .collect(Collectors.toSet());
 
-            context.getClaims().claim("authorities", authorities);
+            // authorities that are not roles in tb_role cannot be encoded, so such tokens fall back to the names
+            Long mask = format == AuthoritiesClaimFormat.STRINGS ? null : roleAuthorityRegistry.maskOf(authorities);
+
+            if (mask != null) {
+                context.getClaims().claim(ROLES_CLAIM, mask);
+            }
+
+            if (mask == null || format == AuthoritiesClaimFormat.BOTH) {
+                context.getClaims().claim(AUTHORITIES_CLAIM, authorities);
+            }
         }
     }
-}
\ No newline at end of file
+}
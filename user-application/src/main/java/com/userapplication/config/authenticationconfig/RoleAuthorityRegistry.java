@@ -0,0 +1,150 @@
+package com.userapplication.config.authenticationconfig;
+
+import com.userapplication.entity.RoleEntity;
+import com.userapplication.repository.RoleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Maps the roles in {@code tb_role} to bits of the compact {@code roles} claim: the role with id n is bit n - 1.
+ * Each distinct mask decodes to one shared, immutable authority list, so converting a token allocates nothing.
+ */
+@Component
+public class RoleAuthorityRegistry {
+
+    private static final int MAX_ROLE_ID = Long.SIZE;
+
+    private final Supplier<Collection<RoleEntity>> roleLoader;
+    private final Map<Long, List<GrantedAuthority>> authoritiesByMask = new ConcurrentHashMap<>();
+    private volatile Roles roles;
+
+    @Autowired
+    public RoleAuthorityRegistry(RoleRepository roleRepository) {
+        this(roleRepository::findAll);
+    }
+
+    RoleAuthorityRegistry(Supplier<Collection<RoleEntity>> roleLoader) {
+        this.roleLoader = roleLoader;
+    }
+
+    /**
+     * Returns the mask for the given authority names, or {@code null} when one of them is not a role that fits in
+     * the mask, in which case the token has to carry the names instead.
+     */
+    public Long maskOf(Collection<String> authorities) {
+
+        long mask = 0;
+
+        Roles current = roles();
+
+        for (String authority : authorities) {
+
+            Long bit = current.bitsByName.get(authority);
+
+            if (bit == null) {
+
+                return null;
+
+            }
+
+            mask |= bit;
+
+        }
+
+        return mask;
+
+    }
+
+    public List<GrantedAuthority> authoritiesOf(long mask) {
+
+        List<GrantedAuthority> authorities = authoritiesByMask.get(mask);
+
+        if (authorities != null) {
+
+            return authorities;
+
+        }
+
+        Roles current = roles();
+
+        if ((mask & ~current.knownBits) != 0) {
+
+            // the token was issued after a role was added; bits that are still unknown grant nothing
+            current = reload();
+
+        }
+
+        Roles decodeWith = current;
+
+        return authoritiesByMask.computeIfAbsent(mask, key -> decode(key, decodeWith));
+
+    }
+
+    private List<GrantedAuthority> decode(long mask, Roles current) {
+
+        List<GrantedAuthority> authorities = new ArrayList<>(Long.bitCount(mask));
+
+        for (int bit = 0; bit < MAX_ROLE_ID; bit++) {
+
+            if ((mask & (1L << bit)) != 0 && current.authoritiesByBit[bit] != null) {
+
+                authorities.add(current.authoritiesByBit[bit]);
+
+            }
+
+        }
+
+        return List.copyOf(authorities);
+
+    }
+
+    private Roles roles() {
+
+        Roles current = roles;
+
+        return current != null ? current : reload();
+
+    }
+
+    private synchronized Roles reload() {
+
+        Map<String, Long> bitsByName = new HashMap<>();
+        GrantedAuthority[] authoritiesByBit = new GrantedAuthority[MAX_ROLE_ID];
+        long knownBits = 0;
+
+        for (RoleEntity role : roleLoader.get()) {
+
+            if (role.getRoleId() != null && role.getRoleId() >= 1 && role.getRoleId() <= MAX_ROLE_ID) {
+
+                int bit = (int) (role.getRoleId() - 1);
+                bitsByName.put(role.getRoleName(), 1L << bit);
+                authoritiesByBit[bit] = new SimpleGrantedAuthority(role.getRoleName());
+                knownBits |= 1L << bit;
+
+            }
+
+        }
+
+        roles = new Roles(Map.copyOf(bitsByName), authoritiesByBit, knownBits);
+        authoritiesByMask.clear();
+
+        return roles;
+
+    }
+
+    private record Roles(Map<String, Long> bitsByName, GrantedAuthority[] authoritiesByBit, long knownBits) {
+
+    }
+
+
+}
@@ -0,0 +1,35 @@
+package com.userapplication.config.authenticationconfig;
+
+import com.userapplication.service.JwkStoreService;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.JwtEncodingException;
+
+/**
+ * Signs with the store's current key only. The header gets that key's kid and algorithm, which overrides the RS256
+ * default the token generators ask for, and lets resource servers pick the right key out of the published set.
+ */
+public class RotatingJwtEncoder implements JwtEncoder {
+
+    private final JwkStoreService jwkStoreService;
+
+    public RotatingJwtEncoder(JwkStoreService jwkStoreService) {
+        this.jwkStoreService = jwkStoreService;
+    }
+
+    @Override
+    public Jwt encode(JwtEncoderParameters parameters) throws JwtEncodingException {
+
+        JwkStoreService.SigningKey signingKey = jwkStoreService.signingKey();
+        JwsHeader.Builder header = parameters.getJwsHeader() == null
+                ? JwsHeader.with(signingKey.algorithm())
+                : JwsHeader.from(parameters.getJwsHeader()).algorithm(signingKey.algorithm());
+
+        return signingKey.encoder().encode(JwtEncoderParameters.from(header.keyId(signingKey.jwk().getKeyID()).build(), parameters.getClaims()));
+
+    }
+
+
+}
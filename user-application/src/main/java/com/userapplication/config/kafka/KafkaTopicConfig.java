@@ -1,43 +1,52 @@
 package com.userapplication.config.kafka;
 
 import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.TopicBuilder;
 
+/**
+ * Topics are created or expanded by KafkaAdmin at startup. A partition count above the existing one adds partitions,
+ * one below it is logged and ignored, since Kafka cannot remove partitions. Records keyed to a partition before an
+ * expansion may map to a new one afterwards, so per-key ordering only holds within each side of the change.
+ */
 @Configuration
 public class KafkaTopicConfig {
 
+    @Value("${kafka.topics.replicas:1}")
+    private int replicas;
+
 
     @Bean
-    public NewTopic userCreatedTopic() {
+    public NewTopic userCreatedTopic(@Value("${kafka.topics.user-created.partitions:12}") int partitions) {
 
         return TopicBuilder.name("user-created")
-                .partitions(2)
-                .replicas(1)
+                .partitions(partitions)
+                .replicas(replicas)
                 .build();
 
     }
 
 
     @Bean
-    public NewTopic adminGrantEvent () {
+    public NewTopic adminGrantEvent (@Value("${kafka.topics.admin-grant.partitions:4}") int partitions) {
 
 
         return TopicBuilder.name("admin-grant")
-                .partitions(2)
-                .replicas(1)
+                .partitions(partitions)
+                .replicas(replicas)
                 .build();
 
 
     }
 
     @Bean
-    public NewTopic passwordResetEvent () {
+    public NewTopic passwordResetEvent (@Value("${kafka.topics.password-reset.partitions:6}") int partitions) {
 
         return TopicBuilder.name("password-reset")
-                .partitions(2)
-                .replicas(1)
+                .partitions(partitions)
+                .replicas(replicas)
                 .build();
 
     }
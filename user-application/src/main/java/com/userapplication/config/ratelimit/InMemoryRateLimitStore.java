@@ -0,0 +1,123 @@
+package com.userapplication.config.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Buckets in this node's memory, at most {@code rate-limit.store.max-keys} of them. A bucket is the single time at
+ * which it will be full again (the generic cell rate algorithm), moved forward by one interval per permit with a
+ * compare-and-set, so requests for the same key never wait on a lock. A bucket is dropped once it has refilled,
+ * which is the same as not having one.
+ */
+public class InMemoryRateLimitStore implements RateLimitStore {
+
+    private final Cache<String, Bucket> buckets;
+    private final LongSupplier nanoTime;
+
+    public InMemoryRateLimitStore(long maxKeys, MeterRegistry meterRegistry) {
+        this(maxKeys, meterRegistry, System::nanoTime, Scheduler.systemScheduler());
+    }
+
+    // the clock is a test seam; the cache expires buckets on the same clock the buckets are filled by
+    InMemoryRateLimitStore(long maxKeys, MeterRegistry meterRegistry, LongSupplier nanoTime, Scheduler scheduler) {
+
+        this.nanoTime = nanoTime;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfter(new RefillExpiry())
+                .ticker(nanoTime::getAsLong)
+                .scheduler(scheduler)
+                .build();
+
+        Gauge.builder("rate.limit.buckets", buckets, Cache::estimatedSize)
+                .description("Rate limit buckets held in memory")
+                .register(meterRegistry);
+
+    }
+
+    @Override
+    public Duration tryAcquire(String key, RateLimitPolicy policy) {
+
+        Bucket bucket = buckets.get(key, ignored -> new Bucket(nanoTime.getAsLong(), policy.intervalNanos()));
+        long burstNanos = policy.period().toNanos();
+
+        while (true) {
+
+            long now = nanoTime.getAsLong();
+            long fullAt = bucket.get();
+            long next = (fullAt - now > 0 ? fullAt : now) + bucket.intervalNanos;
+            long wait = next - now - burstNanos;
+
+            if (wait > 0) {
+
+                return Duration.ofNanos(wait);
+
+            }
+
+            if (bucket.compareAndSet(fullAt, next)) {
+
+                return Duration.ZERO;
+
+            }
+
+        }
+
+    }
+
+    private static final class Bucket extends AtomicLong {
+
+        private final long intervalNanos;
+
+        private Bucket(long fullAt, long intervalNanos) {
+            super(fullAt);
+            this.intervalNanos = intervalNanos;
+        }
+
+
+    }
+
+    /**
+     * @return how many buckets are held, after dropping the refilled ones
+     */
+    long size() {
+
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+
+    }
+
+    // read before the permit is taken, so one more interval covers the permit the read is for
+    private static final class RefillExpiry implements Expiry<String, Bucket> {
+
+        @Override
+        public long expireAfterCreate(String key, Bucket bucket, long currentTime) {
+            return untilRefilled(bucket, currentTime);
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Bucket bucket, long currentTime, long currentDuration) {
+            return untilRefilled(bucket, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Bucket bucket, long currentTime, long currentDuration) {
+            return untilRefilled(bucket, currentTime);
+        }
+
+        private static long untilRefilled(Bucket bucket, long currentTime) {
+            return Math.max(bucket.get() - currentTime, 0) + bucket.intervalNanos;
+        }
+
+
+    }
+
+
+}
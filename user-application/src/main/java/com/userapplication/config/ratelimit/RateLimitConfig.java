@@ -0,0 +1,20 @@
+package com.userapplication.config.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RateLimitConfig {
+
+
+    @Bean
+    @ConditionalOnProperty(name = "rate-limit.store.type", havingValue = "memory", matchIfMissing = true)
+    public RateLimitStore inMemoryRateLimitStore(@Value("${rate-limit.store.max-keys:100000}") long maxKeys, MeterRegistry meterRegistry) {
+        return new InMemoryRateLimitStore(maxKeys, meterRegistry);
+    }
+
+
+}
@@ -0,0 +1,29 @@
+package com.userapplication.config.ratelimit;
+
+import com.userapplication.exception.RateLimitExceededException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+/**
+ * Answers the per-username limits taken in the controller the way {@link RateLimitFilter} answers the others.
+ */
+@RestControllerAdvice
+public class RateLimitExceptionHandler {
+
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<Map<String, String>> handleRateLimitExceeded(RateLimitExceededException exception) {
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(RequestRateLimiter.retryAfterSeconds(exception.getRetryAfter())))
+                .body(Map.of("error", "Too Many Requests", "message", exception.getMessage()));
+
+    }
+
+
+}
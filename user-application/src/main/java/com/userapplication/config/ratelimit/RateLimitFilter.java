@@ -0,0 +1,95 @@
+package com.userapplication.config.ratelimit;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Rate limits the {@link RateLimitRoute} endpoints per client IP and per OAuth2 client, answering 429 with
+ * Retry-After before the request costs anything. It runs right after the security filter chain, so a client is only
+ * taken from a bearer token that has been verified. The limit per username is taken by the controller, which has
+ * read the body, and answered by {@link RateLimitExceptionHandler}.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER + 1)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RequestRateLimiter rateLimiter;
+
+    public RateLimitFilter(RequestRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+
+        return !rateLimiter.enabled();
+
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+
+        RateLimitRoute route = RateLimitRoute.match(request);
+
+        if (route == null) {
+
+            filterChain.doFilter(request, response);
+            return;
+
+        }
+
+        Duration wait = rateLimiter.tryAcquire(route, RateLimitKey.IP, request.getRemoteAddr());
+
+        if (wait.isZero()) {
+
+            wait = rateLimiter.tryAcquire(route, RateLimitKey.CLIENT, client());
+
+        }
+
+        if (!wait.isZero()) {
+
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(RequestRateLimiter.retryAfterSeconds(wait)));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Too Many Requests\",\"message\":\"Too many requests, retry later\"}");
+            return;
+
+        }
+
+        filterChain.doFilter(request, response);
+
+    }
+
+    private static String client() {
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (authentication instanceof JwtAuthenticationToken token) {
+
+            List<String> audience = token.getToken().getAudience();
+            return audience == null || audience.isEmpty() ? null : audience.getFirst();
+
+        }
+
+        return null;
+
+    }
+
+
+}
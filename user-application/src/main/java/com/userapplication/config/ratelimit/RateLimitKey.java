@@ -0,0 +1,26 @@
+package com.userapplication.config.ratelimit;
+
+/**
+ * What a route's requests are counted by, each with a bucket and policy of its own.
+ */
+public enum RateLimitKey {
+
+    // the address the request came from, a proxy's unless server.forward-headers-strategy is set
+    IP("ip"),
+    // the audience of a verified bearer token, for backends calling on behalf of many users
+    CLIENT("client"),
+    // the account the request acts on, however many addresses it comes from
+    USERNAME("username");
+
+    private final String key;
+
+    RateLimitKey(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+
+
+}
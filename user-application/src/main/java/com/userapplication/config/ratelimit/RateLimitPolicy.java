@@ -0,0 +1,56 @@
+package com.userapplication.config.ratelimit;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+
+/**
+ * {@code permits} requests per {@code period}, written as {@code permits/period}, e.g. {@code 5/1m}. All permits can
+ * be used at once, after which they come back one every {@code period / permits}.
+ */
+public record RateLimitPolicy(int permits, Duration period) {
+
+    public RateLimitPolicy(int permits, Duration period) {
+
+        if (permits < 1 || period.isNegative() || period.isZero()) {
+
+            throw new IllegalArgumentException("A rate limit needs at least one permit per positive period, got " + permits + '/' + period);
+
+        }
+
+        this.permits = permits;
+        this.period = period;
+
+    }
+
+    /**
+     * @return the policy, or {@code null} for a blank value, which leaves the key unlimited
+     */
+    public static RateLimitPolicy parse(String value) {
+
+        if (value == null || value.isBlank()) {
+
+            return null;
+
+        }
+
+        int separator = value.indexOf('/');
+
+        if (separator < 0) {
+
+            throw new IllegalArgumentException("Expected permits/period like 5/1m, got " + value);
+
+        }
+
+        return new RateLimitPolicy(Integer.parseInt(value.substring(0, separator).trim()), DurationStyle.detectAndParse(value.substring(separator + 1).trim()));
+
+    }
+
+    public long intervalNanos() {
+
+        return period.toNanos() / permits;
+
+    }
+
+
+}
@@ -0,0 +1,56 @@
+package com.userapplication.config.ratelimit;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+/**
+ * The endpoints anonymous callers can reach, each costing a hash, a database write or an email. Their policies are
+ * {@code rate-limit.<route>.<key>}, defaulting to the ones below.
+ */
+public enum RateLimitRoute {
+
+    SIGNUP("signup", HttpMethod.POST, "/api/user", "20/1m", "600/1m", "3/1m"),
+    RESET_TOKEN("reset-token", HttpMethod.POST, "/api/user/reset/token/**", "5/1m", "300/1m", "3/15m"),
+    RESET_PASSWORD("reset-password", HttpMethod.PUT, "/api/user/password", "10/1m", "300/1m", "5/15m");
+
+    private final String key;
+    private final RequestMatcher matcher;
+    private final String[] defaultPolicies;
+
+    RateLimitRoute(String key, HttpMethod method, String pattern, String ipPolicy, String clientPolicy, String usernamePolicy) {
+        this.key = key;
+        this.matcher = PathPatternRequestMatcher.withDefaults().matcher(method, pattern);
+        this.defaultPolicies = new String[]{ipPolicy, clientPolicy, usernamePolicy};
+    }
+
+    /**
+     * @return the route of the request, or {@code null} when it is not rate limited
+     */
+    public static RateLimitRoute match(HttpServletRequest request) {
+
+        for (RateLimitRoute route : values()) {
+
+            if (route.matcher.matches(request)) {
+
+                return route;
+
+            }
+
+        }
+
+        return null;
+
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public String defaultPolicy(RateLimitKey key) {
+        return defaultPolicies[key.ordinal()];
+    }
+
+
+}
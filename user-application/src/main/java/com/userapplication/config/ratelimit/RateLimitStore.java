@@ -0,0 +1,20 @@
+package com.userapplication.config.ratelimit;
+
+import java.time.Duration;
+
+/**
+ * Where the buckets are kept. {@link InMemoryRateLimitStore} limits each node on its own; a cluster that must share
+ * one limit sets {@code rate-limit.store.type} to anything but {@code memory} and provides a bean backed by a
+ * shared store.
+ */
+public interface RateLimitStore {
+
+    /**
+     * Takes a permit from the bucket of {@code key}, created full on first use.
+     *
+     * @return {@link Duration#ZERO} when a permit was taken, otherwise how long until the next one
+     */
+    Duration tryAcquire(String key, RateLimitPolicy policy);
+
+
+}
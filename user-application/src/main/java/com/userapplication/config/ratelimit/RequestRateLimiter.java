@@ -0,0 +1,122 @@
+package com.userapplication.config.ratelimit;
+
+import com.userapplication.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Takes permits for the {@code rate-limit.<route>.<key>} policies. A blank policy leaves that key of the route
+ * unlimited, and {@code rate-limit.enabled=false} turns every limit off.
+ */
+@Component
+public class RequestRateLimiter {
+
+    private final RateLimitStore store;
+    private final boolean enabled;
+    private final Map<RateLimitRoute, Map<RateLimitKey, RateLimitPolicy>> policies = new EnumMap<>(RateLimitRoute.class);
+    private final Map<RateLimitRoute, Map<RateLimitKey, Counter>> rejections = new EnumMap<>(RateLimitRoute.class);
+
+    public RequestRateLimiter(RateLimitStore store, Environment environment, MeterRegistry meterRegistry,
+                              @Value("${rate-limit.enabled:true}") boolean enabled) {
+
+        this.store = store;
+        this.enabled = enabled;
+
+        for (RateLimitRoute route : RateLimitRoute.values()) {
+
+            Map<RateLimitKey, RateLimitPolicy> routePolicies = new EnumMap<>(RateLimitKey.class);
+            Map<RateLimitKey, Counter> routeRejections = new EnumMap<>(RateLimitKey.class);
+
+            for (RateLimitKey key : RateLimitKey.values()) {
+
+                RateLimitPolicy policy = RateLimitPolicy.parse(environment.getProperty("rate-limit." + route.key() + '.' + key.key(), route.defaultPolicy(key)));
+
+                if (policy != null) {
+
+                    routePolicies.put(key, policy);
+
+                }
+
+                routeRejections.put(key, Counter.builder("rate.limit.rejected")
+                        .description("Requests answered with 429 because a rate limit bucket was empty")
+                        .tag("route", route.key())
+                        .tag("key", key.key())
+                        .register(meterRegistry));
+
+            }
+
+            policies.put(route, routePolicies);
+            rejections.put(route, routeRejections);
+
+        }
+
+    }
+
+    public boolean enabled() {
+
+        return enabled;
+
+    }
+
+    /**
+     * @return {@link Duration#ZERO} when the request may go ahead, otherwise how long until it may be retried
+     */
+    public Duration tryAcquire(RateLimitRoute route, RateLimitKey key, String value) {
+
+        RateLimitPolicy policy = policies.get(route).get(key);
+
+        if (!enabled || policy == null || value == null) {
+
+            return Duration.ZERO;
+
+        }
+
+        Duration wait = store.tryAcquire(route.key() + ':' + key.key() + ':' + value, policy);
+
+        if (!wait.isZero()) {
+
+            rejections.get(route).get(key).increment();
+
+        }
+
+        return wait;
+
+    }
+
+    /**
+     * @return the Retry-After value for a wait: whole seconds, rounded up so a retry at that time finds a permit
+     */
+    public static long retryAfterSeconds(Duration wait) {
+
+        return Math.max(1, (wait.toMillis() + 999) / 1000);
+
+    }
+
+    /**
+     * Limits the requests acting on one account, once the body naming it has been read.
+     *
+     * @throws RateLimitExceededException when the account's bucket is empty
+     */
+    public void checkUsername(RateLimitRoute route, String username) {
+
+        // case and surrounding spaces would otherwise give one account as many buckets as it has spellings
+        Duration wait = tryAcquire(route, RateLimitKey.USERNAME, username == null ? null : username.trim().toLowerCase(Locale.ROOT));
+
+        if (!wait.isZero()) {
+
+            throw new RateLimitExceededException("Too many requests for this user", wait);
+
+        }
+
+    }
+
+
+}
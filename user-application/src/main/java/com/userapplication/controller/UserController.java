@@ -1,27 +1,37 @@
 package com.userapplication.controller;
 
+import com.userapplication.config.ratelimit.RateLimitRoute;
+import com.userapplication.config.ratelimit.RequestRateLimiter;
 import com.userapplication.dto.*;
+import com.userapplication.service.UserImportService;
 import com.userapplication.service.UserService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import javax.security.auth.login.CredentialExpiredException;
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
 
 @RestController
 @RequestMapping ("/api/user")
 public class UserController {
 
     private final UserService userService;
+    private final UserImportService userImportService;
+    private final RequestRateLimiter rateLimiter;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserImportService userImportService, RequestRateLimiter rateLimiter) {
         this.userService = userService;
+        this.userImportService = userImportService;
+        this.rateLimiter = rateLimiter;
     }
 
     @PostMapping
     public ResponseEntity<UserSecureDTO> createUser (@RequestBody UserDTO userDTO) {
 
+        rateLimiter.checkUsername(RateLimitRoute.SIGNUP, userDTO.username());
 
         UserSecureDTO user = userService.createUser(userDTO);
 
@@ -30,13 +40,23 @@ public class UserController {
 
     }
 
+    @PostMapping (value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<UserImportResultDTO> importUsers (InputStream users) throws IOException {
+
+        UserImportResultDTO result = userImportService.importUsers(users);
+
+        return ResponseEntity.ok().body(result);
+
+    }
+
     @GetMapping
     @PreAuthorize("hasRole('ROLE_ADMIN')")
-    public ResponseEntity<List<UserSecureDTO>> getAllUsers() {
+    public ResponseEntity<UserPageDTO> getAllUsers(@RequestParam(required = false) String cursor, @RequestParam(required = false) Integer limit) {
 
-        List<UserSecureDTO> allUsers = userService.getAllUsers();
+        UserPageDTO users = userService.getAllUsers(cursor, limit);
 
-        return ResponseEntity.ok().body(allUsers);
+        return ResponseEntity.ok().body(users);
 
 
     }
@@ -75,6 +95,7 @@ public class UserController {
     @PostMapping ("/reset/token")
     public ResponseEntity<Void> getResetToken (@RequestBody UserResetTokenDTO userResetTokenDTO) {
 
+        rateLimiter.checkUsername(RateLimitRoute.RESET_TOKEN, userResetTokenDTO.username());
         userService.createPasswordResetToken(userResetTokenDTO.username());
 
         return ResponseEntity.noContent().build();
@@ -84,6 +105,7 @@ public class UserController {
     @PutMapping ("/password")
     public ResponseEntity<Void> resetPassword (@RequestBody PasswordResetDTO newPassword) throws CredentialExpiredException {
 
+        rateLimiter.checkUsername(RateLimitRoute.RESET_PASSWORD, newPassword.username());
 
         userService.resetUserPassword(newPassword);
 
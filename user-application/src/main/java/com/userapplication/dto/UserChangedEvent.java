@@ -0,0 +1,11 @@
+package com.userapplication.dto;
+
+/**
+ * Application event published when a user's password, roles or existence change.
+ */
+public record UserChangedEvent (String username) {
+
+    public UserChangedEvent(String username) {
+        this.username = username;
+    }
+}
@@ -0,0 +1,9 @@
+package com.userapplication.dto;
+
+public record UserImportResultDTO (long imported, long skipped) {
+
+    public UserImportResultDTO(long imported, long skipped) {
+        this.imported = imported;
+        this.skipped = skipped;
+    }
+}
@@ -0,0 +1,11 @@
+package com.userapplication.dto;
+
+import java.util.List;
+
+public record UserPageDTO (List<UserSecureDTO> users, String nextCursor) {
+
+    public UserPageDTO(List<UserSecureDTO> users, String nextCursor) {
+        this.users = users;
+        this.nextCursor = nextCursor;
+    }
+}
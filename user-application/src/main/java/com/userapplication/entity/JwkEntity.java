@@ -0,0 +1,41 @@
+package com.userapplication.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table (name = "tb_jwk")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class JwkEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(unique = true, nullable = false, length = 64)
+    private String kid;
+    @Column(nullable = false, length = 10)
+    private String algorithm;
+    // private JWK as JSON, encrypted with jwk.encryption.password; public keys are derived from it on load
+    @Column(nullable = false, length = 8000)
+    private String encryptedJwk;
+    @Column(nullable = false)
+    private Instant createdAt;
+    // published from createdAt, signs from activatesAt, so resource servers see a key before any token carries it
+    @Column(nullable = false)
+    private Instant activatesAt;
+    // set once a newer key takes over signing; the key stays published until then for tokens it already signed
+    private Instant retiresAt;
+    // one more than the newest key's; unique, so two nodes creating the first key on an empty table cannot both commit
+    @Column(unique = true)
+    private Long generation;
+
+
+}
@@ -0,0 +1,45 @@
+package com.userapplication.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.Instant;
+
+@Entity
+@Table (name = "tb_outbox_event")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEventEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tb_outbox_event_seq")
+    @SequenceGenerator(name = "tb_outbox_event_seq", sequenceName = "tb_outbox_event_seq", allocationSize = 50)
+    private Long id;
+    @Column(length = 100, nullable = false)
+    private String topic;
+    @Column(length = 255)
+    private String messageKey;
+    @Column(length = 4000, nullable = false)
+    private String payload;
+    @Column(nullable = false)
+    private Instant createdAt;
+    // W3C traceparent of the span that published the event, so the relay's send continues that trace
+    @Column(length = 55)
+    private String traceparent;
+    // failed sends of this row; the broker refusing load for everyone is not counted
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private int attempts;
+    // set once attempts reach outbox.relay.max-attempts, after which the relay leaves the row alone
+    private Instant parkedAt;
+    // a relay is sending the row until then; a relay that died mid-send leaves it to be claimed again afterwards
+    private Instant claimedUntil;
+
+
+}
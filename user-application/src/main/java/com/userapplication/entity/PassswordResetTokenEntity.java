@@ -9,7 +9,7 @@ import lombok.Setter;
 import java.time.Instant;
 
 @Entity
-@Table (name = "tb_reset_token")
+@Table (name = "tb_reset_token", indexes = @Index(name = "idx_reset_token_expiration_time", columnList = "expirationTime"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -20,7 +20,9 @@ public class PassswordResetTokenEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
-    private String token;
+    // SHA-256 of the token that was mailed to the user; the token itself is never stored
+    @Column(unique = true, length = 64)
+    private String tokenHash;
     @OneToOne (targetEntity = UserEntity.class, fetch = FetchType.EAGER)
     @JoinColumn (nullable = false, name = "user_id")
     private UserEntity user;
@@ -19,7 +19,8 @@ import java.util.Set;
 public class UserEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tb_users_seq")
+    @SequenceGenerator(name = "tb_users_seq", sequenceName = "tb_users_seq", allocationSize = 50)
     private Long id;
     @Column(unique = true, length = 30, nullable = false)
     private String username;
@@ -0,0 +1,14 @@
+package com.userapplication.exception;
+
+/**
+ * Thrown when the producer already has {@code kafka.producer.max-in-flight} unacknowledged sends and no slot freed up
+ * within {@code kafka.producer.acquire-timeout}.
+ */
+public class KafkaBackpressureException extends RuntimeException {
+
+    public KafkaBackpressureException(String message) {
+        super(message);
+    }
+
+
+}
@@ -0,0 +1,13 @@
+package com.userapplication.exception;
+
+/**
+ * Thrown when the password hashing pool is saturated and a hash request is shed instead of queued.
+ */
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+
+
+}
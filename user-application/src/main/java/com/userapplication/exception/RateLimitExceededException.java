@@ -0,0 +1,23 @@
+package com.userapplication.exception;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a rate limit bucket has no permit left, answered with 429 and {@code retryAfter} by
+ * {@code RateLimitExceptionHandler}.
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public RateLimitExceededException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+
+}
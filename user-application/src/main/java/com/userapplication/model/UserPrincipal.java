@@ -0,0 +1,50 @@
+package com.userapplication.model;
+
+import com.userapplication.entity.UserEntity;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable login principal, small enough to be cached, detached from the persistence context.
+ */
+public record UserPrincipal(String username, String password, List<GrantedAuthority> authorities) implements UserDetails {
+
+    public UserPrincipal(String username, String password, List<GrantedAuthority> authorities) {
+        this.username = username;
+        this.password = password;
+        this.authorities = List.copyOf(authorities);
+    }
+
+    public static UserPrincipal from(UserEntity userEntity) {
+
+        List<GrantedAuthority> authorities = userEntity.getRoles().stream().<GrantedAuthority>map(role -> new SimpleGrantedAuthority(role.getRoleName())).toList();
+
+        return new UserPrincipal(userEntity.getUsername(), userEntity.getPassword(), authorities);
+
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String toString() {
+        // keeps the password hash out of logs
+        return "UserPrincipal[username=" + username + ", authorities=" + authorities + "]";
+    }
+}
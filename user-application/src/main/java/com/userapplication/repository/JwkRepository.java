@@ -0,0 +1,23 @@
+package com.userapplication.repository;
+
+import com.userapplication.entity.JwkEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface JwkRepository extends JpaRepository<JwkEntity, Long> {
+
+
+    List<JwkEntity> findAllByOrderByActivatesAtDesc();
+
+    // row locks serialize rotation across nodes, so only one of them creates the next key
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query (value = "SELECT k FROM JwkEntity k ORDER BY k.activatesAt DESC")
+    List<JwkEntity> findAllForUpdate();
+
+}
@@ -0,0 +1,45 @@
+package com.userapplication.repository;
+
+import com.userapplication.entity.OutboxEventEntity;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxRepository extends JpaRepository<OutboxEventEntity, Long> {
+
+    // SKIP LOCKED (-2) lets several relay instances claim at the same time without claiming the same row; the locks
+    // are only held by the short claiming transaction, the claim itself is claimedUntil
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query (value = "SELECT o FROM OutboxEventEntity o WHERE o.parkedAt IS NULL AND (o.claimedUntil IS NULL OR o.claimedUntil < :now) ORDER BY o.id")
+    List<OutboxEventEntity> findClaimable(Instant now, Limit limit);
+
+    @Modifying
+    @Query (value = "UPDATE OutboxEventEntity o SET o.claimedUntil = :claimedUntil WHERE o.id IN :ids")
+    void claim(Collection<Long> ids, Instant claimedUntil);
+
+    @Modifying
+    @Query (value = "UPDATE OutboxEventEntity o SET o.claimedUntil = NULL WHERE o.id IN :ids")
+    void release(Collection<Long> ids);
+
+    @Modifying
+    @Query (value = "UPDATE OutboxEventEntity o SET o.attempts = o.attempts + 1, o.claimedUntil = NULL WHERE o.id IN :ids")
+    void releaseAfterFailure(Collection<Long> ids);
+
+    @Modifying
+    @Query (value = "UPDATE OutboxEventEntity o SET o.attempts = o.attempts + 1, o.parkedAt = :parkedAt, o.claimedUntil = NULL WHERE o.id IN :ids")
+    void park(Collection<Long> ids, Instant parkedAt);
+
+
+}
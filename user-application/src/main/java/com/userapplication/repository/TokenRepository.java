@@ -1,17 +1,30 @@
 package com.userapplication.repository;
 
 import com.userapplication.entity.PassswordResetTokenEntity;
+import com.userapplication.entity.UserEntity;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TokenRepository extends JpaRepository<PassswordResetTokenEntity, Long> {
 
 
-    Optional<PassswordResetTokenEntity> findByToken(String token);
+    Optional<PassswordResetTokenEntity> findByTokenHash(String tokenHash);
 
-    void deleteByToken(String token);
+    // a bulk delete runs immediately, ahead of the insert of the replacing token, which keeps user_id unique
+    @Modifying
+    @Query (value = "DELETE FROM PassswordResetTokenEntity t WHERE t.user = :user")
+    void deleteByUser(UserEntity user);
+
+    // served by the expirationTime index, so each purge batch is a short range scan
+    @Query (value = "SELECT t.id FROM PassswordResetTokenEntity t WHERE t.expirationTime < :now ORDER BY t.expirationTime")
+    List<Long> findExpiredIds(Instant now, Limit limit);
 
 }
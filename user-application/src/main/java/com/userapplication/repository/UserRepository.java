@@ -1,12 +1,16 @@
 package com.userapplication.repository;
 
 import com.userapplication.entity.UserEntity;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface UserRepository extends JpaRepository<UserEntity, Long> {
@@ -15,6 +19,28 @@ public interface UserRepository extends JpaRepository<UserEntity, Long> {
     @Query
     Optional<UserEntity> findByUsername(@Param("username") String username);
 
+    // one indexed column, no roles, for checking a cached principal against the stored hash
+    @Query (value = "SELECT u.password FROM UserEntity u WHERE u.username = :username")
+    Optional<String> findPasswordByUsername(@Param("username") String username);
 
+    @Query (value = "SELECT u.username FROM UserEntity u WHERE u.username IN :usernames")
+    Set<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    @Query (value = "SELECT u.id FROM UserEntity u WHERE u.id > :cursor ORDER BY u.id")
+    List<Long> findIdsAfter(@Param("cursor") Long cursor, Limit limit);
+
+    @Query (value = "SELECT u.id AS id, u.username AS username, r.roleName AS roleName FROM UserEntity u LEFT JOIN u.roles r WHERE u.id IN :ids ORDER BY u.id")
+    List<UserRoleRow> findUserRolesByIds(@Param("ids") Collection<Long> ids);
+
+
+    interface UserRoleRow {
+
+        Long getId();
+
+        String getUsername();
+
+        String getRoleName();
+
+    }
 
 }
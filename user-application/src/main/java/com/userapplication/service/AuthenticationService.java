@@ -1,29 +1,79 @@
 package com.userapplication.service;
 
-import com.userapplication.entity.UserEntity;
-import com.userapplication.model.User;
-import com.userapplication.repository.RoleRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.userapplication.dto.UserChangedEvent;
+import com.userapplication.model.UserPrincipal;
 import com.userapplication.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
 
 @Service
 public class AuthenticationService implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final Cache<String, UserPrincipal> principalsByUsername;
+    private final boolean verifyCachedHash;
 
-    public AuthenticationService(UserRepository userRepository, RoleRepository roleRepository) {
+    public AuthenticationService(UserRepository userRepository, @Value("${user.principal-cache.ttl:5m}") Duration cacheTtl,
+                                 @Value("${user.principal-cache.max-size:10000}") long cacheMaxSize,
+                                 @Value("${user.principal-cache.verify-hash:false}") boolean verifyCachedHash) {
         this.userRepository = userRepository;
+        this.principalsByUsername = Caffeine.newBuilder().expireAfterWrite(cacheTtl).maximumSize(cacheMaxSize).build();
+        this.verifyCachedHash = verifyCachedHash;
     }
 
+    /**
+     * A cached principal is used until {@link #onUserChanged} evicts it or the TTL expires it. That event only reaches
+     * the node that made the change, so another node's password reset or deletion takes effect here within the TTL.
+     * With {@code user.principal-cache.verify-hash} a hit is first checked against the stored hash, a single-column
+     * lookup, which makes such changes take effect at once at the cost of a query per login.
+     */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
 
-        UserEntity userEntity = userRepository.findByUsername(username).orElseThrow(() -> new UsernameNotFoundException(username));
+        UserPrincipal cached = principalsByUsername.getIfPresent(username);
+
+        if (cached != null) {
+
+            if (!verifyCachedHash || userRepository.findPasswordByUsername(username).filter(cached.password()::equals).isPresent()) {
+
+                return cached;
+
+            }
+
+            principalsByUsername.asMap().remove(username, cached);
+
+        }
+
+        // unknown usernames are not cached, so a user created afterwards can log in right away
+        UserPrincipal principal = principalsByUsername.get(username,
+                key -> userRepository.findByUsername(key).map(UserPrincipal::from).orElse(null));
+
+        if (principal == null) {
+
+            throw new UsernameNotFoundException(username);
+
+        }
+
+        return principal;
+
+    }
+
+    /**
+     * Runs after the changing transaction commits. A load that is still in flight for the same username finishes
+     * before the entry is removed, so a hash read before the commit cannot outlive the invalidation.
+     */
+    @TransactionalEventListener
+    public void onUserChanged(UserChangedEvent event) {
 
-        return new User(userEntity);
+        principalsByUsername.invalidate(event.username());
 
     }
 }
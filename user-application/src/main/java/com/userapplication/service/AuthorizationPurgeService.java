@@ -0,0 +1,74 @@
+package com.userapplication.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * The JDBC authorization service never deletes anything on its own. Rows whose last token has expired are removed
+ * here in batches; rows that never got a token (abandoned consent screens) have no expiry and are kept.
+ */
+@Service
+@ConditionalOnProperty(name = "authorization.store.type", havingValue = "jdbc")
+public class AuthorizationPurgeService {
+
+    // spelled out rather than GREATEST(...), which returns null on H2 as soon as one of the columns is null
+    private static final String DELETE_EXPIRED = "DELETE FROM oauth2_authorization WHERE id IN (SELECT id FROM oauth2_authorization"
+            + " WHERE COALESCE(authorization_code_expires_at, access_token_expires_at, refresh_token_expires_at, device_code_expires_at) IS NOT NULL"
+            + " AND (authorization_code_expires_at IS NULL OR authorization_code_expires_at < :now)"
+            + " AND (access_token_expires_at IS NULL OR access_token_expires_at < :now)"
+            + " AND (refresh_token_expires_at IS NULL OR refresh_token_expires_at < :now)"
+            + " AND (device_code_expires_at IS NULL OR device_code_expires_at < :now)"
+            + " FETCH FIRST :limit ROWS ONLY)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final Counter purgedCounter;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Value("${authorization.store.jdbc.purge.batch-size:1000}")
+    private int batchSize;
+
+    public AuthorizationPurgeService(NamedParameterJdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.purgedCounter = Counter.builder("oauth2.authorizations.purged").description("Expired authorizations deleted from oauth2_authorization").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${authorization.store.jdbc.purge.interval-ms:300000}", initialDelayString = "${authorization.store.jdbc.purge.interval-ms:300000}")
+    public long purgeExpiredAuthorizations() {
+
+        MapSqlParameterSource parameters = new MapSqlParameterSource("now", Timestamp.from(Instant.now())).addValue("limit", batchSize);
+        long purged = 0;
+        int deleted;
+
+        // each statement commits on its own, so locks are held for one batch at a time
+        do {
+
+            deleted = jdbcTemplate.update(DELETE_EXPIRED, parameters);
+            purged += deleted;
+
+        } while (deleted == batchSize);
+
+        purgedCounter.increment(purged);
+
+        if (purged > 0) {
+
+            logger.info("Purged {} expired OAuth2 authorizations", purged);
+
+        }
+
+        return purged;
+
+    }
+
+
+}
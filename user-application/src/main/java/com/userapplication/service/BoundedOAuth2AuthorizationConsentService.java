@@ -0,0 +1,50 @@
+package com.userapplication.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationConsent;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationConsentService;
+
+import java.time.Duration;
+
+/**
+ * In-memory consents with a size bound and an idle expiry. A dropped consent only means the user is asked again.
+ */
+public class BoundedOAuth2AuthorizationConsentService implements OAuth2AuthorizationConsentService {
+
+    private final Cache<ConsentKey, OAuth2AuthorizationConsent> consents;
+
+    public BoundedOAuth2AuthorizationConsentService(long maxSize, Duration ttl) {
+        this.consents = Caffeine.newBuilder().maximumSize(maxSize).expireAfterAccess(ttl).build();
+    }
+
+    @Override
+    public void save(OAuth2AuthorizationConsent authorizationConsent) {
+        consents.put(ConsentKey.of(authorizationConsent), authorizationConsent);
+    }
+
+    @Override
+    public void remove(OAuth2AuthorizationConsent authorizationConsent) {
+        consents.invalidate(ConsentKey.of(authorizationConsent));
+    }
+
+    @Override
+    public OAuth2AuthorizationConsent findById(String registeredClientId, String principalName) {
+        return consents.getIfPresent(new ConsentKey(registeredClientId, principalName));
+    }
+
+    private record ConsentKey(String registeredClientId, String principalName) {
+
+        private ConsentKey(String registeredClientId, String principalName) {
+            this.registeredClientId = registeredClientId;
+            this.principalName = principalName;
+        }
+
+        private static ConsentKey of(OAuth2AuthorizationConsent consent) {
+            return new ConsentKey(consent.getRegisteredClientId(), consent.getPrincipalName());
+        }
+
+    }
+
+
+}
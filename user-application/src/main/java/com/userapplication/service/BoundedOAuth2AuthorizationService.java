@@ -0,0 +1,301 @@
+package com.userapplication.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2DeviceCode;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.core.OAuth2UserCode;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.endpoint.OidcParameterNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory authorizations with a hard size bound. Each entry expires when the last of its tokens does, or after
+ * {@code authorization.store.pending-ttl} while it only holds the state of an unfinished authorization request.
+ * Token lookups go through a value index instead of scanning every authorization, and writes to the same
+ * authorization are serialized on one of a fixed set of locks, so the index never disagrees with the entry.
+ */
+public class BoundedOAuth2AuthorizationService implements OAuth2AuthorizationService {
+
+    private static final int STRIPES = 64;
+
+    private final Cache<String, OAuth2Authorization> authorizations;
+    private final Map<String, String> idsByTokenValue = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final Duration pendingTtl;
+    private final Counter sizeEvictions;
+
+    public BoundedOAuth2AuthorizationService(long maxSize, Duration pendingTtl, MeterRegistry meterRegistry) {
+        this(maxSize, pendingTtl, meterRegistry, Ticker.systemTicker(), ForkJoinPool.commonPool(), Scheduler.systemScheduler());
+    }
+
+    // the ticker, executor and scheduler are test seams for expiry and for when evictions are unindexed
+    BoundedOAuth2AuthorizationService(long maxSize, Duration pendingTtl, MeterRegistry meterRegistry, Ticker ticker, Executor executor,
+                                      Scheduler scheduler) {
+
+        this.pendingTtl = pendingTtl;
+        this.sizeEvictions = Counter.builder("oauth2.authorizations.evicted")
+                .description("Authorizations dropped to stay within authorization.store.max-size while their tokens were still valid")
+                .register(meterRegistry);
+
+        for (int i = 0; i < STRIPES; i++) {
+
+            locks[i] = new ReentrantLock();
+
+        }
+
+        // the scheduler removes expired entries promptly instead of waiting for cache activity to find them. Evictions
+        // are unindexed by a removal listener, which runs after the cache has let go of the entry and so may take the
+        // entry's lock; an eviction listener runs inside the cache's own lock and could not
+        this.authorizations = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new AuthorizationExpiry())
+                .ticker(ticker)
+                .executor(executor)
+                .scheduler(scheduler)
+                .removalListener(this::onRemoval)
+                .build();
+
+        Gauge.builder("oauth2.authorizations.size", authorizations, Cache::estimatedSize)
+                .description("Authorizations held in memory")
+                .register(meterRegistry);
+
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+
+        ReentrantLock lock = lockFor(authorization.getId());
+        lock.lock();
+
+        try {
+
+            OAuth2Authorization previous = authorizations.getIfPresent(authorization.getId());
+
+            if (previous != null) {
+
+                unindex(previous);
+
+            }
+
+            authorizations.put(authorization.getId(), authorization);
+            tokenValues(authorization).values().forEach(value -> idsByTokenValue.put(value, authorization.getId()));
+
+        } finally {
+
+            lock.unlock();
+
+        }
+
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+
+        ReentrantLock lock = lockFor(authorization.getId());
+        lock.lock();
+
+        try {
+
+            OAuth2Authorization removed = authorizations.asMap().remove(authorization.getId());
+
+            if (removed != null) {
+
+                unindex(removed);
+
+            }
+
+        } finally {
+
+            lock.unlock();
+
+        }
+
+    }
+
+    @Override
+    public OAuth2Authorization findById(String id) {
+        return authorizations.getIfPresent(id);
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+
+        String id = idsByTokenValue.get(token);
+
+        if (id == null) {
+
+            return null;
+
+        }
+
+        OAuth2Authorization authorization = authorizations.getIfPresent(id);
+
+        if (authorization == null) {
+
+            return null;
+
+        }
+
+        Map<String, String> tokenValues = tokenValues(authorization);
+        boolean matches = tokenType == null ? tokenValues.containsValue(token) : token.equals(tokenValues.get(tokenType.getValue()));
+
+        return matches ? authorization : null;
+
+    }
+
+    // save and remove unindex what they replace or remove themselves, so only evictions are left to this
+    private void onRemoval(String id, OAuth2Authorization authorization, RemovalCause cause) {
+
+        if (!cause.wasEvicted() || id == null || authorization == null) {
+
+            return;
+
+        }
+
+        if (cause == RemovalCause.SIZE) {
+
+            sizeEvictions.increment();
+
+        }
+
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+
+        try {
+
+            // the authorization may have been saved again since it was evicted, with some of the same tokens
+            OAuth2Authorization current = authorizations.asMap().get(id);
+            Collection<String> kept = current == null ? List.of() : tokenValues(current).values();
+
+            tokenValues(authorization).values().stream()
+                    .filter(value -> !kept.contains(value))
+                    .forEach(value -> idsByTokenValue.remove(value, id));
+
+        } finally {
+
+            lock.unlock();
+
+        }
+
+    }
+
+    private void unindex(OAuth2Authorization authorization) {
+        // conditional, so a value that has since been indexed for another authorization is kept
+        tokenValues(authorization).values().forEach(value -> idsByTokenValue.remove(value, authorization.getId()));
+    }
+
+    // runs pending expiries and evictions now rather than on later cache activity, for tests
+    void cleanUp() {
+        authorizations.cleanUp();
+    }
+
+    // how many token values are indexed, for checking that evictions leave none behind
+    int indexSize() {
+        return idsByTokenValue.size();
+    }
+
+    private ReentrantLock lockFor(String id) {
+        return locks[Math.floorMod(id.hashCode(), STRIPES)];
+    }
+
+    // keyed by the token type value findByToken is called with
+    private static Map<String, String> tokenValues(OAuth2Authorization authorization) {
+
+        Map<String, String> values = new LinkedHashMap<>();
+        String state = authorization.getAttribute(OAuth2ParameterNames.STATE);
+
+        if (state != null) {
+
+            values.put(OAuth2ParameterNames.STATE, state);
+
+        }
+
+        putToken(values, OAuth2ParameterNames.CODE, authorization.getToken(OAuth2AuthorizationCode.class));
+        putToken(values, OAuth2TokenType.ACCESS_TOKEN.getValue(), authorization.getToken(OAuth2AccessToken.class));
+        putToken(values, OidcParameterNames.ID_TOKEN, authorization.getToken(OidcIdToken.class));
+        putToken(values, OAuth2TokenType.REFRESH_TOKEN.getValue(), authorization.getToken(OAuth2RefreshToken.class));
+        putToken(values, OAuth2ParameterNames.USER_CODE, authorization.getToken(OAuth2UserCode.class));
+        putToken(values, OAuth2ParameterNames.DEVICE_CODE, authorization.getToken(OAuth2DeviceCode.class));
+        return values;
+
+    }
+
+    private static void putToken(Map<String, String> values, String type, OAuth2Authorization.Token<? extends OAuth2Token> token) {
+
+        if (token != null) {
+
+            values.put(type, token.getToken().getTokenValue());
+
+        }
+
+    }
+
+    private class AuthorizationExpiry implements Expiry<String, OAuth2Authorization> {
+
+        @Override
+        public long expireAfterCreate(String id, OAuth2Authorization authorization, long currentTime) {
+            return remainingNanos(authorization);
+        }
+
+        @Override
+        public long expireAfterUpdate(String id, OAuth2Authorization authorization, long currentTime, long currentDuration) {
+            return remainingNanos(authorization);
+        }
+
+        @Override
+        public long expireAfterRead(String id, OAuth2Authorization authorization, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        private long remainingNanos(OAuth2Authorization authorization) {
+
+            Instant now = Instant.now();
+            Instant latest = null;
+
+            for (Class<? extends OAuth2Token> type : new Class[]{OAuth2AuthorizationCode.class, OAuth2AccessToken.class,
+                    OidcIdToken.class, OAuth2RefreshToken.class, OAuth2UserCode.class, OAuth2DeviceCode.class}) {
+
+                OAuth2Authorization.Token<? extends OAuth2Token> token = authorization.getToken(type);
+                Instant expiresAt = token == null ? null : token.getToken().getExpiresAt();
+
+                if (expiresAt != null && (latest == null || expiresAt.isAfter(latest))) {
+
+                    latest = expiresAt;
+
+                }
+
+            }
+
+            return latest == null ? pendingTtl.toNanos() : Math.max(0, Duration.between(now, latest).toNanos());
+
+        }
+
+    }
+
+
+}
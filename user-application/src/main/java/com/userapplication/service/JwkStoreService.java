@@ -0,0 +1,272 @@
+package com.userapplication.service;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.userapplication.entity.JwkEntity;
+import com.userapplication.repository.JwkRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.crypto.encrypt.Encryptors;
+import org.springframework.security.crypto.encrypt.TextEncryptor;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Signing keys shared by every node through tb_jwk. Each node keeps the decrypted key set in memory and re-reads it
+ * every {@code jwk.refresh-interval}, so a key created by another node is published and used without a restart.
+ */
+@Service
+public class JwkStoreService implements JWKSource<SecurityContext> {
+
+    private final JwkRepository jwkRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TextEncryptor encryptor;
+    private final SignatureAlgorithm algorithm;
+    private final Duration rotationPeriod;
+    private final Duration activationDelay;
+    private final Duration gracePeriod;
+    private final Duration refreshInterval;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    // decrypting and parsing a key is done once per kid, not once per refresh
+    private final Map<String, SigningKey> keysByKid = new ConcurrentHashMap<>();
+    private volatile KeySnapshot snapshot;
+
+    public JwkStoreService(JwkRepository jwkRepository, PlatformTransactionManager transactionManager,
+                           @Value("${jwk.encryption.password}") String encryptionPassword,
+                           @Value("${jwk.encryption.salt}") String encryptionSalt,
+                           @Value("${jwk.algorithm:RS256}") String algorithm,
+                           @Value("${jwk.rotation.period:30d}") Duration rotationPeriod,
+                           @Value("${jwk.rotation.activation-delay:1h}") Duration activationDelay,
+                           @Value("${jwk.rotation.grace-period:1d}") Duration gracePeriod,
+                           @Value("${jwk.refresh-interval:1m}") Duration refreshInterval) {
+
+        this.jwkRepository = jwkRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.encryptor = Encryptors.delux(encryptionPassword, encryptionSalt);
+        this.algorithm = SignatureAlgorithm.from(algorithm);
+
+        if (this.algorithm != SignatureAlgorithm.RS256 && this.algorithm != SignatureAlgorithm.ES256) {
+
+            throw new IllegalArgumentException("jwk.algorithm must be RS256 or ES256, got " + algorithm);
+
+        }
+
+        this.rotationPeriod = rotationPeriod;
+        this.activationDelay = activationDelay;
+        this.gracePeriod = gracePeriod;
+        this.refreshInterval = refreshInterval;
+
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        return jwkSelector.select(snapshot().published());
+    }
+
+    /**
+     * The key new tokens are signed with, together with an encoder bound to it.
+     */
+    public SigningKey signingKey() {
+        return snapshot().signingKey();
+    }
+
+    /**
+     * Creates the first key, schedules the next one {@code jwk.rotation.activation-delay} before the current one is
+     * {@code jwk.rotation.period} old, and drops keys whose grace period is over. A change of {@code jwk.algorithm}
+     * schedules a new key the same way.
+     */
+    @Scheduled(fixedDelayString = "${jwk.rotation.check-interval-ms:3600000}", initialDelayString = "${jwk.rotation.check-interval-ms:3600000}")
+    public void rotateKeys() {
+
+        try {
+
+            transactionTemplate.executeWithoutResult(status -> rotate(Instant.now()));
+
+        } catch (DataIntegrityViolationException e) {
+
+            // row locks cannot serialize nodes while tb_jwk is empty, so the generation constraint does; the node that
+            // lost keeps the key the other one created
+            logger.info("Another node created the signing key first, using its key");
+
+        }
+
+        snapshot = load();
+
+    }
+
+    void rotate(Instant now) {
+
+        List<JwkEntity> keys = jwkRepository.findAllForUpdate();
+        JwkEntity signing = keys.stream().filter(key -> !key.getActivatesAt().isAfter(now)).findFirst().orElse(null);
+        boolean pending = keys.stream().anyMatch(key -> key.getActivatesAt().isAfter(now));
+        long generation = keys.stream().map(JwkEntity::getGeneration).filter(Objects::nonNull).mapToLong(Long::longValue).max().orElse(-1) + 1;
+
+        if (signing == null && !pending) {
+
+            // nothing to pre-publish the first key to, so it signs straight away
+            jwkRepository.save(generate(now, now, generation));
+
+        } else if (signing != null && !pending && (!signing.getAlgorithm().equals(algorithm.getName())
+                || !signing.getActivatesAt().plus(rotationPeriod).isAfter(now.plus(activationDelay)))) {
+
+            JwkEntity next = jwkRepository.save(generate(now, now.plus(activationDelay), generation));
+            logger.info("Scheduled signing key {} ({}) to replace {} at {}", next.getKid(), next.getAlgorithm(), signing.getKid(), next.getActivatesAt());
+
+        }
+
+        for (JwkEntity key : keys) {
+
+            if (signing != null && key.getRetiresAt() == null && key.getActivatesAt().isBefore(signing.getActivatesAt())) {
+
+                key.setRetiresAt(signing.getActivatesAt().plus(gracePeriod));
+
+            } else if (key.getRetiresAt() != null && key.getRetiresAt().isBefore(now)) {
+
+                jwkRepository.delete(key);
+                keysByKid.remove(key.getKid());
+                logger.info("Removed retired signing key {}", key.getKid());
+
+            }
+
+        }
+
+    }
+
+    private KeySnapshot snapshot() {
+
+        KeySnapshot current = snapshot;
+
+        if (current != null && current.loadedAt().plus(refreshInterval).isAfter(Instant.now())) {
+
+            return current;
+
+        }
+
+        synchronized (this) {
+
+            current = snapshot;
+
+            if (current == null || !current.loadedAt().plus(refreshInterval).isAfter(Instant.now())) {
+
+                current = load();
+
+                if (current.signingKey() == null) {
+
+                    rotateKeys();
+                    current = snapshot;
+
+                } else {
+
+                    snapshot = current;
+
+                }
+
+            }
+
+            return current;
+
+        }
+
+    }
+
+    private KeySnapshot load() {
+
+        Instant now = Instant.now();
+        List<JwkEntity> keys = jwkRepository.findAllByOrderByActivatesAtDesc();
+        List<JWK> published = keys.stream()
+                .filter(key -> key.getRetiresAt() == null || key.getRetiresAt().isAfter(now))
+                .map(key -> keysByKid.computeIfAbsent(key.getKid(), kid -> decrypt(key)).jwk())
+                .toList();
+        SigningKey signingKey = keys.stream()
+                .filter(key -> !key.getActivatesAt().isAfter(now))
+                .findFirst()
+                .map(key -> keysByKid.computeIfAbsent(key.getKid(), kid -> decrypt(key)))
+                .orElse(null);
+
+        return new KeySnapshot(new JWKSet(published), signingKey, now);
+
+    }
+
+    private JwkEntity generate(Instant now, Instant activatesAt, long generation) {
+
+        try {
+
+            String kid = UUID.randomUUID().toString();
+            JWK jwk = algorithm == SignatureAlgorithm.ES256
+                    ? new ECKeyGenerator(Curve.P_256).keyID(kid).keyUse(KeyUse.SIGNATURE).algorithm(JWSAlgorithm.ES256).generate()
+                    : new RSAKeyGenerator(2048).keyID(kid).keyUse(KeyUse.SIGNATURE).algorithm(JWSAlgorithm.RS256).generate();
+
+            return new JwkEntity(null, kid, algorithm.getName(), encryptor.encrypt(jwk.toJSONString()), now, activatesAt, null, generation);
+
+        } catch (JOSEException e) {
+
+            throw new IllegalStateException("Could not generate a " + algorithm.getName() + " signing key", e);
+
+        }
+
+    }
+
+    private SigningKey decrypt(JwkEntity key) {
+
+        try {
+
+            JWK jwk = JWK.parse(encryptor.decrypt(key.getEncryptedJwk()));
+            return new SigningKey(jwk, SignatureAlgorithm.from(key.getAlgorithm()), new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(jwk))));
+
+        } catch (ParseException e) {
+
+            throw new IllegalStateException("Stored signing key " + key.getKid() + " is not a valid JWK", e);
+
+        }
+
+    }
+
+    public record SigningKey(JWK jwk, SignatureAlgorithm algorithm, JwtEncoder encoder) {
+
+        public SigningKey(JWK jwk, SignatureAlgorithm algorithm, JwtEncoder encoder) {
+            this.jwk = jwk;
+            this.algorithm = algorithm;
+            this.encoder = encoder;
+        }
+
+    }
+
+    private record KeySnapshot(JWKSet published, SigningKey signingKey, Instant loadedAt) {
+
+        private KeySnapshot(JWKSet published, SigningKey signingKey, Instant loadedAt) {
+            this.published = published;
+            this.signingKey = signingKey;
+            this.loadedAt = loadedAt;
+        }
+
+    }
+
+
+}
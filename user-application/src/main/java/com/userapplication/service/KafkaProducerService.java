@@ -1,38 +1,147 @@
 package com.userapplication.service;
 
-import com.userapplication.dto.kafka.PasswordResetTokenEvent;
-import com.userapplication.dto.kafka.UserAdminAccessGrant;
-import com.userapplication.dto.kafka.UserCreatedEvent;
+import com.eventschema.tracing.KafkaTracing;
+import com.eventschema.tracing.TraceContext;
+import com.servicesupport.tracing.SpanObservationHandler;
+import com.userapplication.exception.KafkaBackpressureException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.transport.SenderContext;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
 @Service
 public class KafkaProducerService {
 
-    private final KafkaTemplate<String, UserCreatedEvent> kafkaTemplate;
-    private final KafkaTemplate<String, UserAdminAccessGrant> kafkaAdminTemplate;
-    private final KafkaTemplate<String, PasswordResetTokenEvent> kafkaPasswordResetTokenTemplate;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final Semaphore inFlight;
+    private final Duration acquireTimeout;
+    private final Counter rejectedCounter;
+    private final Map<String, Timer> sendTimers = new ConcurrentHashMap<>();
+
+    public KafkaProducerService(KafkaTemplate<String, Object> kafkaTemplate, MeterRegistry meterRegistry, ObservationRegistry observationRegistry,
+                                @Value("${kafka.producer.max-in-flight:10000}") int maxInFlight,
+                                @Value("${kafka.producer.acquire-timeout:5s}") Duration acquireTimeout) {
 
-    public KafkaProducerService(KafkaTemplate<String, UserCreatedEvent> kafkaTemplate, KafkaTemplate<String, UserAdminAccessGrant> kafkaAdminTemplate, KafkaTemplate<String, PasswordResetTokenEvent> kafkaPasswordResetTokenTemplate) {
         this.kafkaTemplate = kafkaTemplate;
-        this.kafkaAdminTemplate = kafkaAdminTemplate;
-        this.kafkaPasswordResetTokenTemplate = kafkaPasswordResetTokenTemplate;
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.acquireTimeout = acquireTimeout;
+        this.rejectedCounter = Counter.builder("kafka.producer.send.rejected")
+                .description("Sends refused because max-in-flight sends were still unacknowledged")
+                .register(meterRegistry);
+
+        Gauge.builder("kafka.producer.in-flight", inFlight, semaphore -> maxInFlight - semaphore.availablePermits())
+                .description("Sends handed to the producer and not yet acknowledged by the broker")
+                .register(meterRegistry);
+
     }
 
-    public void sendUserCreatedEvent(String topic, UserCreatedEvent event) {
-        kafkaTemplate.send(topic, event.email(), event);
+    /**
+     * Sends once fewer than {@code kafka.producer.max-in-flight} earlier sends are unacknowledged, waiting at most
+     * {@code kafka.producer.acquire-timeout} for that. Past the timeout the future fails with
+     * {@link KafkaBackpressureException}, so a slow broker shows up to the caller instead of as a silently full
+     * producer buffer. Every completed send is timed per topic and outcome.
+     * <p>
+     * The send, from waiting for a slot until the broker's acknowledgement, is an {@code outbox.send} span continuing
+     * {@code parent}, and its traceparent goes into the record's headers for the consumer to continue.
+     */
+    public CompletableFuture<SendResult<String, Object>> sendEvent(String topic, String key, Object event, TraceContext parent) {
+
+        Headers headers = new RecordHeaders();
+        SenderContext<Headers> context = KafkaTracing.sender(headers);
+        SpanObservationHandler.setRemoteParent(context, parent);
+
+        Observation observation = Observation.createNotStarted("outbox.send", () -> context, observationRegistry)
+                .contextualName(topic + " send")
+                .lowCardinalityKeyValue("topic", topic)
+                .start();
+
+        try {
+
+            if (!inFlight.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+
+                rejectedCounter.increment();
+                return failed(observation, new KafkaBackpressureException("Too many unacknowledged sends, " + topic + " is backed up"));
+
+            }
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            return failed(observation, e);
+
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<SendResult<String, Object>> send;
+
+        try {
+
+            send = kafkaTemplate.send(new ProducerRecord<>(topic, null, key, event, headers));
+
+        } catch (RuntimeException e) {
+
+            // serialization errors and max.block.ms timeouts are thrown here instead of failing the future
+            inFlight.release();
+            sendTimer(topic, "failure").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return failed(observation, e);
+
+        }
+
+        return send.whenComplete((result, exception) -> {
+
+            inFlight.release();
+            sendTimer(topic, exception == null ? "success" : "failure").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            if (exception != null) {
+
+                observation.error(exception);
+
+            }
+
+            observation.stop();
+
+        });
+
     }
 
-    public void sendUserHasBeenGrantedAdminAccess (String topic, UserAdminAccessGrant  userAdminAccessGrant) {
+    private static <T> CompletableFuture<T> failed(Observation observation, Throwable exception) {
 
-        kafkaAdminTemplate.send(topic, userAdminAccessGrant.email(), userAdminAccessGrant);
+        observation.error(exception);
+        observation.stop();
+        return CompletableFuture.failedFuture(exception);
 
     }
 
-    public void sendPasswordResetTokenEvent(String topic, PasswordResetTokenEvent passwordResetTokenEvent) {
+    private Timer sendTimer(String topic, String outcome) {
+
+        return sendTimers.computeIfAbsent(topic + '|' + outcome, key -> Timer.builder("kafka.producer.send")
+                .description("Time from handing a record to the producer until the broker acknowledged or the send failed")
+                .tag("topic", topic)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
 
-        kafkaPasswordResetTokenTemplate.send(topic, passwordResetTokenEvent.username(),  passwordResetTokenEvent);
     }
 
 
-}
\ No newline at end of file
+}
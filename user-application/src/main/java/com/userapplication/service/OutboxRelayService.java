@@ -0,0 +1,355 @@
+package com.userapplication.service;
+
+import com.eventschema.tracing.TraceContext;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.userapplication.entity.OutboxEventEntity;
+import com.userapplication.exception.KafkaBackpressureException;
+import com.userapplication.repository.OutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.common.errors.RetriableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes the outbox in two short transactions per batch: one claims the rows for
+ * {@code outbox.relay.claim-ttl-ms}, the other deletes the acknowledged ones and releases the rest. The sends happen
+ * in between, so no row lock or pooled connection is held while waiting on the broker. Once a row fails, the rows
+ * behind it with the same topic and key are released even if they were acknowledged, so they are published again
+ * after it and consumers see the last event of a key last.
+ */
+@Service
+public class OutboxRelayService {
+
+    private final OutboxRepository outboxRepository;
+    private final OutboxService outboxService;
+    private final KafkaProducerService kafkaProducerService;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter parkedCounter;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Value("${outbox.relay.batch-size:500}")
+    private int batchSize;
+    @Value("${outbox.relay.send-timeout-ms:30000}")
+    private long sendTimeoutMs;
+    @Value("${outbox.relay.claim-ttl-ms:60000}")
+    private long claimTtlMs;
+    @Value("${outbox.relay.max-attempts:10}")
+    private int maxAttempts;
+    @Value("${outbox.relay.retry-backoff-ms:5000}")
+    private long retryBackoffMs;
+
+    // set when the broker could not be reached, the relay waits for it instead of spinning through the outbox
+    private volatile long backOffUntil = System.nanoTime();
+
+    public OutboxRelayService(OutboxRepository outboxRepository, OutboxService outboxService, KafkaProducerService kafkaProducerService,
+                              PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.outboxService = outboxService;
+        this.kafkaProducerService = kafkaProducerService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.parkedCounter = Counter.builder("outbox.events.parked")
+                .description("Outbox events set aside after outbox.relay.max-attempts failed sends")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:200}")
+    public void relayPendingEvents() {
+
+        if (backOffUntil - System.nanoTime() > 0) {
+
+            return;
+
+        }
+
+        Outcome outcome;
+
+        do {
+
+            outcome = relayNextBatch();
+
+            // released rows would be claimed again straight away, ahead of their turn on the next run
+        } while (outcome.claimed == batchSize && outcome.heldBack.isEmpty() && outcome.failed.isEmpty()
+                && !Thread.currentThread().isInterrupted());
+
+        if (outcome.unreachable) {
+
+            backOffUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryBackoffMs);
+
+        }
+
+    }
+
+    private Outcome relayNextBatch() {
+
+        List<OutboxEventEntity> batch = transactionTemplate.execute(status -> claimNextBatch());
+
+        if (batch == null || batch.isEmpty()) {
+
+            return new Outcome(0);
+
+        }
+
+        Outcome outcome = send(batch);
+
+        transactionTemplate.executeWithoutResult(status -> {
+
+            // every acknowledged row goes, or the next run would publish it again
+            outboxRepository.deleteAllByIdInBatch(outcome.delivered);
+
+            if (!outcome.heldBack.isEmpty()) {
+
+                outboxRepository.release(outcome.heldBack);
+
+            }
+
+            if (!outcome.failed.isEmpty()) {
+
+                outboxRepository.releaseAfterFailure(outcome.failed);
+
+            }
+
+            if (!outcome.parked.isEmpty()) {
+
+                outboxRepository.park(outcome.parked, Instant.now());
+
+            }
+
+        });
+
+        logger.debug("Relayed {} of {} outbox events", outcome.delivered.size(), batch.size());
+
+        return outcome;
+
+    }
+
+    private List<OutboxEventEntity> claimNextBatch() {
+
+        Instant now = Instant.now();
+        List<OutboxEventEntity> batch = outboxRepository.findClaimable(now, Limit.of(batchSize));
+
+        if (!batch.isEmpty()) {
+
+            outboxRepository.claim(batch.stream().map(OutboxEventEntity::getId).toList(), now.plusMillis(claimTtlMs));
+
+        }
+
+        return batch;
+
+    }
+
+    private Outcome send(List<OutboxEventEntity> batch) {
+
+        Outcome outcome = new Outcome(batch.size());
+        // all sends are handed to the producer first so they share broker round trips, then acknowledged in id order
+        List<CompletableFuture<SendResult<String, Object>>> sends = new ArrayList<>(batch.size());
+
+        for (OutboxEventEntity outboxEvent : batch) {
+
+            CompletableFuture<SendResult<String, Object>> send = send(outboxEvent, outcome);
+            sends.add(send);
+
+            // each further send would wait out the acquire timeout as well, past the end of the claim
+            if (send != null && send.isCompletedExceptionally() && send.exceptionNow() instanceof KafkaBackpressureException) {
+
+                break;
+
+            }
+
+        }
+
+        // one deadline for the whole batch, the sends are in flight together
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        // topics and keys with a row that was not delivered; the rows behind it wait, delivered or not
+        Set<List<String>> blockedKeys = new HashSet<>();
+
+        for (int i = 0; i < batch.size(); i++) {
+
+            OutboxEventEntity outboxEvent = batch.get(i);
+            List<String> orderingKey = Arrays.asList(outboxEvent.getTopic(), outboxEvent.getMessageKey());
+
+            if (i >= sends.size() || Thread.currentThread().isInterrupted()) {
+
+                outcome.heldBack.add(outboxEvent.getId());
+                blockedKeys.add(orderingKey);
+                continue;
+
+            }
+
+            if (sends.get(i) == null) {
+
+                // parked as unreadable, nothing was sent for it to wait on
+                continue;
+
+            }
+
+            try {
+
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+                if (blockedKeys.contains(orderingKey)) {
+
+                    logger.debug("Outbox event {} sent ahead of a failed event with its key, sending it again after that one",
+                            outboxEvent.getId());
+                    outcome.heldBack.add(outboxEvent.getId());
+
+                } else {
+
+                    outcome.delivered.add(outboxEvent.getId());
+
+                }
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                outcome.heldBack.add(outboxEvent.getId());
+                blockedKeys.add(orderingKey);
+
+            } catch (Exception e) {
+
+                if (blockedKeys.contains(orderingKey)) {
+
+                    // its turn has not come yet, so the failure is not its own
+                    outcome.heldBack.add(outboxEvent.getId());
+
+                } else {
+
+                    recordFailure(outcome, outboxEvent, e);
+
+                }
+
+                // a parked row no longer holds back the rows behind it
+                if (!outcome.parked.contains(outboxEvent.getId())) {
+
+                    blockedKeys.add(orderingKey);
+
+                }
+
+            }
+
+        }
+
+        return outcome;
+
+    }
+
+    private void recordFailure(Outcome outcome, OutboxEventEntity outboxEvent, Exception exception) {
+
+        Throwable cause = exception instanceof ExecutionException ? exception.getCause() : exception;
+
+        // a full producer refuses every row alike, so it does not count against this one
+        if (cause instanceof KafkaBackpressureException) {
+
+            logger.debug("Outbox event {} held back by producer backpressure, retrying on next run", outboxEvent.getId());
+            outcome.heldBack.add(outboxEvent.getId());
+            return;
+
+        }
+
+        // an unreachable or slow broker fails every row alike as well, and parking them would drop the outbox
+        if (isRetriable(cause)) {
+
+            logger.warn("Could not relay outbox event {} to {}, backing off for {} ms", outboxEvent.getId(), outboxEvent.getTopic(),
+                    retryBackoffMs, cause);
+            outcome.heldBack.add(outboxEvent.getId());
+            outcome.unreachable = true;
+            return;
+
+        }
+
+        int attempts = outboxEvent.getAttempts() + 1;
+
+        if (attempts < maxAttempts) {
+
+            logger.warn("Failed to relay outbox event {} to {} (attempt {} of {}), retrying on next run", outboxEvent.getId(),
+                    outboxEvent.getTopic(), attempts, maxAttempts, cause);
+            outcome.failed.add(outboxEvent.getId());
+            return;
+
+        }
+
+        parkedCounter.increment();
+        logger.error("Parking outbox event {} for {} after {} failed attempts, clear parked_at to send it again", outboxEvent.getId(),
+                outboxEvent.getTopic(), attempts, cause);
+        outcome.parked.add(outboxEvent.getId());
+
+    }
+
+    private static boolean isRetriable(Throwable failure) {
+
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+
+            if (cause instanceof RetriableException || cause instanceof TimeoutException) {
+
+                return true;
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    // null when the row was parked because its payload cannot be read
+    private CompletableFuture<SendResult<String, Object>> send(OutboxEventEntity outboxEvent, Outcome outcome) {
+
+        try {
+
+            return kafkaProducerService.sendEvent(outboxEvent.getTopic(), outboxEvent.getMessageKey(), outboxService.readPayload(outboxEvent),
+                    TraceContext.parse(outboxEvent.getTraceparent()));
+
+        } catch (JsonProcessingException e) {
+
+            // an unreadable payload can never be delivered; parked, it stops blocking the outbox but can still be fixed and sent
+            parkedCounter.increment();
+            logger.error("Parking unreadable outbox event {} for {}", outboxEvent.getId(), outboxEvent.getTopic(), e);
+            outcome.parked.add(outboxEvent.getId());
+            return null;
+
+        } catch (RuntimeException e) {
+
+            return CompletableFuture.failedFuture(e);
+
+        }
+
+    }
+
+    // the ids of a batch by what happens to their rows
+    private static final class Outcome {
+
+        private final int claimed;
+        private final List<Long> delivered;
+        private final List<Long> heldBack = new ArrayList<>();
+        private final List<Long> failed = new ArrayList<>();
+        private final List<Long> parked = new ArrayList<>();
+        private boolean unreachable;
+
+        private Outcome(int claimed) {
+            this.claimed = claimed;
+            this.delivered = new ArrayList<>(claimed);
+        }
+
+
+    }
+
+
+}
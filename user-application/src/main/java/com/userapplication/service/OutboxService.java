@@ -0,0 +1,61 @@
+package com.userapplication.service;
+
+import com.eventschema.EventType;
+import com.eventschema.tracing.TraceContext;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.servicesupport.tracing.SpanObservationHandler;
+import com.userapplication.entity.OutboxEventEntity;
+import com.userapplication.repository.OutboxRepository;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Service
+public class OutboxService {
+
+    private final OutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+    private final ObservationRegistry observationRegistry;
+
+    public OutboxService(OutboxRepository outboxRepository, ObjectMapper objectMapper, ObservationRegistry observationRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.objectMapper = objectMapper;
+        this.observationRegistry = observationRegistry;
+    }
+
+    /**
+     * Stores the event in the outbox as part of the caller's transaction, so it is only relayed to Kafka
+     * if the surrounding business change commits. The current trace context is stored with it, so the trace continues
+     * through the relay and Kafka into the mail application.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(String topic, String key, Object event) {
+
+        // fails for a topic without a registered event type, before anything is stored
+        EventType.forTopic(topic);
+
+        TraceContext traceContext = SpanObservationHandler.currentTraceContext(observationRegistry);
+
+        try {
+
+            outboxRepository.save(new OutboxEventEntity(null, topic, key, objectMapper.writeValueAsString(event), Instant.now(),
+                    traceContext == null ? null : traceContext.traceparent(), 0, null, null));
+
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+
+    }
+
+    public Object readPayload(OutboxEventEntity outboxEvent) throws JsonProcessingException {
+
+        return objectMapper.readValue(outboxEvent.getPayload(), EventType.forTopic(outboxEvent.getTopic()).type());
+
+    }
+
+
+}
@@ -0,0 +1,210 @@
+package com.userapplication.service;
+
+import com.userapplication.exception.PasswordHashingRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PasswordEncoder} that runs the delegate's encode and matches on a dedicated pool with one thread per core
+ * and a bounded queue, so hashing can never occupy more CPUs than the pool has threads. When the queue is full the
+ * call fails fast with {@link PasswordHashingRejectedException} instead of piling up request threads.
+ */
+public class PasswordHashingService implements PasswordEncoder, DisposableBean {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Timer queueWaitTimer;
+    private final Counter rejectedCounter;
+
+    public PasswordHashingService(PasswordEncoder delegate, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+
+        this.delegate = delegate;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("password-hashing-"), new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = Timer.builder("password.hashing.duration").tag("operation", "encode").register(meterRegistry);
+        this.matchesTimer = Timer.builder("password.hashing.duration").tag("operation", "matches").register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("password.hashing.queue.wait").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("password.hashing.rejected").register(meterRegistry);
+        Gauge.builder("password.hashing.queue.size", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("password.hashing.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+
+        return await(submit(() -> delegate.encode(rawPassword), encodeTimer));
+
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+
+        return await(submit(() -> delegate.matches(rawPassword, encodedPassword), matchesTimer));
+
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+
+        return delegate.upgradeEncoding(encodedPassword);
+
+    }
+
+    /**
+     * Hashes a batch of passwords for background work such as bulk imports. At most one task per pool thread is
+     * outstanding at a time, so the batch leaves room in the queue for interactive requests, and a full queue makes
+     * the batch wait rather than fail.
+     */
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+
+        List<Future<String>> hashes = new ArrayList<>(rawPasswords.size());
+        Deque<Future<String>> outstanding = new ArrayDeque<>();
+
+        for (CharSequence rawPassword : rawPasswords) {
+
+            if (outstanding.size() == executor.getMaximumPoolSize()) {
+
+                await(outstanding.poll());
+
+            }
+
+            Future<String> hash = null;
+
+            while (hash == null) {
+
+                try {
+
+                    hash = executor.submit(timed(() -> delegate.encode(rawPassword), encodeTimer));
+
+                } catch (RejectedExecutionException e) {
+
+                    if (outstanding.isEmpty()) {
+
+                        sleepBeforeResubmitting();
+
+                    } else {
+
+                        await(outstanding.poll());
+
+                    }
+
+                }
+
+            }
+
+            hashes.add(hash);
+            outstanding.add(hash);
+
+        }
+
+        List<String> result = new ArrayList<>(hashes.size());
+
+        for (Future<String> hash : hashes) {
+
+            result.add(await(hash));
+
+        }
+
+        return result;
+
+    }
+
+    @Override
+    public void destroy() {
+
+        executor.shutdown();
+
+    }
+
+    private <T> Future<T> submit(Callable<T> task, Timer timer) {
+
+        try {
+
+            return executor.submit(timed(task, timer));
+
+        } catch (RejectedExecutionException e) {
+
+            rejectedCounter.increment();
+            throw new PasswordHashingRejectedException("Password hashing capacity exhausted, try again later");
+
+        }
+
+    }
+
+    private <T> Callable<T> timed(Callable<T> task, Timer timer) {
+
+        long submittedAt = System.nanoTime();
+
+        return () -> {
+
+            queueWaitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+            return timer.recordCallable(task);
+
+        };
+
+    }
+
+    private <T> T await(Future<T> future) {
+
+        try {
+
+            return future.get();
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+
+        } catch (ExecutionException e) {
+
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+
+                throw runtimeException;
+
+            }
+
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+
+        }
+
+    }
+
+    private void sleepBeforeResubmitting() {
+
+        try {
+
+            Thread.sleep(10);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+
+        }
+
+    }
+
+
+}
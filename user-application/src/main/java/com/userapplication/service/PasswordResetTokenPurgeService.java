@@ -0,0 +1,73 @@
+package com.userapplication.service;
+
+import com.userapplication.repository.TokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+@Service
+public class PasswordResetTokenPurgeService {
+
+    private final TokenRepository tokenRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter purgedCounter;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Value("${reset-token.purge.batch-size:1000}")
+    private int batchSize;
+
+    public PasswordResetTokenPurgeService(TokenRepository tokenRepository, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.tokenRepository = tokenRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.purgedCounter = Counter.builder("reset.token.purged").description("Expired password reset tokens deleted by the purge job").register(meterRegistry);
+    }
+
+    /**
+     * Deletes expired tokens in batches of {@code reset-token.purge.batch-size}, each batch in its own short
+     * transaction, so row locks are held for one batch at a time and never for the whole backlog.
+     */
+    @Scheduled(fixedDelayString = "${reset-token.purge.interval-ms:60000}", initialDelayString = "${reset-token.purge.interval-ms:60000}")
+    public long purgeExpiredTokens() {
+
+        Instant now = Instant.now();
+        long purged = 0;
+        Integer deleted;
+
+        do {
+
+            deleted = transactionTemplate.execute(status -> {
+
+                List<Long> expired = tokenRepository.findExpiredIds(now, Limit.of(batchSize));
+                tokenRepository.deleteAllByIdInBatch(expired);
+                return expired.size();
+
+            });
+
+            purged += deleted == null ? 0 : deleted;
+
+        } while (deleted != null && deleted == batchSize);
+
+        purgedCounter.increment(purged);
+
+        if (purged > 0) {
+
+            logger.info("Purged {} expired password reset tokens", purged);
+
+        }
+
+        return purged;
+
+    }
+
+
+}
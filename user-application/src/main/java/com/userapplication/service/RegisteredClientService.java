@@ -2,9 +2,13 @@ package com.userapplication.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.userapplication.entity.ClientEntity;
 import com.userapplication.repository.ClientRepository;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.oauth2.core.AuthorizationGrantType;
 import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
@@ -13,6 +17,7 @@ import org.springframework.security.oauth2.server.authorization.settings.ClientS
 import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -25,6 +30,22 @@ public class RegisteredClientService implements RegisteredClientRepository {
     private ClientRepository clientRepository;
     @Autowired
     private  ObjectMapper objectMapper;
+    @Value("${client.cache.ttl:10m}")
+    private Duration cacheTtl;
+    @Value("${client.cache.max-size:1000}")
+    private long cacheMaxSize;
+
+    private Cache<String, RegisteredClient> clientsById;
+    private Cache<String, RegisteredClient> clientsByClientId;
+
+
+    @PostConstruct
+    void initCaches() {
+
+        clientsById = Caffeine.newBuilder().expireAfterWrite(cacheTtl).maximumSize(cacheMaxSize).build();
+        clientsByClientId = Caffeine.newBuilder().expireAfterWrite(cacheTtl).maximumSize(cacheMaxSize).build();
+
+    }
 
 
 
@@ -41,50 +62,79 @@ public class RegisteredClientService implements RegisteredClientRepository {
             throw new RuntimeException(e);
         }
 
+        // the registry changes rarely, so dropping everything is simpler than tracking which keys a client had
+        clientsById.invalidateAll();
+        clientsByClientId.invalidateAll();
+
 
     }
 
     @Override
     public RegisteredClient findById(String id) {
 
+        return clientsById.get(id, key -> {
+
+            ClientEntity clientEntity = clientRepository.findById(Long.parseLong(key)).orElseThrow(() -> new NoSuchElementException("No client found with the id"));
+            RegisteredClient registeredClient = clientToRegisteredClient(clientEntity);
+            clientsByClientId.put(registeredClient.getClientId(), registeredClient);
+            return registeredClient;
+
+        });
+
+    }
+
+    @Override
+    public RegisteredClient findByClientId(String clientId) {
+
+        return clientsByClientId.get(clientId, key -> {
+
+            ClientEntity clientEntity = clientRepository.findByClientId(key);
+
+            if (clientEntity == null) {
+
+                return null;
+
+            }
+
+            RegisteredClient registeredClient = clientToRegisteredClient(clientEntity);
+            clientsById.put(registeredClient.getId(), registeredClient);
+            return registeredClient;
+
+        });
+
+    }
+
+    // package-private so user-application-benchmarks can measure it
+    RegisteredClient clientToRegisteredClient(ClientEntity clientEntity) {
+
         try {
 
-            ClientEntity clientEntity = clientRepository.findById(Long.parseLong(id)).orElseThrow(() -> new NoSuchElementException("No client found with the id"));
             RegisteredClient.Builder registeredClient = RegisteredClient.withId(clientEntity.getId().toString());
             registeredClient
                     .clientId(clientEntity.getClient_id())
                     .clientName(clientEntity.getClientName())
                     .clientSecret(clientEntity.getClient_secret());
-            int authenticationMethodsLength = clientEntity.getClientAuthenticationMethods().split(",").length;
 
-            for (int i = 0; i < authenticationMethodsLength; i++) {
+            for (String authenticationMethod : clientEntity.getClientAuthenticationMethods().split(",")) {
 
-                registeredClient.clientAuthenticationMethod(new ClientAuthenticationMethod(clientEntity.getClientAuthenticationMethods().split(",")[i]));
+                registeredClient.clientAuthenticationMethod(new ClientAuthenticationMethod(authenticationMethod));
             }
 
-            int scopesLength = clientEntity.getScopes().split(",").length;
+            for (String scope : clientEntity.getScopes().split(",")) {
 
-            for (int i = 0; i < scopesLength; i++) {
-
-
-                registeredClient.scope(clientEntity.getScopes().split(",")[i]);
+                registeredClient.scope(scope);
 
             }
 
-            int authorizationGrantTypesLength = clientEntity.getAuthorizationGrantTypes().split(",").length;
-
-            for (int i = 0; i < authorizationGrantTypesLength; i++) {
-
-                registeredClient.authorizationGrantType(new AuthorizationGrantType(clientEntity.getAuthorizationGrantTypes().split(",")[i]));
+            for (String authorizationGrantType : clientEntity.getAuthorizationGrantTypes().split(",")) {
 
+                registeredClient.authorizationGrantType(new AuthorizationGrantType(authorizationGrantType));
 
             }
 
-            int redirectUrisLength = clientEntity.getRedirectUris().split(",").length;
-
-            for (int i = 0; i < redirectUrisLength; i++) {
+            for (String redirectUri : clientEntity.getRedirectUris().split(",")) {
 
-                registeredClient.redirectUri(clientEntity.getRedirectUris().split(",")[i]);
+                registeredClient.redirectUri(redirectUri);
 
             }
 
@@ -113,97 +163,6 @@ public class RegisteredClientService implements RegisteredClientRepository {
 
         } catch (JsonProcessingException e) {
 
-
-            e.getMessage();
-            throw new RuntimeException(e);
-
-
-        }
-
-
-
-    }
-
-    @Override
-    public RegisteredClient findByClientId(String clientId) {
-
-
-        try {
-        ClientEntity clientEntity = clientRepository.findByClientId(clientId);
-
-        if (clientEntity == null) {
-
-            return null;
-
-        }
-
-
-        RegisteredClient.Builder registeredClient = RegisteredClient.withId(clientEntity.getId().toString());
-        registeredClient
-                .clientId(clientEntity.getClient_id())
-                .clientName(clientEntity.getClientName())
-                .clientSecret(clientEntity.getClient_secret());
-        int authenticationMethodsLength = clientEntity.getClientAuthenticationMethods().split(",").length;
-
-        for (int i = 0; i < authenticationMethodsLength; i++) {
-
-            registeredClient.clientAuthenticationMethod(new ClientAuthenticationMethod(clientEntity.getClientAuthenticationMethods().split(",")[i]));
-        }
-
-        int scopesLength = clientEntity.getScopes().split(",").length;
-
-        for (int i = 0; i < scopesLength; i++) {
-
-
-            registeredClient.scope(clientEntity.getScopes().split(",")[i]);
-
-        }
-
-        int authorizationGrantTypesLength = clientEntity.getAuthorizationGrantTypes().split(",").length;
-
-        for (int i = 0; i < authorizationGrantTypesLength; i++) {
-
-            registeredClient.authorizationGrantType(new AuthorizationGrantType(clientEntity.getAuthorizationGrantTypes().split(",")[i]));
-
-
-        }
-
-        int redirectUrisLength = clientEntity.getRedirectUris().split(",").length;
-
-        for (int i = 0; i < redirectUrisLength; i++) {
-
-            registeredClient.redirectUri(clientEntity.getRedirectUris().split(",")[i]);
-
-        }
-
-        registeredClient.clientIdIssuedAt(clientEntity.getClient_created_at())
-                .clientSecretExpiresAt(clientEntity.getClient_secret_expires_at());
-
-        Map<String, Object> settingsMap = objectMapper.readValue(
-                clientEntity.getClientSettings(),
-                Map.class
-        );
-
-        Map<String, Object> tokenSettings = objectMapper.readValue(
-
-                clientEntity.getTokenSettings(),
-                Map.class
-
-        );
-
-        tokenSettings = convertDurationStrings(tokenSettings);
-
-        registeredClient.clientSettings(ClientSettings.withSettings(settingsMap).build());
-        registeredClient.tokenSettings(TokenSettings.withSettings(tokenSettings).build());
-
-        return registeredClient.build();
-
-
-        }
-
-        catch (JsonProcessingException e) {
-
-            e.getMessage();
             throw new RuntimeException(e);
 
         }
@@ -211,7 +170,7 @@ public class RegisteredClientService implements RegisteredClientRepository {
     }
 
 
-    private void registeredClientToClient(RegisteredClient registeredClient, ClientEntity clientEntity) throws JsonProcessingException {
+    void registeredClientToClient(RegisteredClient registeredClient, ClientEntity clientEntity) throws JsonProcessingException {
 
         clientEntity.setClient_id(registeredClient.getClientId());
         clientEntity.setClient_secret(registeredClient.getClientSecret());
@@ -231,7 +190,7 @@ public class RegisteredClientService implements RegisteredClientRepository {
 
     }
 
-    private Map<String, Object> convertDurationStrings(Map<String, Object> settings) {
+    Map<String, Object> convertDurationStrings(Map<String, Object> settings) {
         settings.replaceAll((key, value) -> {
             if (value instanceof String strValue) {
                 if (strValue.startsWith("PT")) {
@@ -0,0 +1,166 @@
+package com.userapplication.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.eventschema.UserCreatedEvent;
+import com.userapplication.dto.UserDTO;
+import com.userapplication.dto.UserImportResultDTO;
+import com.userapplication.entity.RoleEntity;
+import com.userapplication.entity.UserEntity;
+import com.userapplication.repository.RoleRepository;
+import com.userapplication.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+@Service
+public class UserImportService {
+
+    private static final int MAX_USERNAME_LENGTH = 30;
+
+    private final UserRepository userRepository;
+    private final RoleRepository roleRepository;
+    private final PasswordHashingService passwordHashingService;
+    private final OutboxService outboxService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Value("${user.import.batch-size:500}")
+    private int batchSize;
+
+    public UserImportService(UserRepository userRepository, RoleRepository roleRepository, PasswordHashingService passwordHashingService, OutboxService outboxService,
+                             ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.passwordHashingService = passwordHashingService;
+        this.outboxService = outboxService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Streams users from a JSON array or from newline-delimited JSON and stores them in chunks of
+     * {@code user.import.batch-size}, each chunk in its own transaction. Usernames that already exist,
+     * repeat within a chunk or are invalid are skipped.
+     */
+    public UserImportResultDTO importUsers(InputStream users) throws IOException {
+
+        long imported = 0;
+        long skipped = 0;
+        List<UserDTO> chunk = new ArrayList<>(batchSize);
+
+        try (MappingIterator<UserDTO> iterator = objectMapper.readerFor(UserDTO.class).readValues(users)) {
+
+            while (iterator.hasNext()) {
+
+                chunk.add(iterator.next());
+
+                if (chunk.size() == batchSize) {
+
+                    int stored = importChunk(chunk);
+                    imported += stored;
+                    skipped += chunk.size() - stored;
+                    chunk.clear();
+
+                }
+
+            }
+
+        }
+
+        if (!chunk.isEmpty()) {
+
+            int stored = importChunk(chunk);
+            imported += stored;
+            skipped += chunk.size() - stored;
+
+        }
+
+        logger.info("Bulk import finished: {} users imported, {} skipped", imported, skipped);
+
+        return new UserImportResultDTO(imported, skipped);
+
+    }
+
+    private int importChunk(List<UserDTO> chunk) {
+
+        Map<String, UserDTO> usersByUsername = new LinkedHashMap<>();
+
+        for (UserDTO user : chunk) {
+
+            if (isValid(user)) {
+
+                usersByUsername.putIfAbsent(user.username(), user);
+
+            }
+
+        }
+
+        if (usersByUsername.isEmpty()) {
+
+            return 0;
+
+        }
+
+        userRepository.findExistingUsernames(usersByUsername.keySet()).forEach(usersByUsername::remove);
+
+        List<UserDTO> newUsers = new ArrayList<>(usersByUsername.values());
+
+        // hashing dominates the cost of an import, so it runs outside the transaction on the shared hashing pool
+        List<String> passwordHashes = passwordHashingService.encodeAll(newUsers.stream().map(UserDTO::password).toList());
+
+        Integer stored = transactionTemplate.execute(status -> {
+
+            RoleEntity userRole = roleRepository.findByRoleName("ROLE_USER").orElseThrow(NoSuchElementException::new);
+            List<UserEntity> entities = new ArrayList<>(newUsers.size());
+
+            for (int i = 0; i < newUsers.size(); i++) {
+
+                UserEntity userEntity = new UserEntity();
+                userEntity.setUsername(newUsers.get(i).username());
+                userEntity.setPassword(passwordHashes.get(i));
+                userEntity.getRoles().add(userRole);
+                entities.add(userEntity);
+
+            }
+
+            // sequence ids are allocated in blocks, so users, their tb_user_role rows and the outbox rows are written as JDBC batches
+            List<UserEntity> saved = userRepository.saveAll(entities);
+            Instant now = Instant.now();
+
+            for (UserEntity user : saved) {
+
+                outboxService.publish("user-created", user.getUsername(), new UserCreatedEvent(user.getId(), now, user.getUsername()));
+
+            }
+
+            return saved.size();
+
+        });
+
+        return stored == null ? 0 : stored;
+
+    }
+
+    private boolean isValid(UserDTO user) {
+
+        return user != null && user.username() != null && !user.username().isBlank() && user.username().length() <= MAX_USERNAME_LENGTH
+                && user.password() != null && !user.password().isEmpty();
+
+    }
+
+
+}
@@ -1,15 +1,22 @@
 package com.userapplication.service;
 
+import com.eventschema.PasswordResetTokenEvent;
+import com.eventschema.UserAdminAccessGrant;
+import com.eventschema.UserCreatedEvent;
 import com.userapplication.dto.*;
-import com.userapplication.dto.kafka.PasswordResetTokenEvent;
-import com.userapplication.dto.kafka.UserAdminAccessGrant;
-import com.userapplication.dto.kafka.UserCreatedEvent;
 import com.userapplication.entity.PassswordResetTokenEntity;
 import com.userapplication.entity.RoleEntity;
 import com.userapplication.entity.UserEntity;
 import com.userapplication.repository.RoleRepository;
 import com.userapplication.repository.TokenRepository;
 import com.userapplication.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -17,13 +24,25 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
 import javax.security.auth.login.CredentialExpiredException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,36 +51,52 @@ public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final RoleRepository roleRepository;
-    private final KafkaProducerService kafkaProducerService;
+    private final OutboxService outboxService;
     private final TokenRepository tokenRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObservationRegistry observationRegistry;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, RoleRepository roleRepository, KafkaProducerService kafkaProducerService,
-                       TokenRepository tokenRepository) {
+    @Value("${user.page.default-size:50}")
+    private int defaultPageSize;
+    @Value("${user.page.max-size:500}")
+    private int maxPageSize;
+
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, RoleRepository roleRepository, OutboxService outboxService,
+                       TokenRepository tokenRepository, ApplicationEventPublisher eventPublisher, ObservationRegistry observationRegistry) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.roleRepository = roleRepository;
-        this.kafkaProducerService = kafkaProducerService;
+        this.outboxService = outboxService;
         this.tokenRepository = tokenRepository;
+        this.eventPublisher = eventPublisher;
+        this.observationRegistry = observationRegistry;
     }
 
+    @Timed(value = "user.service", extraTags = {"operation", "create-user"}, histogram = true)
     @Transactional(readOnly = false)
     public UserSecureDTO createUser(UserDTO userDTO) {
 
         UserEntity userEntity = new UserEntity();
         mapUserDTOToUser(userDTO, userEntity);
 
-        UserEntity user = userRepository.save(userEntity);
+        UserEntity user = dbWrite("create-user", () -> userRepository.save(userEntity));
 
 
-        kafkaProducerService.sendUserCreatedEvent("user-created", new UserCreatedEvent(user.getId(), Instant.now(), user.getUsername()));
+        outboxService.publish("user-created", user.getUsername(), new UserCreatedEvent(user.getId(), Instant.now(), user.getUsername()));
 
 
-        return new UserSecureDTO(user.getId(), user.getUsername(), user.getRoles().stream().map(x -> new RoleDTO(x.getRoleName())).collect(Collectors.toSet()));
+        return toUserSecureDTO(user);
 
 
     }
 
 
+    static UserSecureDTO toUserSecureDTO(UserEntity user) {
+
+        return new UserSecureDTO(user.getId(), user.getUsername(), user.getRoles().stream().map(role -> new RoleDTO(role.getRoleName())).collect(Collectors.toSet()));
+
+    }
+
     private void mapUserDTOToUser(UserDTO userDTO, UserEntity entity) {
 
         entity.setUsername(userDTO.username());
@@ -70,17 +105,74 @@ public class UserService {
 
     }
 
+    @Timed(value = "user.service", extraTags = {"operation", "get-all-users"}, histogram = true)
     @Transactional(readOnly = true)
-    public List<UserSecureDTO> getAllUsers() {
+    public UserPageDTO getAllUsers(String cursor, Integer limit) {
+
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+
+        // one extra id tells whether another page exists without issuing a count query
+        List<Long> ids = userRepository.findIdsAfter(decodeCursor(cursor), Limit.of(pageSize + 1));
+        boolean hasNextPage = ids.size() > pageSize;
+
+        if (hasNextPage) {
+
+            ids = ids.subList(0, pageSize);
+
+        }
+
+        if (ids.isEmpty()) {
+
+            return new UserPageDTO(List.of(), null);
+
+        }
+
+        Map<Long, UserSecureDTO> users = new LinkedHashMap<>();
+
+        for (UserRepository.UserRoleRow row : userRepository.findUserRolesByIds(ids)) {
+
+            UserSecureDTO user = users.computeIfAbsent(row.getId(), id -> new UserSecureDTO(id, row.getUsername(), new HashSet<>()));
+
+            if (row.getRoleName() != null) {
+
+                user.roles().add(new RoleDTO(row.getRoleName()));
+
+            }
+
+        }
+
+        return new UserPageDTO(new ArrayList<>(users.values()), hasNextPage ? encodeCursor(ids.get(ids.size() - 1)) : null);
+
+    }
+
+    private String encodeCursor(Long id) {
 
-        List<UserEntity> allUsers = userRepository.findAll();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.toString().getBytes(StandardCharsets.UTF_8));
 
-        return allUsers.stream().map(user -> new UserSecureDTO(user.getId(), user.getUsername(),
-                user.getRoles().stream().map(role -> new RoleDTO(role.getRoleName())).collect(Collectors.toSet()))).collect(Collectors.toList());
+    }
+
+    private Long decodeCursor(String cursor) {
+
+        if (cursor == null || cursor.isBlank()) {
+
+            return 0L;
+
+        }
+
+        try {
+
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+
+        } catch (IllegalArgumentException e) {
+
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+
+        }
 
     }
 
 
+    @Timed(value = "user.service", extraTags = {"operation", "get-user"}, histogram = true)
     @Transactional(readOnly = true)
     public UserSecureDTO getUserByUsername(String username) {
 
@@ -91,7 +183,7 @@ public class UserService {
         if (authentication.getAuthorities().stream().anyMatch(x -> x.getAuthority().equals("ROLE_ADMIN") || authentication.getName().equals(user.getUsername()))) {
 
 
-            return new UserSecureDTO(user.getId(), user.getUsername(), user.getRoles().stream().map(role -> new RoleDTO(role.getRoleName())).collect(Collectors.toSet()));
+            return toUserSecureDTO(user);
 
         }
 
@@ -100,6 +192,7 @@ public class UserService {
 
     }
 
+    @Timed(value = "user.service", extraTags = {"operation", "delete-user"}, histogram = true)
     @Transactional
     public void deleteUserById(Long id) {
 
@@ -115,42 +208,55 @@ public class UserService {
 
         if (authentication.getAuthorities().stream().anyMatch(x -> x.getAuthority().equals("ROLE_ADMIN")) || authentication.getName().equals(user.getUsername())) {
             userRepository.deleteById(id);
+            eventPublisher.publishEvent(new UserChangedEvent(user.getUsername()));
         } else throw new AccessDeniedException("You do not have permission to access this resource");
 
 
     }
 
+    @Timed(value = "user.service", extraTags = {"operation", "grant-admin"}, histogram = true)
     @Transactional
     public void elevateUserPrivilegesToAdmin(String username) {
 
         UserEntity userEntity = userRepository.findByUsername(username).orElseThrow(() -> new NoSuchElementException("No User found with this username"));
         RoleEntity roleEntity = roleRepository.findByRoleName("ROLE_ADMIN").orElseThrow(() -> new AccessDeniedException("You do not have permission to access this resource"));
         userEntity.getRoles().add(new RoleEntity(roleEntity.getRoleId(), roleEntity.getRoleDescription(), roleEntity.getRoleName()));
-        kafkaProducerService.sendUserHasBeenGrantedAdminAccess("admin-grant", new UserAdminAccessGrant(userEntity.getUsername(), "Your user has been granted administrator permissions.", Instant.now()));
-        userRepository.save(userEntity);
+        dbWrite("grant-admin", () -> userRepository.save(userEntity));
+        eventPublisher.publishEvent(new UserChangedEvent(userEntity.getUsername()));
+        outboxService.publish("admin-grant", userEntity.getUsername(), new UserAdminAccessGrant(userEntity.getUsername(), "Your user has been granted administrator permissions.", Instant.now()));
 
 
     }
 
+    @Timed(value = "user.service", extraTags = {"operation", "create-reset-token"}, histogram = true)
     @Transactional
     public PasswordResetTokenDTO createPasswordResetToken(String email) {
 
         UserEntity userEntity = userRepository.findByUsername(email).orElseThrow(() -> new NoSuchElementException("No User found with this username"));
+        String token = UUID.randomUUID().toString();
         PassswordResetTokenEntity passswordResetTokenEntity = new PassswordResetTokenEntity();
         passswordResetTokenEntity.setUser(userEntity);
-        passswordResetTokenEntity.setToken(UUID.randomUUID().toString());
-        passswordResetTokenEntity.setExpirationTime(Instant.now().plus(PassswordResetTokenEntity.expirationTimeInMinutes, ChronoUnit.MINUTES));
-        PassswordResetTokenEntity token = tokenRepository.save(passswordResetTokenEntity);
-        kafkaProducerService.sendPasswordResetTokenEvent("password-reset", new PasswordResetTokenEvent(passswordResetTokenEntity.getToken(), passswordResetTokenEntity.getExpirationTime(),
-                userEntity.getUsername()));
-        return new PasswordResetTokenDTO(token.getToken());
+        passswordResetTokenEntity.setTokenHash(hashToken(token));
+        Instant now = Instant.now();
+        passswordResetTokenEntity.setExpirationTime(now.plus(PassswordResetTokenEntity.expirationTimeInMinutes, ChronoUnit.MINUTES));
+        dbWrite("create-reset-token", () -> {
+
+            // a new request replaces the user's previous token instead of adding another row
+            tokenRepository.deleteByUser(userEntity);
+            return tokenRepository.save(passswordResetTokenEntity);
+
+        });
+        outboxService.publish("password-reset", userEntity.getUsername(), new PasswordResetTokenEvent(token, passswordResetTokenEntity.getExpirationTime(),
+                userEntity.getUsername(), now));
+        return new PasswordResetTokenDTO(token);
 
     }
 
 
+    @Timed(value = "user.service", extraTags = {"operation", "reset-password"}, histogram = true)
     @Transactional
     public void resetUserPassword(PasswordResetDTO password) throws CredentialExpiredException {
-        PassswordResetTokenEntity tokenEntity = tokenRepository.findByToken(password.token())
+        PassswordResetTokenEntity tokenEntity = Optional.ofNullable(password.token()).map(this::hashToken).flatMap(tokenRepository::findByTokenHash)
                 .orElseThrow(() -> new CredentialExpiredException("Invalid or expired token"));
 
         if (tokenEntity.getExpirationTime().isBefore(Instant.now())) {
@@ -166,11 +272,44 @@ public class UserService {
 
         user.setPassword(passwordEncoder.encode(password.newPassword()));
         userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(user.getUsername()));
 
         tokenRepository.delete(tokenEntity);
     }
 
+    /**
+     * Runs the write in a {@code user.db.write} span and flushes it, so the span covers the SQL statements rather than
+     * just queueing them in the persistence context. The outbox row is published after the span, so the relayed event
+     * continues the request's trace instead of the write's.
+     */
+    private <T> T dbWrite(String operation, Supplier<T> write) {
 
+        return Observation.createNotStarted("user.db.write", observationRegistry)
+                .lowCardinalityKeyValue("operation", operation)
+                .observe(() -> {
+
+                    T result = write.get();
+                    userRepository.flush();
+                    return result;
+
+                });
+
+    }
+
+    private String hashToken(String token) {
+
+        try {
+
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+
+        } catch (NoSuchAlgorithmException e) {
+
+            throw new IllegalStateException(e);
+
+        }
+
+    }
 
 
 }
@@ -0,0 +1,53 @@
+-- Spring Authorization Server's oauth2-authorization-schema.sql and oauth2-authorization-consent-schema.sql, with the
+-- PostgreSQL changes it asks for (text for blob, timestamptz for timestamp); created if missing when
+-- authorization.store.type is jdbc
+CREATE TABLE IF NOT EXISTS oauth2_authorization (
+    id varchar(100) NOT NULL,
+    registered_client_id varchar(100) NOT NULL,
+    principal_name varchar(200) NOT NULL,
+    authorization_grant_type varchar(100) NOT NULL,
+    authorized_scopes varchar(1000) DEFAULT NULL,
+    attributes text DEFAULT NULL,
+    state varchar(500) DEFAULT NULL,
+    authorization_code_value text DEFAULT NULL,
+    authorization_code_issued_at timestamptz DEFAULT NULL,
+    authorization_code_expires_at timestamptz DEFAULT NULL,
+    authorization_code_metadata text DEFAULT NULL,
+    access_token_value text DEFAULT NULL,
+    access_token_issued_at timestamptz DEFAULT NULL,
+    access_token_expires_at timestamptz DEFAULT NULL,
+    access_token_metadata text DEFAULT NULL,
+    access_token_type varchar(100) DEFAULT NULL,
+    access_token_scopes varchar(1000) DEFAULT NULL,
+    oidc_id_token_value text DEFAULT NULL,
+    oidc_id_token_issued_at timestamptz DEFAULT NULL,
+    oidc_id_token_expires_at timestamptz DEFAULT NULL,
+    oidc_id_token_metadata text DEFAULT NULL,
+    refresh_token_value text DEFAULT NULL,
+    refresh_token_issued_at timestamptz DEFAULT NULL,
+    refresh_token_expires_at timestamptz DEFAULT NULL,
+    refresh_token_metadata text DEFAULT NULL,
+    user_code_value text DEFAULT NULL,
+    user_code_issued_at timestamptz DEFAULT NULL,
+    user_code_expires_at timestamptz DEFAULT NULL,
+    user_code_metadata text DEFAULT NULL,
+    device_code_value text DEFAULT NULL,
+    device_code_issued_at timestamptz DEFAULT NULL,
+    device_code_expires_at timestamptz DEFAULT NULL,
+    device_code_metadata text DEFAULT NULL,
+    PRIMARY KEY (id)
+);
+CREATE TABLE IF NOT EXISTS oauth2_authorization_consent (
+    registered_client_id varchar(100) NOT NULL,
+    principal_name varchar(200) NOT NULL,
+    authorities varchar(1000) NOT NULL,
+    PRIMARY KEY (registered_client_id, principal_name)
+);
+-- every token endpoint call looks an authorization up by one of these values; hash indexes because JWTs are long
+CREATE INDEX IF NOT EXISTS idx_oauth2_authorization_state ON oauth2_authorization USING hash (state);
+CREATE INDEX IF NOT EXISTS idx_oauth2_authorization_code ON oauth2_authorization USING hash (authorization_code_value);
+CREATE INDEX IF NOT EXISTS idx_oauth2_authorization_access_token ON oauth2_authorization USING hash (access_token_value);
+CREATE INDEX IF NOT EXISTS idx_oauth2_authorization_refresh_token ON oauth2_authorization USING hash (refresh_token_value);
+CREATE INDEX IF NOT EXISTS idx_oauth2_authorization_id_token ON oauth2_authorization USING hash (oidc_id_token_value);
+CREATE INDEX IF NOT EXISTS idx_oauth2_authorization_user_code ON oauth2_authorization USING hash (user_code_value);
+CREATE INDEX IF NOT EXISTS idx_oauth2_authorization_device_code ON oauth2_authorization USING hash (device_code_value);
@@ -0,0 +1,114 @@
+package com.userapplication.config.authenticationconfig;
+
+import com.userapplication.config.authenticationconfig.JwtTokenCustomizer.AuthoritiesClaimFormat;
+import com.userapplication.entity.RoleEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.server.authorization.token.JwtEncodingContext;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link JwtTokenCustomizer} writing each claim format and {@link JwtAuthenticationConverter} reading it back.
+ */
+class JwtAuthoritiesClaimTests {
+
+    private final RoleAuthorityRegistry registry = new RoleAuthorityRegistry(() -> List.of(
+            new RoleEntity(1L, "Basic access", "ROLE_USER"),
+            new RoleEntity(2L, "Administration", "ROLE_ADMIN")));
+    private final JwtAuthenticationConverter converter = new JwtAuthenticationConverter(registry, 100);
+
+    @Test
+    void stringsWritesOnlyTheNames() {
+
+        Map<String, Object> claims = claims(AuthoritiesClaimFormat.STRINGS, "ROLE_USER", "ROLE_ADMIN");
+
+        assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN"), claims.get(JwtTokenCustomizer.AUTHORITIES_CLAIM));
+        assertFalse(claims.containsKey(JwtTokenCustomizer.ROLES_CLAIM));
+        assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN"), authoritiesReadBack(claims));
+
+    }
+
+    @Test
+    void compactWritesOnlyTheMask() {
+
+        Map<String, Object> claims = claims(AuthoritiesClaimFormat.COMPACT, "ROLE_USER", "ROLE_ADMIN");
+
+        assertEquals(0b11L, claims.get(JwtTokenCustomizer.ROLES_CLAIM));
+        assertFalse(claims.containsKey(JwtTokenCustomizer.AUTHORITIES_CLAIM));
+        assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN"), authoritiesReadBack(claims));
+
+    }
+
+    @Test
+    void compactFallsBackToTheNamesForAnAuthorityThatIsNotARole() {
+
+        Map<String, Object> claims = claims(AuthoritiesClaimFormat.COMPACT, "ROLE_USER", "SCOPE_read");
+
+        assertFalse(claims.containsKey(JwtTokenCustomizer.ROLES_CLAIM));
+        assertEquals(Set.of("ROLE_USER", "SCOPE_read"), claims.get(JwtTokenCustomizer.AUTHORITIES_CLAIM));
+        assertEquals(Set.of("ROLE_USER", "SCOPE_read"), authoritiesReadBack(claims));
+
+    }
+
+    @Test
+    void bothWritesTheMaskAndTheNamesAndTheMaskIsRead() {
+
+        Map<String, Object> claims = claims(AuthoritiesClaimFormat.BOTH, "ROLE_ADMIN");
+
+        assertEquals(0b10L, claims.get(JwtTokenCustomizer.ROLES_CLAIM));
+        assertEquals(Set.of("ROLE_ADMIN"), claims.get(JwtTokenCustomizer.AUTHORITIES_CLAIM));
+
+        // names that disagree with the mask show which claim the converter went by
+        Map<String, Object> disagreeing = new HashMap<>(claims);
+        disagreeing.put(JwtTokenCustomizer.AUTHORITIES_CLAIM, Set.of("ROLE_USER"));
+
+        assertEquals(Set.of("ROLE_ADMIN"), authoritiesReadBack(disagreeing));
+
+    }
+
+    private Map<String, Object> claims(AuthoritiesClaimFormat format, String... authorities) {
+
+        JwtClaimsSet.Builder claims = JwtClaimsSet.builder().subject("ana");
+        JwtEncodingContext context = JwtEncodingContext.with(JwsHeader.with(SignatureAlgorithm.RS256), claims)
+                .principal(new UsernamePasswordAuthenticationToken("ana", null, AuthorityUtils.createAuthorityList(authorities)))
+                .build();
+
+        new JwtTokenCustomizer(registry, format).customize(context);
+
+        return claims.build().getClaims();
+
+    }
+
+    private Set<String> authoritiesReadBack(Map<String, Object> claims) {
+
+        return converter.convert(jwt(claims)).getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet());
+
+    }
+
+    // as a decoder hands it over: numbers as Long and the names as a list
+    private static Jwt jwt(Map<String, Object> claims) {
+
+        Jwt.Builder jwt = Jwt.withTokenValue("token").header("alg", "RS256").issuedAt(Instant.now());
+        claims.forEach((name, value) -> jwt.claim(name, value instanceof Set<?> names ? List.copyOf(names) : value));
+        return jwt.build();
+
+    }
+
+
+}
@@ -0,0 +1,97 @@
+package com.userapplication.config.authenticationconfig;
+
+import com.userapplication.entity.RoleEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoleAuthorityRegistryTests {
+
+    private final List<RoleEntity> roles = new ArrayList<>(List.of(
+            new RoleEntity(1L, "Basic access", "ROLE_USER"),
+            new RoleEntity(2L, "Administration", "ROLE_ADMIN"),
+            new RoleEntity(64L, "Last bit", "ROLE_AUDIT")));
+    private final AtomicInteger loads = new AtomicInteger();
+    private final RoleAuthorityRegistry registry = new RoleAuthorityRegistry(() -> {
+
+        loads.incrementAndGet();
+        return List.copyOf(roles);
+
+    });
+
+    @Test
+    void theRoleWithIdNIsBitNMinusOne() {
+
+        assertEquals(0b1L, registry.maskOf(Set.of("ROLE_USER")));
+        assertEquals(0b10L, registry.maskOf(Set.of("ROLE_ADMIN")));
+        assertEquals(Long.MIN_VALUE, registry.maskOf(Set.of("ROLE_AUDIT")));
+        assertEquals(0b11L, registry.maskOf(Set.of("ROLE_USER", "ROLE_ADMIN")));
+        assertEquals(0L, registry.maskOf(Set.of()));
+
+    }
+
+    @Test
+    void aMaskDecodesToItsRolesInBitOrder() {
+
+        assertEquals(List.of(authority("ROLE_USER"), authority("ROLE_ADMIN"), authority("ROLE_AUDIT")),
+                registry.authoritiesOf(0b11L | Long.MIN_VALUE));
+        assertEquals(List.of(), registry.authoritiesOf(0L));
+
+    }
+
+    @Test
+    void eachMaskDecodesToOneSharedList() {
+
+        List<GrantedAuthority> first = registry.authoritiesOf(0b11L);
+
+        assertSame(first, registry.authoritiesOf(0b11L));
+        assertThrows(UnsupportedOperationException.class, () -> first.add(authority("ROLE_OTHER")));
+
+    }
+
+    @Test
+    void anAuthorityThatIsNotARoleHasNoMask() {
+
+        assertNull(registry.maskOf(Set.of("ROLE_USER", "SCOPE_read")));
+
+    }
+
+    @Test
+    void rolesWhoseIdDoesNotFitTheMaskAreLeftOut() {
+
+        roles.add(new RoleEntity(0L, "Below the mask", "ROLE_ZERO"));
+        roles.add(new RoleEntity(65L, "Above the mask", "ROLE_OVERFLOW"));
+
+        assertNull(registry.maskOf(Set.of("ROLE_ZERO")));
+        assertNull(registry.maskOf(Set.of("ROLE_OVERFLOW")));
+
+    }
+
+    @Test
+    void anUnknownBitReloadsTheRolesOnce() {
+
+        assertEquals(0b1L, registry.maskOf(Set.of("ROLE_USER")));
+        roles.add(new RoleEntity(3L, "Added later", "ROLE_SUPPORT"));
+
+        assertEquals(List.of(authority("ROLE_USER"), authority("ROLE_SUPPORT")), registry.authoritiesOf(0b101L));
+        assertEquals(2, loads.get());
+        // a bit no role has yet grants nothing, and the reload it caused is cached with the mask
+        assertEquals(List.of(authority("ROLE_USER")), registry.authoritiesOf(0b1001L));
+        assertSame(registry.authoritiesOf(0b1001L), registry.authoritiesOf(0b1001L));
+        assertEquals(3, loads.get());
+
+    }
+
+    private static GrantedAuthority authority(String name) {
+        return new SimpleGrantedAuthority(name);
+    }
+
+
+}
@@ -0,0 +1,164 @@
+package com.userapplication.config.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryRateLimitStoreTests {
+
+    private static final RateLimitPolicy THREE_PER_MINUTE = new RateLimitPolicy(3, Duration.ofMinutes(1));
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final InMemoryRateLimitStore store = new InMemoryRateLimitStore(1000, new SimpleMeterRegistry(), now::get, Scheduler.disabledScheduler());
+
+    @Test
+    void aNewKeyGetsTheWholeBurstAndThenWaitsOneInterval() {
+
+        assertEquals(Duration.ZERO, store.tryAcquire("key", THREE_PER_MINUTE));
+        assertEquals(Duration.ZERO, store.tryAcquire("key", THREE_PER_MINUTE));
+        assertEquals(Duration.ZERO, store.tryAcquire("key", THREE_PER_MINUTE));
+        assertEquals(Duration.ofSeconds(20), store.tryAcquire("key", THREE_PER_MINUTE));
+
+    }
+
+    @Test
+    void aRejectionTakesNoPermitAndItsWaitIsWhenTheNextOneIsFree() {
+
+        drain("key");
+
+        Duration wait = store.tryAcquire("key", THREE_PER_MINUTE);
+        advance(Duration.ofSeconds(5));
+
+        assertEquals(wait.minusSeconds(5), store.tryAcquire("key", THREE_PER_MINUTE));
+
+        advance(wait.minusSeconds(5).minusNanos(1));
+        assertFalse(store.tryAcquire("key", THREE_PER_MINUTE).isZero());
+
+        advance(Duration.ofNanos(1));
+        assertEquals(Duration.ZERO, store.tryAcquire("key", THREE_PER_MINUTE));
+        assertFalse(store.tryAcquire("key", THREE_PER_MINUTE).isZero());
+
+    }
+
+    @Test
+    void permitsComeBackOneIntervalAtATimeUpToTheBurst() {
+
+        drain("key");
+        advance(Duration.ofSeconds(40));
+
+        assertEquals(Duration.ZERO, store.tryAcquire("key", THREE_PER_MINUTE));
+        assertEquals(Duration.ZERO, store.tryAcquire("key", THREE_PER_MINUTE));
+        assertFalse(store.tryAcquire("key", THREE_PER_MINUTE).isZero());
+
+        // idle for far longer than the period still refills no more than the burst
+        advance(Duration.ofHours(1));
+        drain("key");
+
+    }
+
+    @Test
+    void keysHaveBucketsOfTheirOwn() {
+
+        drain("a");
+
+        assertEquals(Duration.ZERO, store.tryAcquire("b", THREE_PER_MINUTE));
+
+    }
+
+    @Test
+    void aRefilledBucketIsDropped() {
+
+        store.tryAcquire("key", THREE_PER_MINUTE);
+        assertEquals(1, store.size());
+
+        advance(Duration.ofSeconds(40));
+        assertEquals(0, store.size());
+
+    }
+
+    @Test
+    void concurrentRequestsForOneKeyNeverTakeMoreThanTheBurst() throws Exception {
+
+        RateLimitPolicy policy = new RateLimitPolicy(1000, Duration.ofDays(1));
+        InMemoryRateLimitStore realClock = new InMemoryRateLimitStore(1000, new SimpleMeterRegistry());
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> granted = new ArrayList<>();
+
+        try {
+
+            for (int i = 0; i < threads; i++) {
+
+                granted.add(executor.submit(() -> {
+
+                    start.await();
+                    int permits = 0;
+
+                    for (int j = 0; j < 500; j++) {
+
+                        if (realClock.tryAcquire("key", policy).isZero()) {
+
+                            permits++;
+
+                        }
+
+                    }
+
+                    return permits;
+
+                }));
+
+            }
+
+            start.countDown();
+            int total = 0;
+
+            for (Future<Integer> permits : granted) {
+
+                total += permits.get(30, TimeUnit.SECONDS);
+
+            }
+
+            assertEquals(1000, total);
+
+        } finally {
+
+            executor.shutdownNow();
+
+        }
+
+    }
+
+    private void drain(String key) {
+
+        for (int i = 0; i < THREE_PER_MINUTE.permits(); i++) {
+
+            assertEquals(Duration.ZERO, store.tryAcquire(key, THREE_PER_MINUTE));
+
+        }
+
+        assertFalse(store.tryAcquire(key, THREE_PER_MINUTE).isZero());
+
+    }
+
+    private void advance(Duration duration) {
+
+        now.addAndGet(duration.toNanos());
+
+    }
+
+
+}
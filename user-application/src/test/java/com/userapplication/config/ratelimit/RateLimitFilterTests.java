@@ -0,0 +1,103 @@
+package com.userapplication.config.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.userapplication.controller.UserController;
+import com.userapplication.service.UserImportService;
+import com.userapplication.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class RateLimitFilterTests {
+
+    private final AtomicLong now = new AtomicLong();
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("rate-limit.reset-token.ip", "2/1m")
+                .withProperty("rate-limit.reset-token.username", "1/90s");
+        RequestRateLimiter rateLimiter = new RequestRateLimiter(
+                new InMemoryRateLimitStore(1000, new SimpleMeterRegistry(), now::get, Scheduler.disabledScheduler()),
+                environment, new SimpleMeterRegistry(), true);
+
+        mockMvc = MockMvcBuilders.standaloneSetup(new UserController(mock(UserService.class), mock(UserImportService.class), rateLimiter))
+                .setControllerAdvice(new RateLimitExceptionHandler())
+                .addFilters(new RateLimitFilter(rateLimiter))
+                .build();
+
+    }
+
+    @Test
+    void anAddressOverItsLimitGets429WithRetryAfter() throws Exception {
+
+        resetToken("a@example.com", "10.0.0.1").andExpect(status().isNoContent());
+        resetToken("b@example.com", "10.0.0.1").andExpect(status().isNoContent());
+
+        resetToken("c@example.com", "10.0.0.1")
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "30"))
+                .andExpect(jsonPath("$.error").value("Too Many Requests"));
+
+        resetToken("c@example.com", "10.0.0.2").andExpect(status().isNoContent());
+
+    }
+
+    @Test
+    void aUsernameOverItsLimitGets429FromAnyAddress() throws Exception {
+
+        resetToken("ana@example.com", "10.0.0.1").andExpect(status().isNoContent());
+
+        resetToken("ANA@example.com", "10.0.0.2")
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "90"))
+                .andExpect(jsonPath("$.message").value("Too many requests for this user"));
+
+    }
+
+    @Test
+    void otherRoutesAreNotLimited() throws Exception {
+
+        for (int i = 0; i < 5; i++) {
+
+            mockMvc.perform(get("/api/user/ana@example.com").with(request -> {
+
+                request.setRemoteAddr("10.0.0.1");
+                return request;
+
+            })).andExpect(status().isOk());
+
+        }
+
+    }
+
+    private ResultActions resetToken(String username, String address) throws Exception {
+
+        return mockMvc.perform(post("/api/user/reset/token")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\":\"" + username + "\"}")
+                .with(request -> {
+
+                    request.setRemoteAddr(address);
+                    return request;
+
+                }));
+
+    }
+
+
+}
@@ -0,0 +1,48 @@
+package com.userapplication.config.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitPolicyTests {
+
+    @Test
+    void parsesPermitsAndAnyBootDuration() {
+
+        assertEquals(new RateLimitPolicy(5, Duration.ofMinutes(1)), RateLimitPolicy.parse("5/1m"));
+        assertEquals(new RateLimitPolicy(3, Duration.ofMinutes(15)), RateLimitPolicy.parse(" 3 / 15m "));
+        assertEquals(new RateLimitPolicy(100, Duration.ofSeconds(1)), RateLimitPolicy.parse("100/PT1S"));
+
+    }
+
+    @Test
+    void aBlankPolicyIsUnlimited() {
+
+        assertNull(RateLimitPolicy.parse(null));
+        assertNull(RateLimitPolicy.parse(""));
+        assertNull(RateLimitPolicy.parse("  "));
+
+    }
+
+    @Test
+    void rejectsMalformedPolicies() {
+
+        assertThrows(IllegalArgumentException.class, () -> RateLimitPolicy.parse("5"));
+        assertThrows(IllegalArgumentException.class, () -> RateLimitPolicy.parse("five/1m"));
+        assertThrows(IllegalArgumentException.class, () -> RateLimitPolicy.parse("0/1m"));
+        assertThrows(IllegalArgumentException.class, () -> RateLimitPolicy.parse("5/0s"));
+        assertThrows(IllegalArgumentException.class, () -> RateLimitPolicy.parse("5/-1m"));
+
+    }
+
+    @Test
+    void permitsAreSpreadEvenlyOverThePeriod() {
+
+        assertEquals(Duration.ofSeconds(20).toNanos(), RateLimitPolicy.parse("3/1m").intervalNanos());
+
+    }
+
+
+}
@@ -0,0 +1,87 @@
+package com.userapplication.config.ratelimit;
+
+import com.userapplication.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RequestRateLimiterTests {
+
+    private final RateLimitStore store = mock(RateLimitStore.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void spellingsOfOneUsernameShareABucket() {
+
+        when(store.tryAcquire(any(), any())).thenReturn(Duration.ZERO);
+        RequestRateLimiter rateLimiter = new RequestRateLimiter(store, new MockEnvironment(), meterRegistry, true);
+
+        rateLimiter.checkUsername(RateLimitRoute.RESET_TOKEN, " Ana@Example.COM ");
+        rateLimiter.checkUsername(RateLimitRoute.RESET_TOKEN, "ana@example.com");
+
+        verify(store, times(2)).tryAcquire("reset-token:username:ana@example.com", RateLimitPolicy.parse("3/15m"));
+
+    }
+
+    @Test
+    void anEmptyUsernameBucketThrowsWithTheWait() {
+
+        when(store.tryAcquire(any(), any())).thenReturn(Duration.ofSeconds(42));
+        RequestRateLimiter rateLimiter = new RequestRateLimiter(store, new MockEnvironment(), meterRegistry, true);
+
+        RateLimitExceededException rejection = assertThrows(RateLimitExceededException.class,
+                () -> rateLimiter.checkUsername(RateLimitRoute.RESET_PASSWORD, "ana@example.com"));
+
+        assertEquals(Duration.ofSeconds(42), rejection.getRetryAfter());
+        assertEquals(1, meterRegistry.get("rate.limit.rejected").tag("route", "reset-password").tag("key", "username").counter().count());
+
+    }
+
+    @Test
+    void configuredPoliciesReplaceTheDefaultsAndABlankOneIsUnlimited() {
+
+        when(store.tryAcquire(any(), any())).thenReturn(Duration.ZERO);
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("rate-limit.signup.ip", "1/1h")
+                .withProperty("rate-limit.signup.client", "");
+        RequestRateLimiter rateLimiter = new RequestRateLimiter(store, environment, meterRegistry, true);
+
+        rateLimiter.tryAcquire(RateLimitRoute.SIGNUP, RateLimitKey.IP, "10.0.0.1");
+
+        assertEquals(Duration.ZERO, rateLimiter.tryAcquire(RateLimitRoute.SIGNUP, RateLimitKey.CLIENT, "client"));
+        verify(store).tryAcquire("signup:ip:10.0.0.1", new RateLimitPolicy(1, Duration.ofHours(1)));
+        verify(store, never()).tryAcquire(eq("signup:client:client"), any());
+
+    }
+
+    @Test
+    void aDisabledLimiterNeverTouchesTheStore() {
+
+        RequestRateLimiter rateLimiter = new RequestRateLimiter(store, new MockEnvironment(), meterRegistry, false);
+
+        rateLimiter.checkUsername(RateLimitRoute.SIGNUP, "ana@example.com");
+
+        assertEquals(Duration.ZERO, rateLimiter.tryAcquire(RateLimitRoute.SIGNUP, RateLimitKey.IP, "10.0.0.1"));
+        verifyNoInteractions(store);
+
+    }
+
+    @Test
+    void retryAfterIsRoundedUpToWholeSeconds() {
+
+        assertEquals(1, RequestRateLimiter.retryAfterSeconds(Duration.ofNanos(1)));
+        assertEquals(1, RequestRateLimiter.retryAfterSeconds(Duration.ofMillis(1000)));
+        assertEquals(2, RequestRateLimiter.retryAfterSeconds(Duration.ofMillis(1001)));
+        assertEquals(20, RequestRateLimiter.retryAfterSeconds(Duration.ofSeconds(20)));
+
+    }
+
+
+}
@@ -0,0 +1,108 @@
+package com.userapplication.service;
+
+import com.userapplication.dto.UserChangedEvent;
+import com.userapplication.entity.UserEntity;
+import com.userapplication.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AuthenticationServiceTests {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private AuthenticationService authenticationService;
+
+    @BeforeEach
+    void setUp() {
+
+        // with the cross-node hash check on; the first test covers the default
+        authenticationService = new AuthenticationService(userRepository, Duration.ofMinutes(5), 100, true);
+
+    }
+
+    @Test
+    void aCachedPrincipalIsReusedWithoutAnyQueryByDefault() {
+
+        authenticationService = new AuthenticationService(userRepository, Duration.ofMinutes(5), 100, false);
+        when(userRepository.findByUsername("ana")).thenReturn(Optional.of(user("ana", "hash-1")));
+
+        UserDetails first = authenticationService.loadUserByUsername("ana");
+        UserDetails second = authenticationService.loadUserByUsername("ana");
+
+        assertSame(first, second);
+        verify(userRepository, times(1)).findByUsername("ana");
+        verify(userRepository, never()).findPasswordByUsername("ana");
+
+    }
+
+    @Test
+    void aCachedPrincipalWithTheStoredHashIsReusedWithoutLoadingTheUser() {
+
+        when(userRepository.findByUsername("ana")).thenReturn(Optional.of(user("ana", "hash-1")));
+        when(userRepository.findPasswordByUsername("ana")).thenReturn(Optional.of("hash-1"));
+
+        UserDetails first = authenticationService.loadUserByUsername("ana");
+        UserDetails second = authenticationService.loadUserByUsername("ana");
+
+        assertSame(first, second);
+        verify(userRepository, times(1)).findByUsername("ana");
+
+    }
+
+    @Test
+    void aPasswordChangedOnAnotherNodeReplacesTheCachedPrincipal() {
+
+        when(userRepository.findByUsername("ana")).thenReturn(Optional.of(user("ana", "hash-1"))).thenReturn(Optional.of(user("ana", "hash-2")));
+        authenticationService.loadUserByUsername("ana");
+
+        // no UserChangedEvent here: the reset committed on another node
+        when(userRepository.findPasswordByUsername("ana")).thenReturn(Optional.of("hash-2"));
+
+        assertEquals("hash-2", authenticationService.loadUserByUsername("ana").getPassword());
+
+    }
+
+    @Test
+    void aUserDeletedOnAnotherNodeNoLongerAuthenticates() {
+
+        when(userRepository.findByUsername("ana")).thenReturn(Optional.of(user("ana", "hash-1"))).thenReturn(Optional.empty());
+        authenticationService.loadUserByUsername("ana");
+
+        when(userRepository.findPasswordByUsername("ana")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> authenticationService.loadUserByUsername("ana"));
+
+    }
+
+    @Test
+    void aLocalChangeEvictsThePrincipal() {
+
+        when(userRepository.findByUsername("ana")).thenReturn(Optional.of(user("ana", "hash-1")));
+        authenticationService.loadUserByUsername("ana");
+
+        authenticationService.onUserChanged(new UserChangedEvent("ana"));
+        authenticationService.loadUserByUsername("ana");
+
+        verify(userRepository, times(2)).findByUsername("ana");
+        verify(userRepository, never()).findPasswordByUsername("ana");
+
+    }
+
+    private static UserEntity user(String username, String password) {
+
+        UserEntity user = new UserEntity();
+        user.setUsername(username);
+        user.setPassword(password);
+        return user;
+
+    }
+
+
+}
@@ -0,0 +1,264 @@
+package com.userapplication.service;
+
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.endpoint.OidcParameterNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedOAuth2AuthorizationServiceTests {
+
+    private static final RegisteredClient CLIENT = RegisteredClient.withId("client-id")
+            .clientId("client")
+            .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+            .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+            .redirectUri("https://client.example.com/callback")
+            .build();
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final List<Runnable> pendingRemovals = new ArrayList<>();
+    private final BoundedOAuth2AuthorizationService service = new BoundedOAuth2AuthorizationService(100, Duration.ofMinutes(10),
+            new SimpleMeterRegistry(), nanos::get, pendingRemovals::add, Scheduler.disabledScheduler());
+
+    @Test
+    void aSavedAuthorizationIsFoundByEachOfItsTokens() {
+
+        OAuth2Authorization authorization = authorization("a", "1", Duration.ofHours(1));
+        service.save(authorization);
+
+        assertSame(authorization, service.findById("a"));
+        assertSame(authorization, service.findByToken("state-1", new OAuth2TokenType(OAuth2ParameterNames.STATE)));
+        assertSame(authorization, service.findByToken("code-1", new OAuth2TokenType(OAuth2ParameterNames.CODE)));
+        assertSame(authorization, service.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN));
+        assertSame(authorization, service.findByToken("refresh-1", OAuth2TokenType.REFRESH_TOKEN));
+        assertSame(authorization, service.findByToken("id-1", new OAuth2TokenType(OidcParameterNames.ID_TOKEN)));
+        assertSame(authorization, service.findByToken("refresh-1", null));
+
+    }
+
+    @Test
+    void aTokenIsNotFoundAsAnotherType() {
+
+        service.save(authorization("a", "1", Duration.ofHours(1)));
+
+        assertNull(service.findByToken("access-1", OAuth2TokenType.REFRESH_TOKEN));
+        assertNull(service.findByToken("unknown", null));
+
+    }
+
+    @Test
+    void savingAgainReplacesTheTokensOfTheAuthorization() {
+
+        service.save(authorization("a", "1", Duration.ofHours(1)));
+        OAuth2Authorization refreshed = authorization("a", "2", Duration.ofHours(1));
+        service.save(refreshed);
+
+        assertNull(service.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN));
+        assertSame(refreshed, service.findByToken("access-2", OAuth2TokenType.ACCESS_TOKEN));
+
+    }
+
+    @Test
+    void aRemovedAuthorizationIsNoLongerFoundOrIndexed() {
+
+        OAuth2Authorization authorization = authorization("a", "1", Duration.ofHours(1));
+        service.save(authorization);
+        service.remove(authorization);
+
+        assertNull(service.findById("a"));
+        assertNull(service.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN));
+        assertEquals(0, service.indexSize());
+
+    }
+
+    @Test
+    void anAuthorizationExpiresWithItsLastToken() {
+
+        service.save(authorization("a", "1", Duration.ofMinutes(5)));
+
+        advance(Duration.ofMinutes(4));
+        assertNotNull(service.findById("a"));
+
+        advance(Duration.ofMinutes(2));
+        assertNull(service.findById("a"));
+        assertNull(service.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN));
+
+        service.cleanUp();
+        runPendingRemovals();
+        assertEquals(0, service.indexSize());
+
+    }
+
+    @Test
+    void aPendingAuthorizationExpiresAfterThePendingTtl() {
+
+        OAuth2Authorization pending = OAuth2Authorization.withRegisteredClient(CLIENT)
+                .id("a")
+                .principalName("ana")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .attribute(OAuth2ParameterNames.STATE, "state-1")
+                .build();
+        service.save(pending);
+
+        advance(Duration.ofMinutes(9));
+        assertSame(pending, service.findByToken("state-1", new OAuth2TokenType(OAuth2ParameterNames.STATE)));
+
+        advance(Duration.ofMinutes(2));
+        assertNull(service.findById("a"));
+
+    }
+
+    @Test
+    void anEvictionUnindexedAfterTheAuthorizationWasSavedAgainKeepsTheNewTokens() {
+
+        service.save(authorization("a", "1", Duration.ofMinutes(5)));
+        advance(Duration.ofMinutes(6));
+        service.cleanUp();
+        assertNull(service.findById("a"));
+
+        // saved again with the same refresh token before the eviction's removal listener got to run
+        OAuth2Authorization saved = OAuth2Authorization.from(authorization("a", "1", Duration.ofHours(1)))
+                .accessToken(accessToken("2", Duration.ofHours(1)))
+                .build();
+        service.save(saved);
+        runPendingRemovals();
+
+        assertSame(saved, service.findByToken("refresh-1", OAuth2TokenType.REFRESH_TOKEN));
+        assertSame(saved, service.findByToken("access-2", OAuth2TokenType.ACCESS_TOKEN));
+
+    }
+
+    @Test
+    void concurrentSavesRacingSizeEvictionsLeaveEveryHeldTokenIndexed() throws Exception {
+
+        // a small bound so saves keep evicting, with removal listeners on a pool of their own racing the saves
+        ExecutorService listeners = Executors.newFixedThreadPool(2);
+        BoundedOAuth2AuthorizationService bounded = new BoundedOAuth2AuthorizationService(20, Duration.ofMinutes(10),
+                new SimpleMeterRegistry(), System::nanoTime, listeners, Scheduler.disabledScheduler());
+        ExecutorService savers = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> saves = new ArrayList<>();
+
+        try {
+
+            for (int thread = 0; thread < 8; thread++) {
+
+                saves.add(savers.submit(() -> {
+
+                    start.await();
+
+                    for (int i = 0; i < 2000; i++) {
+
+                        // a few ids, each saved again and again with a refresh token it keeps
+                        String id = "id-" + ThreadLocalRandom.current().nextInt(40);
+                        bounded.save(OAuth2Authorization.from(authorization(id, id, Duration.ofHours(1)))
+                                .accessToken(accessToken(id + '-' + i, Duration.ofHours(1)))
+                                .build());
+
+                    }
+
+                    return null;
+
+                }));
+
+            }
+
+            start.countDown();
+
+            for (Future<?> save : saves) {
+
+                save.get(60, TimeUnit.SECONDS);
+
+            }
+
+            // queue what the cache still owes the listeners before the pool stops taking work
+            bounded.cleanUp();
+            listeners.shutdown();
+            assertTrue(listeners.awaitTermination(30, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 40; i++) {
+
+                OAuth2Authorization held = bounded.findById("id-" + i);
+
+                if (held != null) {
+
+                    assertSame(held, bounded.findByToken("refresh-id-" + i, OAuth2TokenType.REFRESH_TOKEN));
+                    assertSame(held, bounded.findByToken(held.getAccessToken().getToken().getTokenValue(), OAuth2TokenType.ACCESS_TOKEN));
+
+                }
+
+            }
+
+        } finally {
+
+            savers.shutdownNow();
+            listeners.shutdownNow();
+
+        }
+
+    }
+
+    private OAuth2Authorization authorization(String id, String suffix, Duration lifetime) {
+
+        Instant issued = Instant.now();
+
+        return OAuth2Authorization.withRegisteredClient(CLIENT)
+                .id(id)
+                .principalName("ana")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .attribute(OAuth2ParameterNames.STATE, "state-" + suffix)
+                .token(new OAuth2AuthorizationCode("code-" + suffix, issued, issued.plus(lifetime)))
+                .accessToken(accessToken(suffix, lifetime))
+                .refreshToken(new OAuth2RefreshToken("refresh-" + suffix, issued, issued.plus(lifetime)))
+                .token(new OidcIdToken("id-" + suffix, issued, issued.plus(lifetime), Map.of("sub", "ana")))
+                .build();
+
+    }
+
+    private static OAuth2AccessToken accessToken(String suffix, Duration lifetime) {
+
+        Instant issued = Instant.now();
+        return new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-" + suffix, issued, issued.plus(lifetime));
+
+    }
+
+    private void advance(Duration duration) {
+
+        nanos.addAndGet(duration.toNanos());
+
+    }
+
+    private void runPendingRemovals() {
+
+        List<Runnable> removals = new ArrayList<>(pendingRemovals);
+        pendingRemovals.clear();
+        removals.forEach(Runnable::run);
+
+    }
+
+
+}
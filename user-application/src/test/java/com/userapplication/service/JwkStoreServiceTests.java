@@ -0,0 +1,192 @@
+package com.userapplication.service;
+
+import com.userapplication.entity.JwkEntity;
+import com.userapplication.repository.JwkRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class JwkStoreServiceTests {
+
+    private static final Duration PERIOD = Duration.ofDays(30);
+    private static final Duration ACTIVATION_DELAY = Duration.ofHours(1);
+    private static final Duration GRACE = Duration.ofDays(1);
+
+    private final Instant now = Instant.parse("2026-01-31T12:00:00Z");
+    private final List<JwkEntity> stored = new ArrayList<>();
+    private final JwkRepository jwkRepository = mock(JwkRepository.class);
+    private final JwkStoreService service = service("ES256");
+
+    JwkStoreServiceTests() {
+
+        // both lookups return the stored keys newest activation first, as the queries order them
+        when(jwkRepository.findAllForUpdate()).thenAnswer(invocation -> newestFirst());
+        when(jwkRepository.findAllByOrderByActivatesAtDesc()).thenAnswer(invocation -> newestFirst());
+        when(jwkRepository.save(any(JwkEntity.class))).thenAnswer(invocation -> {
+
+            JwkEntity key = invocation.getArgument(0);
+            stored.add(key);
+            return key;
+
+        });
+        doAnswer(invocation -> stored.remove(invocation.<JwkEntity>getArgument(0))).when(jwkRepository).delete(any(JwkEntity.class));
+
+    }
+
+    @Test
+    void theFirstKeySignsStraightAway() {
+
+        service.rotate(now);
+
+        assertEquals(1, stored.size());
+        assertEquals(now, stored.getFirst().getActivatesAt());
+        assertEquals("ES256", stored.getFirst().getAlgorithm());
+        assertEquals(0, stored.getFirst().getGeneration());
+        assertNull(stored.getFirst().getRetiresAt());
+
+    }
+
+    @Test
+    void aKeyThatIsNotDueKeepsSigningAlone() {
+
+        stored.add(key("current", now.minus(PERIOD).plus(ACTIVATION_DELAY).plusSeconds(1), null, 0L));
+
+        service.rotate(now);
+
+        assertEquals(1, stored.size());
+
+    }
+
+    @Test
+    void theNextKeyIsScheduledTheActivationDelayBeforeTheCurrentOneIsAPeriodOld() {
+
+        JwkEntity current = key("current", now.minus(PERIOD).plus(ACTIVATION_DELAY), null, 4L);
+        stored.add(current);
+
+        service.rotate(now);
+
+        JwkEntity next = stored.get(1);
+        assertEquals(now.plus(ACTIVATION_DELAY), next.getActivatesAt());
+        assertEquals(5, next.getGeneration());
+        // still the signing key until the next one activates
+        assertNull(current.getRetiresAt());
+
+    }
+
+    @Test
+    void aPendingKeyIsNotScheduledTwice() {
+
+        stored.add(key("current", now.minus(PERIOD), null, 0L));
+        stored.add(key("next", now.plusSeconds(60), null, 1L));
+
+        service.rotate(now);
+
+        assertEquals(2, stored.size());
+
+    }
+
+    @Test
+    void theReplacedKeyRetiresTheGracePeriodAfterTheNextOneActivates() {
+
+        Instant activated = now.minusSeconds(60);
+        JwkEntity previous = key("previous", activated.minus(PERIOD), null, 0L);
+        stored.add(previous);
+        stored.add(key("next", activated, null, 1L));
+
+        service.rotate(now);
+
+        assertEquals(activated.plus(GRACE), previous.getRetiresAt());
+        assertEquals(2, stored.size());
+
+    }
+
+    @Test
+    void aKeyPastItsGracePeriodIsDeleted() {
+
+        JwkEntity retired = key("retired", now.minus(PERIOD), now.minusSeconds(1), 0L);
+        JwkEntity signing = key("signing", now.minus(GRACE).minusSeconds(1), null, 1L);
+        stored.add(retired);
+        stored.add(signing);
+
+        service.rotate(now);
+
+        assertEquals(List.of(signing), stored);
+
+    }
+
+    @Test
+    void aKeyInItsGracePeriodStaysPublished() {
+
+        stored.add(key("retiring", now.minus(PERIOD), now.plusSeconds(60), 0L));
+        stored.add(key("signing", now.minusSeconds(60), null, 1L));
+
+        service.rotate(now);
+
+        assertEquals(2, stored.size());
+
+    }
+
+    @Test
+    void anAlgorithmChangeSchedulesAKeyOfTheNewType() {
+
+        stored.add(key("current", now.minusSeconds(60), null, 0L));
+
+        service("RS256").rotate(now);
+
+        assertEquals("RS256", stored.get(1).getAlgorithm());
+        assertEquals(now.plus(ACTIVATION_DELAY), stored.get(1).getActivatesAt());
+
+    }
+
+    @Test
+    void aNodeThatLosesTheFirstKeyRaceSignsWithTheOtherNodesKey() {
+
+        // the other node commits its first key while this one is inserting the same generation
+        JwkStoreService other = service("ES256");
+        ArgumentCaptor<JwkEntity> saved = ArgumentCaptor.forClass(JwkEntity.class);
+        when(jwkRepository.save(saved.capture())).thenAnswer(invocation -> {
+
+            other.rotate(Instant.now());
+            throw new DataIntegrityViolationException("duplicate generation");
+
+        }).thenAnswer(invocation -> {
+
+            JwkEntity key = invocation.getArgument(0);
+            stored.add(key);
+            return key;
+
+        });
+
+        JwkStoreService.SigningKey signingKey = service.signingKey();
+
+        assertEquals(1, stored.size());
+        assertEquals(0, saved.getAllValues().getFirst().getGeneration());
+        assertEquals(stored.getFirst().getKid(), signingKey.jwk().getKeyID());
+
+    }
+
+    private JwkStoreService service(String algorithm) {
+        return new JwkStoreService(jwkRepository, mock(PlatformTransactionManager.class), "test-only-jwk-password", "5c0744940b5c369b",
+                algorithm, PERIOD, ACTIVATION_DELAY, GRACE, Duration.ofMinutes(1));
+    }
+
+    private List<JwkEntity> newestFirst() {
+        return stored.stream().sorted((a, b) -> b.getActivatesAt().compareTo(a.getActivatesAt())).toList();
+    }
+
+    private static JwkEntity key(String kid, Instant activatesAt, Instant retiresAt, Long generation) {
+        return new JwkEntity(null, kid, "ES256", "unused", activatesAt, activatesAt, retiresAt, generation);
+    }
+
+
+}
@@ -0,0 +1,136 @@
+package com.userapplication.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.userapplication.entity.OutboxEventEntity;
+import com.userapplication.repository.OutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class OutboxRelayServiceTests {
+
+    private final OutboxRepository outboxRepository = mock(OutboxRepository.class);
+    private final OutboxService outboxService = mock(OutboxService.class);
+    private final KafkaProducerService kafkaProducerService = mock(KafkaProducerService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OutboxRelayService relay = new OutboxRelayService(outboxRepository, outboxService, kafkaProducerService,
+            mock(PlatformTransactionManager.class), meterRegistry);
+
+    OutboxRelayServiceTests() throws Exception {
+
+        ReflectionTestUtils.setField(relay, "batchSize", 500);
+        ReflectionTestUtils.setField(relay, "sendTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(relay, "claimTtlMs", 60000L);
+        ReflectionTestUtils.setField(relay, "maxAttempts", 10);
+        ReflectionTestUtils.setField(relay, "retryBackoffMs", 60000L);
+        when(outboxService.readPayload(any())).thenAnswer(invocation -> invocation.<OutboxEventEntity>getArgument(0).getPayload());
+
+    }
+
+    @Test
+    void aFailedRowHoldsBackTheRowsBehindItWithItsKey() {
+
+        // two resets for one user: the first fails, so the second may not stay delivered ahead of it
+        claim(row(1, "ana", "reset-1", 0), row(2, "ana", "reset-2", 0), row(3, "bob", "reset-3", 0));
+        sending("reset-1", CompletableFuture.failedFuture(new RecordTooLargeException("too large")));
+        sending("reset-2", delivered());
+        sending("reset-3", delivered());
+
+        relay.relayPendingEvents();
+
+        verify(outboxRepository).releaseAfterFailure(List.of(1L));
+        verify(outboxRepository).release(List.of(2L));
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(3L));
+
+    }
+
+    @Test
+    void anUnreachableBrokerCountsNoAttemptsAndPausesTheRelay() {
+
+        claim(row(1, "ana", "welcome-1", 9), row(2, "bob", "welcome-2", 9));
+        sending("welcome-1", CompletableFuture.failedFuture(new TimeoutException("Topic not present in metadata after 60000 ms")));
+        sending("welcome-2", CompletableFuture.failedFuture(new TimeoutException("Topic not present in metadata after 60000 ms")));
+
+        relay.relayPendingEvents();
+        relay.relayPendingEvents();
+
+        verify(outboxRepository).release(List.of(1L, 2L));
+        verify(outboxRepository, never()).releaseAfterFailure(anyList());
+        verify(outboxRepository, never()).park(anyList(), any());
+        // the second run is inside the back-off and does not claim
+        verify(outboxRepository, times(1)).findClaimable(any(), any());
+
+    }
+
+    @Test
+    void anUnreadablePayloadIsParkedAndDoesNotHoldBackItsKey() throws Exception {
+
+        OutboxEventEntity unreadable = row(1, "ana", "{broken", 0);
+        claim(unreadable, row(2, "ana", "reset-2", 0));
+        when(outboxService.readPayload(unreadable)).thenThrow(new JsonParseException(null, "Unexpected end of input"));
+        sending("reset-2", delivered());
+
+        relay.relayPendingEvents();
+
+        verify(outboxRepository).park(eq(List.of(1L)), any());
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(2L));
+        assertEquals(1, meterRegistry.get("outbox.events.parked").counter().count());
+
+    }
+
+    @Test
+    void aRowOutOfAttemptsIsParkedAndReleasesItsKey() {
+
+        claim(row(1, "ana", "reset-1", 9), row(2, "ana", "reset-2", 0));
+        sending("reset-1", CompletableFuture.failedFuture(new RecordTooLargeException("too large")));
+        sending("reset-2", delivered());
+
+        relay.relayPendingEvents();
+
+        verify(outboxRepository).park(eq(List.of(1L)), any());
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(2L));
+        verify(outboxRepository, never()).release(anyList());
+
+    }
+
+    private void claim(OutboxEventEntity... rows) {
+
+        when(outboxRepository.findClaimable(any(Instant.class), any(Limit.class))).thenReturn(List.of(rows)).thenReturn(List.of());
+
+    }
+
+    private void sending(String payload, CompletableFuture<SendResult<String, Object>> result) {
+
+        when(kafkaProducerService.sendEvent(any(), any(), eq(payload), any())).thenReturn(result);
+
+    }
+
+    private static CompletableFuture<SendResult<String, Object>> delivered() {
+
+        return CompletableFuture.completedFuture(null);
+
+    }
+
+    private static OutboxEventEntity row(long id, String key, String payload, int attempts) {
+
+        return new OutboxEventEntity(id, "password-reset", key, payload, Instant.now(), null, attempts, null, null);
+
+    }
+
+
+}